@@ -0,0 +1,72 @@
+package org.example.benchmark;
+
+import org.example.model.Account;
+import org.example.money.Money;
+import org.example.service.AccountNumberAllocator;
+import org.example.service.impl.AccountNumberAllocatorImpl;
+import org.example.service.impl.AccountServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountBenchmark {
+    private static final Money CREDIT = Money.parse("10.50");
+    private static final Money DEBIT = CREDIT.negate();
+
+    private Account account;
+    private AccountNumberAllocator accountNumberAllocator;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        AtomicLong blocks = new AtomicLong(100_000);
+        accountNumberAllocator = new AccountNumberAllocatorImpl(new JdbcTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T queryForObject(String sql, Class<T> requiredType) {
+                return (T) Long.valueOf(blocks.getAndIncrement());
+            }
+        });
+        account = Account.builder()
+                .accountNumber(AccountServiceImpl.generateAccountNumber())
+                .name("Benchmark")
+                .balance(Money.parse("1000.00"))
+                .pinCode(BenchmarkContext.PIN_CODE_HASH)
+                .build();
+    }
+
+    @Benchmark
+    public String generateAccountNumber() {
+        return AccountServiceImpl.generateAccountNumber();
+    }
+
+    @Benchmark
+    public String allocateAccountNumber() {
+        return accountNumberAllocator.next();
+    }
+
+    @Benchmark
+    public Money editBalance() {
+        account.editBalance(CREDIT);
+        account.editBalance(DEBIT);
+        return account.getBalance();
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.benchmark;
+
+import org.example.controller.AccountController;
+import org.example.dto.AccountInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountControllerBenchmark {
+
+    @Param({"100", "10000"})
+    public int accounts;
+
+    private ConfigurableApplicationContext context;
+    private AccountController accountController;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("accounts_" + accounts);
+        accountController = context.getBean(AccountController.class);
+        BenchmarkContext.seedAccounts(context.getBean(JdbcTemplate.class), accounts, new BigDecimal("100.00"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<List<AccountInfo>> getAllAccounts() {
+        return accountController.getAllAccounts();
+    }
+}
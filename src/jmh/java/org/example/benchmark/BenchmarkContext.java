@@ -0,0 +1,46 @@
+package org.example.benchmark;
+
+import org.example.TestAston;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Поднимает приложение на отдельной in-memory H2, схема создается миграциями Flyway.
+ */
+final class BenchmarkContext {
+    static final String PIN_CODE = "1234";
+    static final String PIN_CODE_HASH = BCrypt.hashpw(PIN_CODE, BCrypt.gensalt());
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String databaseName, String... properties) {
+        return new SpringApplicationBuilder(TestAston.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                        "spring.h2.console.enabled=false",
+                        "logging.level.root=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    static List<String> seedAccounts(JdbcTemplate jdbcTemplate, int count, BigDecimal balance) {
+        List<String> accountNumbers = new ArrayList<>(count);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String accountNumber = String.format("%010d", i);
+            accountNumbers.add(accountNumber);
+            rows.add(new Object[]{UUID.randomUUID(), accountNumber, "Client " + i, PIN_CODE_HASH, balance});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Accounts (Id, Account_Number, Name, Pin_Code, Balance) VALUES (?, ?, ?, ?, ?)", rows);
+        return accountNumbers;
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.benchmark;
+
+import org.example.enums.TransactionType;
+import org.example.model.Transactions;
+import org.example.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * У счета фиксированное число операций, растет только остальная таблица:
+ * при наличии индексов время выборки истории не должно зависеть от её размера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TransactionHistoryBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int ACCOUNT_TRANSACTIONS = 50;
+    private static final int CHUNK = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private String accountNumber;
+    private Date from;
+    private Date to;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("history_" + rows);
+        transactionService = context.getBean(TransactionService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<String> accountNumbers = BenchmarkContext.seedAccounts(jdbcTemplate, ACCOUNTS, new BigDecimal("100.00"));
+        accountNumber = accountNumbers.get(0);
+
+        long now = System.currentTimeMillis();
+        long year = TimeUnit.DAYS.toMillis(365);
+        Random random = new Random(42);
+        List<Object[]> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < rows; i++) {
+            String accountFrom;
+            String accountTo;
+            if (i < ACCOUNT_TRANSACTIONS) {
+                accountFrom = i % 2 == 0 ? accountNumber : accountNumbers.get(1 + random.nextInt(ACCOUNTS - 1));
+                accountTo = i % 2 == 0 ? accountNumbers.get(1 + random.nextInt(ACCOUNTS - 1)) : accountNumber;
+            } else {
+                accountFrom = accountNumbers.get(1 + random.nextInt(ACCOUNTS - 1));
+                accountTo = accountNumbers.get(1 + random.nextInt(ACCOUNTS - 1));
+            }
+            chunk.add(new Object[]{UUID.randomUUID(), accountFrom, accountTo, new BigDecimal("1.00"),
+                    TransactionType.TRANSFER.name(), new Timestamp(now - (long) (random.nextDouble() * year))});
+            if (chunk.size() == CHUNK) {
+                insert(jdbcTemplate, chunk);
+            }
+        }
+        insert(jdbcTemplate, chunk);
+
+        from = new Date(now - year);
+        to = new Date(now + 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Transactions> getHistory() {
+        return transactionService.getHistory(accountNumber, from, to);
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, List<Object[]> chunk) {
+        jdbcTemplate.batchUpdate("INSERT INTO Transactions (TransactionID, Account_From_Number, Account_To_Number, " +
+                "Amount, Transaction_Type, Transaction_Date) VALUES (?, ?, ?, ?, ?, ?)", chunk);
+        chunk.clear();
+    }
+}
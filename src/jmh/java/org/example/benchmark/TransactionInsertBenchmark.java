@@ -0,0 +1,115 @@
+package org.example.benchmark;
+
+import org.example.enums.TransactionType;
+import org.example.id.TimeOrderedUuid;
+import org.example.model.Transactions;
+import org.example.money.Money;
+import org.example.repository.TransactionRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Вставка операций через TransactionRepository.saveAll со случайными и упорядоченными по времени id.
+ * После прогона печатает размер таблицы Transactions и число подготовленных Hibernate запросов
+ * на одну вставку: при работающей пакетной вставке оно близко к 1 / hibernate.jdbc.batch_size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TransactionInsertBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int CHUNK = 1000;
+
+    public enum IdStrategy {
+        RANDOM(UUID::randomUUID),
+        TIME_ORDERED(TimeOrderedUuid::next);
+
+        private final Supplier<UUID> generator;
+
+        IdStrategy(Supplier<UUID> generator) {
+            this.generator = generator;
+        }
+    }
+
+    @Param({"RANDOM", "TIME_ORDERED"})
+    public IdStrategy ids;
+
+    private ConfigurableApplicationContext context;
+    private TransactionRepository transactionRepository;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbcTemplate;
+    private Statistics statistics;
+    private List<String> accountNumbers;
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("insert_" + ids, "spring.jpa.properties.hibernate.generate_statistics=true");
+        transactionRepository = context.getBean(TransactionRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        accountNumbers = BenchmarkContext.seedAccounts(jdbcTemplate, ACCOUNTS, new BigDecimal("100.00"));
+        statistics.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long inserted = statistics.getEntityInsertCount();
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Transactions", Long.class);
+        Long bytes = jdbcTemplate.queryForObject("CALL DISK_SPACE_USED('TRANSACTIONS')", Long.class);
+        System.out.printf("%n%s: строк %d, таблица с индексами %d байт (%.1f на строку), "
+                        + "подготовленных запросов на вставку %.3f%n",
+                ids, rows, bytes, (double) bytes / rows, (double) statistics.getPrepareStatementCount() / inserted);
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK)
+    public void saveAll() {
+        List<Transactions> chunk = new ArrayList<>(CHUNK);
+        Date now = new Date();
+        for (int i = 0; i < CHUNK; i++) {
+            int account = sequence++ % ACCOUNTS;
+            Transactions transactions = new Transactions();
+            transactions.setId(ids.generator.get());
+            transactions.setAccountFromNumber(accountNumbers.get(account));
+            transactions.setAccountToNumber(accountNumbers.get((account + 1) % ACCOUNTS));
+            transactions.setAmount(Money.of(new BigDecimal("1.00")));
+            transactions.setTransactionType(TransactionType.TRANSFER);
+            transactions.setTransactionDate(now);
+            chunk.add(transactions);
+        }
+        transactionTemplate.executeWithoutResult(status -> transactionRepository.saveAll(chunk));
+    }
+}
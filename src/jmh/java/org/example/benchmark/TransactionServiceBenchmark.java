@@ -0,0 +1,67 @@
+package org.example.benchmark;
+
+import org.example.dto.TransactionRequest;
+import org.example.enums.TransactionType;
+import org.example.money.Money;
+import org.example.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionServiceBenchmark {
+
+    @Param({"DEPOSIT", "WITHDRAWAL", "PAYMENT", "TRANSFER"})
+    public TransactionType type;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private TransactionRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("transactions_" + type.name().toLowerCase());
+        transactionService = context.getBean(TransactionService.class);
+        List<String> accountNumbers = BenchmarkContext.seedAccounts(context.getBean(JdbcTemplate.class), 2,
+                new BigDecimal("50000000.00"));
+
+        request = TransactionRequest.builder()
+                .amount(Money.parse("0.01"))
+                .type(type)
+                .pinCode(BenchmarkContext.PIN_CODE)
+                .accountFromNumber(accountNumbers.get(0))
+                .accountToNumber(type == TransactionType.TRANSFER ? accountNumbers.get(1) : null)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void processTransaction() {
+        transactionService.processTransaction(request);
+    }
+}
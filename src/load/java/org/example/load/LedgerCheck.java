@@ -0,0 +1,100 @@
+package org.example.load;
+
+import org.example.enums.TransactionType;
+import org.example.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сверка балансов с журналом операций: каждое изменение баланса должно иметь строку в Transactions,
+ * а деньги появляются и исчезают только через DEPOSIT, WITHDRAWAL и PAYMENT
+ */
+final class LedgerCheck {
+    private final JdbcTemplate jdbcTemplate;
+
+    LedgerCheck(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    Map<String, Long> balances() {
+        Map<String, Long> balances = new HashMap<>();
+        jdbcTemplate.query("SELECT Account_Number, Balance FROM Accounts",
+                (RowCallbackHandler) rs -> balances.put(rs.getString("Account_Number"),
+                        Money.of(rs.getBigDecimal("Balance")).getMinorUnits()));
+        return balances;
+    }
+
+    /**
+     * @param initial       балансы до прогона в копейках
+     * @param externalDelta сумма успешных пополнений минус списания по подсчету клиентов
+     * @param succeeded     число успешных операций по подсчету клиентов
+     * @return описания нарушений; пустой список, если инварианты выполнены
+     */
+    List<String> verify(Map<String, Long> initial, long externalDelta, long succeeded) {
+        List<String> violations = new ArrayList<>();
+        Map<String, Long> expected = new HashMap<>(initial);
+        long[] ledgerDelta = new long[1];
+
+        jdbcTemplate.query("SELECT Account_From_Number, Account_To_Number, Transaction_Type, SUM(Amount) AS Total "
+                        + "FROM Transactions GROUP BY Account_From_Number, Account_To_Number, Transaction_Type",
+                (RowCallbackHandler) rs -> {
+                    TransactionType type = TransactionType.valueOf(rs.getString("Transaction_Type"));
+                    long total = Money.of(rs.getBigDecimal("Total")).getMinorUnits();
+                    String from = rs.getString("Account_From_Number");
+                    switch (type) {
+                        case DEPOSIT:
+                            expected.merge(from, total, Long::sum);
+                            ledgerDelta[0] += total;
+                            break;
+                        case TRANSFER:
+                            expected.merge(from, -total, Long::sum);
+                            expected.merge(rs.getString("Account_To_Number"), total, Long::sum);
+                            break;
+                        default:
+                            expected.merge(from, -total, Long::sum);
+                            ledgerDelta[0] -= total;
+                    }
+                });
+
+        Map<String, Long> actual = balances();
+        long initialTotal = sum(initial);
+        long actualTotal = sum(actual);
+        if (actualTotal != initialTotal + ledgerDelta[0]) {
+            violations.add(String.format("Сумма балансов %s, по журналу операций ожидалось %s",
+                    format(actualTotal), format(initialTotal + ledgerDelta[0])));
+        }
+        if (ledgerDelta[0] != externalDelta) {
+            violations.add(String.format("Чистый приток по журналу %s, по ответам сервиса %s",
+                    format(ledgerDelta[0]), format(externalDelta)));
+        }
+
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Transactions", Long.class);
+        if (rows == null || rows != succeeded) {
+            violations.add(String.format("В Transactions %d строк, успешных операций %d", rows, succeeded));
+        }
+
+        expected.forEach((accountNumber, balance) -> {
+            Long current = actual.get(accountNumber);
+            if (current == null || current.longValue() != balance) {
+                violations.add(String.format("Счет %s: баланс %s, по журналу операций %s", accountNumber,
+                        current == null ? "отсутствует" : format(current), format(balance)));
+            }
+        });
+        return violations;
+    }
+
+    static String format(long minorUnits) {
+        // Итоги по всем счетам могут выходить за пределы Money
+        return BigDecimal.valueOf(minorUnits, Money.SCALE).toPlainString();
+    }
+
+    private static long sum(Map<String, Long> balances) {
+        return balances.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
@@ -0,0 +1,207 @@
+package org.example.load;
+
+import org.example.TestAston;
+import org.example.controller.TransactionController;
+import org.example.dto.TransactionRequest;
+import org.example.enums.TransactionType;
+import org.example.exception.InsufficientFundsException;
+import org.example.exception.ServiceBusyException;
+import org.example.index.BalanceIndex;
+import org.example.money.Money;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Нагрузочный прогон POST /operations/process: приложение поднимается на отдельной in-memory H2,
+ * клиенты вызывают TransactionController параллельно, после прогона балансы сверяются с журналом операций.
+ * Код возврата 1, если инварианты нарушены или сервис ответил непредусмотренной ошибкой.
+ */
+public final class LoadHarness {
+    private static final String PIN_CODE = "1234";
+    private static final String INITIAL_BALANCE = "1000.00";
+    private static final long MAX_AMOUNT_MINOR_UNITS = 1000;
+
+    private final LoadSettings settings;
+    private final TransactionController transactionController;
+    private final List<String> accountNumbers;
+
+    private final AtomicInteger issued = new AtomicInteger();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong insufficientFunds = new AtomicLong();
+    private final AtomicLong busy = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong externalDelta = new AtomicLong();
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private final long[] latencies;
+
+    private LoadHarness(LoadSettings settings, TransactionController transactionController, List<String> accountNumbers) {
+        this.settings = settings;
+        this.transactionController = transactionController;
+        this.accountNumbers = accountNumbers;
+        this.latencies = new long[settings.requests];
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings = LoadSettings.fromSystemProperties();
+        boolean passed;
+        try (ConfigurableApplicationContext context = start()) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            List<String> accountNumbers = seedAccounts(jdbcTemplate, settings.accounts);
+            context.getBean(BalanceIndex.class).rebuild();
+
+            LedgerCheck ledgerCheck = new LedgerCheck(jdbcTemplate);
+            Map<String, Long> initial = ledgerCheck.balances();
+            LoadHarness harness = new LoadHarness(settings, context.getBean(TransactionController.class), accountNumbers);
+            long elapsed = harness.run();
+
+            List<String> violations = ledgerCheck.verify(initial, harness.externalDelta.get(), harness.succeeded.get());
+            harness.report(elapsed, violations);
+            passed = violations.isEmpty() && harness.failed.get() == 0;
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(TestAston.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+                        "spring.h2.console.enabled=false",
+                        "bank.journal.enabled=false",
+                        "bank.rate-limit.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    private static List<String> seedAccounts(JdbcTemplate jdbcTemplate, int count) {
+        String pinCodeHash = BCrypt.hashpw(PIN_CODE, BCrypt.gensalt());
+        List<String> accountNumbers = new ArrayList<>(count);
+        List<Object[]> rows = new ArrayList<>(count);
+        List<Object[]> totals = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String accountNumber = String.format("%010d", i);
+            accountNumbers.add(accountNumber);
+            rows.add(new Object[]{UUID.randomUUID(), accountNumber, "Client " + i, pinCodeHash, new BigDecimal(INITIAL_BALANCE)});
+            totals.add(new Object[]{accountNumber, new BigDecimal(INITIAL_BALANCE), BigDecimal.ZERO, 0L});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Accounts (Id, Account_Number, Name, Pin_Code, Balance) VALUES (?, ?, ?, ?, ?)", rows);
+        // Итоги проводок, как при открытии счета через AccountService: без них проводки операций некуда писать
+        jdbcTemplate.batchUpdate("INSERT INTO Ledger_Totals (Account_Number, Opening_Balance, Net, Postings) "
+                + "VALUES (?, ?, ?, ?)", totals);
+        return accountNumbers;
+    }
+
+    /**
+     * @return длительность прогона в наносекундах
+     */
+    private long run() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(settings.clients);
+        SplittableRandom seeds = new SplittableRandom();
+        List<Future<?>> futures = new ArrayList<>(settings.clients);
+        long started = System.nanoTime();
+        try {
+            for (int i = 0; i < settings.clients; i++) {
+                SplittableRandom random = seeds.split();
+                futures.add(clients.submit(() -> drive(random)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        return System.nanoTime() - started;
+    }
+
+    private void drive(SplittableRandom random) {
+        int index;
+        while ((index = issued.getAndIncrement()) < settings.requests) {
+            TransactionRequest request = nextRequest(random);
+            long started = System.nanoTime();
+            try {
+                transactionController.processTransaction(null, request);
+                succeeded.incrementAndGet();
+                long amount = request.getAmount().getMinorUnits();
+                if (request.getType() == TransactionType.DEPOSIT) {
+                    externalDelta.addAndGet(amount);
+                } else if (request.getType() != TransactionType.TRANSFER) {
+                    externalDelta.addAndGet(-amount);
+                }
+            } catch (InsufficientFundsException e) {
+                insufficientFunds.incrementAndGet();
+            } catch (ServiceBusyException e) {
+                busy.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                firstFailure.compareAndSet(null, e);
+            } finally {
+                latencies[index] = System.nanoTime() - started;
+            }
+        }
+    }
+
+    private TransactionRequest nextRequest(SplittableRandom random) {
+        TransactionType type = settings.nextType(random);
+        int from = random.nextInt(accountNumbers.size());
+        String accountToNumber = null;
+        if (type == TransactionType.TRANSFER) {
+            int to = random.nextInt(accountNumbers.size() - 1);
+            accountToNumber = accountNumbers.get(to >= from ? to + 1 : to);
+        }
+        return TransactionRequest.builder()
+                .type(type)
+                .amount(Money.ofMinorUnits(1 + random.nextLong(MAX_AMOUNT_MINOR_UNITS)))
+                .pinCode(PIN_CODE)
+                .accountFromNumber(accountNumbers.get(from))
+                .accountToNumber(accountToNumber)
+                .build();
+    }
+
+    private void report(long elapsed, List<String> violations) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        double seconds = elapsed / 1e9;
+
+        System.out.printf("Счетов: %d, клиентов: %d, операций: %d, смесь: %s%n",
+                settings.accounts, settings.clients, settings.requests, settings.describeMix());
+        System.out.printf("Успешно: %d, недостаточно средств: %d, отказ по перегрузке: %d, ошибок: %d%n",
+                succeeded.get(), insufficientFunds.get(), busy.get(), failed.get());
+        System.out.printf("Время: %.2f с, пропускная способность: %.0f операций/с%n", seconds, settings.requests / seconds);
+        System.out.printf("Задержка, мкс: p50 %d, p99 %d, p999 %d, max %d%n",
+                percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999), sorted[sorted.length - 1] / 1000);
+        if (firstFailure.get() != null) {
+            System.out.println("Первая ошибка:");
+            firstFailure.get().printStackTrace(System.out);
+        }
+        if (violations.isEmpty()) {
+            System.out.println("Инварианты выполнены: деньги сохранены, каждое изменение баланса отражено в Transactions");
+        } else {
+            System.out.println("Нарушены инварианты:");
+            violations.forEach(violation -> System.out.println("  " + violation));
+        }
+    }
+
+    /**
+     * Перцентиль по рангу ближайшего значения, в микросекундах
+     */
+    private static long percentile(long[] sorted, double quantile) {
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1000;
+    }
+}
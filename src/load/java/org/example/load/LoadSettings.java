@@ -0,0 +1,81 @@
+package org.example.load;
+
+import org.example.enums.TransactionType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Параметры прогона из системных свойств load.*; смесь операций задается весами вида DEPOSIT:25,TRANSFER:75
+ */
+final class LoadSettings {
+    final int accounts;
+    final int clients;
+    final int requests;
+    private final TransactionType[] types;
+    private final int[] cumulativeWeights;
+
+    private LoadSettings(int accounts, int clients, int requests, Map<TransactionType, Integer> mix) {
+        if (accounts < 2 || clients < 1 || requests < 1) {
+            throw new IllegalArgumentException("Нужно не меньше двух счетов, одного клиента и одной операции");
+        }
+        this.accounts = accounts;
+        this.clients = clients;
+        this.requests = requests;
+        this.types = mix.keySet().toArray(new TransactionType[0]);
+        this.cumulativeWeights = new int[types.length];
+        int total = 0;
+        for (int i = 0; i < types.length; i++) {
+            total += mix.get(types[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Сумма весов операций должна быть положительной");
+        }
+    }
+
+    static LoadSettings fromSystemProperties() {
+        return new LoadSettings(
+                Integer.getInteger("load.accounts", 1000),
+                Integer.getInteger("load.clients", 32),
+                Integer.getInteger("load.requests", 100_000),
+                parseMix(System.getProperty("load.mix", "DEPOSIT:25,WITHDRAWAL:25,TRANSFER:40,PAYMENT:10")));
+    }
+
+    TransactionType nextType(SplittableRandom random) {
+        int point = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return types[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    String describeMix() {
+        StringBuilder mix = new StringBuilder();
+        int previous = 0;
+        for (int i = 0; i < types.length; i++) {
+            mix.append(i == 0 ? "" : ",").append(types[i]).append(':').append(cumulativeWeights[i] - previous);
+            previous = cumulativeWeights[i];
+        }
+        return mix.toString();
+    }
+
+    private static Map<TransactionType, Integer> parseMix(String value) {
+        Map<TransactionType, Integer> mix = new EnumMap<>(TransactionType.class);
+        for (String part : value.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Некорректный элемент load.mix: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Вес операции не может быть отрицательным: " + part);
+            }
+            mix.put(TransactionType.valueOf(pair[0].trim()), weight);
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.archive;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Фильтр Блума по номерам счетов сегмента: отрицательный ответ точен, поэтому сегменты
+ * без операций счета не распаковываются. Индексы битов - двойное хэширование h1 + i * h2.
+ */
+final class AccountBloomFilter {
+    private final long[] words;
+    private final int hashes;
+    private final long bitCount;
+
+    private AccountBloomFilter(long[] words, int hashes) {
+        this.words = words;
+        this.hashes = hashes;
+        this.bitCount = (long) words.length * Long.SIZE;
+    }
+
+    static AccountBloomFilter create(int keys, int bitsPerKey) {
+        long bits = Math.max(Long.SIZE, (long) keys * bitsPerKey);
+        int hashes = Math.max(1, (int) Math.round(bitsPerKey * Math.log(2)));
+        return new AccountBloomFilter(new long[(int) ((bits + Long.SIZE - 1) / Long.SIZE)], hashes);
+    }
+
+    static AccountBloomFilter read(DataInput in) throws IOException {
+        int hashes = in.readInt();
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return new AccountBloomFilter(words, hashes);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(hashes);
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    int serializedSize() {
+        return 2 * Integer.BYTES + words.length * Long.BYTES;
+    }
+
+    void add(String accountNumber) {
+        long h1 = hash(accountNumber);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(String accountNumber) {
+        long h1 = hash(accountNumber);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words[(int) (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a по символам номера с перемешиванием: номера отличаются только последними цифрами
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,367 @@
+package org.example.archive;
+
+import org.example.enums.TransactionType;
+import org.example.model.Transactions;
+import org.example.money.Money;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Неизменяемый файл архива операций одного шарда. Строки упорядочены по (дата, id) и хранятся
+ * по столбцам, каждый сжат отдельно: поиск по счету распаковывает словарь номеров и столбцы
+ * счетов, а даты, id, суммы и типы - только если в сегменте нашлись строки счета.
+ * Заголовок: число строк, минимальная и максимальная дата, фильтр Блума номеров счетов
+ * и размеры столбцов.
+ */
+final class ArchiveSegment {
+    private static final int MAGIC = 0x42415243;
+    private static final int VERSION = 1;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private static final int DICTIONARY = 0;
+    private static final int ACCOUNT_FROM = 1;
+    private static final int ACCOUNT_TO = 2;
+    private static final int DATE = 3;
+    private static final int ID = 4;
+    private static final int AMOUNT = 5;
+    private static final int TYPE = 6;
+    private static final int COLUMNS = 7;
+
+    private final Path path;
+    private final int rows;
+    private final long minDate;
+    private final long maxDate;
+    private final AccountBloomFilter accounts;
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+
+    private ArchiveSegment(Path path, int rows, long minDate, long maxDate, AccountBloomFilter accounts,
+                           long[] offsets, int[] compressedLengths, int[] rawLengths) {
+        this.path = path;
+        this.rows = rows;
+        this.minDate = minDate;
+        this.maxDate = maxDate;
+        this.accounts = accounts;
+        this.offsets = offsets;
+        this.compressedLengths = compressedLengths;
+        this.rawLengths = rawLengths;
+    }
+
+    /**
+     * Пишет строки, упорядоченные по (дата, id), во временный файл, сбрасывает его на диск
+     * и переименовывает в path
+     */
+    static ArchiveSegment write(Path path, List<Transactions> transactions, int bloomBitsPerAccount) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> accountNumbers = new ArrayList<>();
+        for (Transactions transaction : transactions) {
+            for (String accountNumber : new String[]{transaction.getAccountFromNumber(), transaction.getAccountToNumber()}) {
+                if (accountNumber != null && dictionary.putIfAbsent(accountNumber, accountNumbers.size()) == null) {
+                    accountNumbers.add(accountNumber);
+                }
+            }
+        }
+        AccountBloomFilter bloom = AccountBloomFilter.create(accountNumbers.size(), bloomBitsPerAccount);
+        accountNumbers.forEach(bloom::add);
+
+        byte[][] raw = new byte[COLUMNS][];
+        raw[DICTIONARY] = column(out -> {
+            out.writeInt(accountNumbers.size());
+            for (String accountNumber : accountNumbers) {
+                out.writeUTF(accountNumber);
+            }
+        });
+        // Индекс в словаре + 1, 0 - номер не указан
+        raw[ACCOUNT_FROM] = column(out -> {
+            for (Transactions transaction : transactions) {
+                out.writeInt(reference(dictionary, transaction.getAccountFromNumber()));
+            }
+        });
+        raw[ACCOUNT_TO] = column(out -> {
+            for (Transactions transaction : transactions) {
+                out.writeInt(reference(dictionary, transaction.getAccountToNumber()));
+            }
+        });
+        // Разности соседних дат малы и хорошо сжимаются
+        raw[DATE] = column(out -> {
+            long previous = 0;
+            for (Transactions transaction : transactions) {
+                long date = transaction.getTransactionDate().getTime();
+                out.writeLong(date - previous);
+                previous = date;
+            }
+        });
+        raw[ID] = column(out -> {
+            for (Transactions transaction : transactions) {
+                out.writeLong(transaction.getId().getMostSignificantBits());
+                out.writeLong(transaction.getId().getLeastSignificantBits());
+            }
+        });
+        raw[AMOUNT] = column(out -> {
+            for (Transactions transaction : transactions) {
+                out.writeLong(transaction.getAmount().getMinorUnits());
+            }
+        });
+        raw[TYPE] = column(out -> {
+            for (Transactions transaction : transactions) {
+                out.writeByte(transaction.getTransactionType().ordinal());
+            }
+        });
+
+        byte[][] compressed = new byte[COLUMNS][];
+        int[] compressedLengths = new int[COLUMNS];
+        int[] rawLengths = new int[COLUMNS];
+        for (int column = 0; column < COLUMNS; column++) {
+            compressed[column] = deflate(raw[column]);
+            compressedLengths[column] = compressed[column].length;
+            rawLengths[column] = raw[column].length;
+        }
+        long minDate = transactions.get(0).getTransactionDate().getTime();
+        long maxDate = transactions.get(transactions.size() - 1).getTransactionDate().getTime();
+        long[] offsets = offsets(headerSize(bloom), compressedLengths);
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(file)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(transactions.size());
+            out.writeLong(minDate);
+            out.writeLong(maxDate);
+            bloom.write(out);
+            out.writeInt(COLUMNS);
+            for (int column = 0; column < COLUMNS; column++) {
+                out.writeInt(compressedLengths[column]);
+                out.writeInt(rawLengths[column]);
+            }
+            for (byte[] block : compressed) {
+                out.write(block);
+            }
+            out.flush();
+            file.getFD().sync();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        return new ArchiveSegment(path, transactions.size(), minDate, maxDate, bloom, offsets, compressedLengths, rawLengths);
+    }
+
+    /**
+     * Читает заголовок сегмента; столбцы читаются с диска при каждом поиске
+     */
+    static ArchiveSegment open(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Файл " + path + " не является сегментом архива");
+            }
+            int rows = in.readInt();
+            long minDate = in.readLong();
+            long maxDate = in.readLong();
+            AccountBloomFilter bloom = AccountBloomFilter.read(in);
+            if (in.readInt() != COLUMNS) {
+                throw new IOException("Неизвестный набор столбцов в сегменте " + path);
+            }
+            int[] compressedLengths = new int[COLUMNS];
+            int[] rawLengths = new int[COLUMNS];
+            for (int column = 0; column < COLUMNS; column++) {
+                compressedLengths[column] = in.readInt();
+                rawLengths[column] = in.readInt();
+            }
+            long[] offsets = offsets(headerSize(bloom), compressedLengths);
+            if (offsets[COLUMNS - 1] + compressedLengths[COLUMNS - 1] != Files.size(path)) {
+                throw new IOException("Сегмент архива " + path + " поврежден");
+            }
+            return new ArchiveSegment(path, rows, minDate, maxDate, bloom, offsets, compressedLengths, rawLengths);
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    long minDate() {
+        return minDate;
+    }
+
+    long maxDate() {
+        return maxDate;
+    }
+
+    /**
+     * Может ли в сегменте быть операция счета за [from, to)
+     */
+    boolean mightContain(String accountNumber, long from, long to) {
+        return minDate < to && maxDate >= from && accounts.mightContain(accountNumber);
+    }
+
+    /**
+     * Исходящие операции счета за [from, to), а при incoming еще и входящие с других счетов,
+     * в порядке (дата, id) по возрастанию
+     */
+    List<Transactions> find(String accountNumber, boolean incoming, long from, long to) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            DataInputStream dictionary = column(channel, DICTIONARY);
+            String[] accountNumbers = new String[dictionary.readInt() + 1];
+            int reference = 0;
+            for (int i = 1; i < accountNumbers.length; i++) {
+                accountNumbers[i] = dictionary.readUTF();
+                if (accountNumber.equals(accountNumbers[i])) {
+                    reference = i;
+                }
+            }
+            if (reference == 0) {
+                return Collections.emptyList();
+            }
+
+            int[] accountsFrom = ints(column(channel, ACCOUNT_FROM));
+            int[] accountsTo = ints(column(channel, ACCOUNT_TO));
+            boolean[] matches = new boolean[rows];
+            int matched = 0;
+            for (int row = 0; row < rows; row++) {
+                matches[row] = accountsFrom[row] == reference || incoming && accountsTo[row] == reference;
+                if (matches[row]) {
+                    matched++;
+                }
+            }
+            if (matched == 0) {
+                return Collections.emptyList();
+            }
+
+            DataInputStream dates = column(channel, DATE);
+            DataInputStream ids = column(channel, ID);
+            DataInputStream amounts = column(channel, AMOUNT);
+            DataInputStream types = column(channel, TYPE);
+            List<Transactions> found = new ArrayList<>(matched);
+            long date = 0;
+            for (int row = 0; row < rows; row++) {
+                date += dates.readLong();
+                long mostSignificantBits = ids.readLong();
+                long leastSignificantBits = ids.readLong();
+                long amount = amounts.readLong();
+                int type = types.readByte();
+                if (!matches[row] || date < from || date >= to) {
+                    continue;
+                }
+                Transactions transaction = new Transactions();
+                transaction.setId(new UUID(mostSignificantBits, leastSignificantBits));
+                transaction.setAccountFromNumber(accountNumbers[accountsFrom[row]]);
+                transaction.setAccountToNumber(accountNumbers[accountsTo[row]]);
+                transaction.setAmount(Money.ofMinorUnits(amount));
+                transaction.setTransactionType(TYPES[type]);
+                transaction.setTransactionDate(new Date(date));
+                found.add(transaction);
+            }
+            return found;
+        }
+    }
+
+    private DataInputStream column(FileChannel channel, int column) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(compressedLengths[column]);
+        long position = offsets[column];
+        while (compressed.hasRemaining()) {
+            int read = channel.read(compressed, position + compressed.position());
+            if (read < 0) {
+                throw new IOException("Сегмент архива " + path + " обрезан");
+            }
+        }
+        byte[] raw = new byte[rawLengths[column]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                length += inflater.inflate(raw, length, raw.length - length);
+                if (inflater.needsInput() && length < raw.length) {
+                    throw new IOException("Сегмент архива " + path + " поврежден");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Сегмент архива " + path + " поврежден", e);
+        } finally {
+            inflater.end();
+        }
+        return new DataInputStream(new ByteArrayInputStream(raw));
+    }
+
+    private int[] ints(DataInputStream column) throws IOException {
+        int[] values = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            values[row] = column.readInt();
+        }
+        return values;
+    }
+
+    private static int reference(Map<String, Integer> dictionary, String accountNumber) {
+        return accountNumber == null ? 0 : dictionary.get(accountNumber) + 1;
+    }
+
+    private static byte[] column(ColumnWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int headerSize(AccountBloomFilter bloom) {
+        return 3 * Integer.BYTES + 2 * Long.BYTES + bloom.serializedSize() + Integer.BYTES + COLUMNS * 2 * Integer.BYTES;
+    }
+
+    private static long[] offsets(int headerSize, int[] compressedLengths) {
+        long[] offsets = new long[COLUMNS];
+        long offset = headerSize;
+        for (int column = 0; column < COLUMNS; column++) {
+            offsets[column] = offset;
+            offset += compressedLengths[column];
+        }
+        return offsets;
+    }
+
+    private interface ColumnWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
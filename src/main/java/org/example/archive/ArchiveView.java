@@ -0,0 +1,106 @@
+package org.example.archive;
+
+import org.example.model.Transactions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Сегменты архива шарда, зафиксированные вместе с чтением горячей таблицы. Сегменты неизменяемы,
+ * поэтому поток можно читать и после выхода из TransactionArchive.read.
+ */
+public class ArchiveView {
+    private final List<ArchiveSegment> segments;
+
+    ArchiveView(List<ArchiveSegment> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Исходящие операции счета за [from, to) (null - без ограничения), при incoming еще и входящие
+     * с других счетов, в порядке TransactionArchive.OLDEST_FIRST или NEWEST_FIRST. Распаковываются
+     * только сегменты, чей диапазон дат и фильтр Блума допускают операции счета, и только когда
+     * их строки могут оказаться следующими в порядке выдачи.
+     */
+    public Stream<Transactions> stream(String accountNumber, boolean incoming, Date from, Date to, boolean newestFirst) {
+        long periodFrom = from == null ? Long.MIN_VALUE : from.getTime();
+        long periodTo = to == null ? Long.MAX_VALUE : to.getTime();
+        Comparator<ArchiveSegment> segmentOrder = newestFirst
+                ? Comparator.comparingLong(ArchiveSegment::maxDate).reversed()
+                : Comparator.comparingLong(ArchiveSegment::minDate);
+        List<ArchiveSegment> candidates = segments.stream()
+                .filter(segment -> segment.mightContain(accountNumber, periodFrom, periodTo))
+                .sorted(segmentOrder)
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            return Stream.empty();
+        }
+        Iterator<Transactions> iterator = new SegmentIterator(candidates, accountNumber, incoming, periodFrom, periodTo,
+                newestFirst);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+                false);
+    }
+
+    /**
+     * Диапазоны дат сегментов могут пересекаться, поэтому строки идут через очередь с приоритетом:
+     * следующий сегмент распаковывается, пока его граница не дальше головы очереди
+     */
+    private static final class SegmentIterator implements Iterator<Transactions> {
+        private final List<ArchiveSegment> segments;
+        private final String accountNumber;
+        private final boolean incoming;
+        private final long from;
+        private final long to;
+        private final boolean newestFirst;
+        private final PriorityQueue<Transactions> queue;
+        private int next;
+
+        private SegmentIterator(List<ArchiveSegment> segments, String accountNumber, boolean incoming, long from, long to,
+                                boolean newestFirst) {
+            this.segments = segments;
+            this.accountNumber = accountNumber;
+            this.incoming = incoming;
+            this.from = from;
+            this.to = to;
+            this.newestFirst = newestFirst;
+            this.queue = new PriorityQueue<>(newestFirst ? TransactionArchive.NEWEST_FIRST : TransactionArchive.OLDEST_FIRST);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next < segments.size() && (queue.isEmpty() || mayPrecede(segments.get(next), queue.peek()))) {
+                ArchiveSegment segment = segments.get(next++);
+                try {
+                    queue.addAll(segment.find(accountNumber, incoming, from, to));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Не удалось прочитать сегмент архива " + segment.path(), e);
+                }
+            }
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Transactions next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return queue.poll();
+        }
+
+        private boolean mayPrecede(ArchiveSegment segment, Transactions head) {
+            long date = head.getTransactionDate().getTime();
+            return newestFirst ? segment.maxDate() >= date : segment.minDate() <= date;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package org.example.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.BankProperties;
+import org.example.id.TimeOrderedUuid;
+import org.example.model.Transactions;
+import org.example.repository.TransactionRepository;
+import org.example.shard.ShardRouter;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Архив холодной истории операций. Фоновый поток переносит операции старше bank.archive.age
+ * из Transactions в неизменяемые сегменты на диске (ArchiveSegment), по отдельному каталогу на шард.
+ * Список сегментов шарда хранится в Archive_Segments: строка сегмента добавляется в одной транзакции
+ * с удалением его строк из Transactions, поэтому операция всегда находится ровно в одном месте.
+ * Чтение горячей таблицы и выбор сегментов выполняются в read() под одной блокировкой с фиксацией
+ * этой транзакции, так что запрос не видит строку дважды и не теряет ее.
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class TransactionArchive implements SmartInitializingSingleton {
+    /**
+     * Порядок (дата, id); id сравниваются как в H2 - без знака
+     */
+    public static final Comparator<Transactions> OLDEST_FIRST = Comparator.comparing(Transactions::getTransactionDate)
+            .thenComparing(Transactions::getId, TransactionArchive::compareIds);
+    public static final Comparator<Transactions> NEWEST_FIRST = OLDEST_FIRST.reversed();
+
+    private static final String SELECT_SQL = "SELECT File_Name FROM Archive_Segments ORDER BY Min_Date";
+    private static final String INSERT_SQL = "INSERT INTO Archive_Segments (File_Name, Min_Date, Max_Date, Row_Count) "
+            + "VALUES (?, ?, ?, ?)";
+    private static final String SEGMENT_SUFFIX = ".segment";
+
+    private final TransactionRepository transactionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final BankProperties.Archive properties;
+    private final Path directory;
+    private final Map<Integer, List<ArchiveSegment>> segments = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transaction-archiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TransactionArchive(TransactionRepository transactionRepository, JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager, ShardRouter shardRouter,
+                              BankProperties properties) {
+        this.transactionRepository = transactionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.properties = properties.getArchive();
+        this.directory = Paths.get(this.properties.getDirectory());
+    }
+
+    /**
+     * Сегменты открываются и при выключенной архивации: уже перенесенная история должна оставаться видна
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            open(shard);
+        }
+        if (properties.isEnabled()) {
+            long interval = properties.getInterval().toMillis();
+            archiver.scheduleWithFixedDelay(this::archiveSafely, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        archiver.shutdownNow();
+    }
+
+    /**
+     * Выполняет чтение горячей таблицы текущего шарда вместе с выбором сегментов архива
+     */
+    public <T> T read(Function<ArchiveView, T> read) {
+        commitLock.readLock().lock();
+        try {
+            return read.apply(new ArchiveView(segments.getOrDefault(shardRouter.currentShard(), Collections.emptyList())));
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    public void archiveAll() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            archive(shard);
+        }
+    }
+
+    /**
+     * Сливает два упорядоченных потока; при равенстве первой идет строка горячей таблицы
+     */
+    public static Stream<Transactions> merge(Stream<Transactions> hot, Stream<Transactions> archived,
+                                             Comparator<Transactions> order) {
+        Iterator<Transactions> merged;
+        try {
+            merged = new MergeIterator(hot.iterator(), archived.iterator(), order);
+        } catch (RuntimeException e) {
+            hot.close();
+            archived.close();
+            throw e;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(hot::close)
+                .onClose(archived::close);
+    }
+
+    private void archiveSafely() {
+        try {
+            archiveAll();
+        } catch (RuntimeException e) {
+            log.error("Ошибка архивации операций, повтор через {}", properties.getInterval(), e);
+        }
+    }
+
+    private void archive(int shard) {
+        Date before = new Date(System.currentTimeMillis() - properties.getAge().toMillis());
+        int segmentRows = properties.getSegmentRows();
+        List<Transactions> oldest;
+        do {
+            oldest = shardRouter.executeOnShard(shard, () -> transactionRepository.findOldest(before, segmentRows));
+            if (!oldest.isEmpty()) {
+                archive(shard, new ArrayList<>(oldest));
+            }
+        } while (oldest.size() == segmentRows);
+    }
+
+    private void archive(int shard, List<Transactions> transactions) {
+        long start = System.nanoTime();
+        transactions.sort(OLDEST_FIRST);
+        Path shardDirectory = shardDirectory(shard);
+        String fileName = String.format("%015d-%s%s", transactions.get(0).getTransactionDate().getTime(),
+                TimeOrderedUuid.next(), SEGMENT_SUFFIX);
+        ArchiveSegment segment;
+        try {
+            Files.createDirectories(shardDirectory);
+            segment = ArchiveSegment.write(shardDirectory.resolve(fileName), transactions, properties.getBloomBitsPerAccount());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать сегмент архива в " + shardDirectory, e);
+        }
+        List<UUID> ids = transactions.stream().map(Transactions::getId).collect(Collectors.toList());
+        try {
+            shardRouter.runOnShard(shard, () -> transactionTemplate.executeWithoutResult(status -> {
+                transactionRepository.deleteAllByIds(ids);
+                jdbcTemplate.update(INSERT_SQL, fileName, new Timestamp(segment.minDate()), new Timestamp(segment.maxDate()),
+                        segment.rows());
+                TransactionSynchronizationManager.registerSynchronization(new CommitSynchronization(shard, segment));
+            }));
+        } catch (RuntimeException e) {
+            deleteQuietly(segment.path());
+            throw e;
+        }
+        log.info("Шард {}: {} операций за {} - {} перенесены в архив {} ({} байт) за {} мс", shard, segment.rows(),
+                new Date(segment.minDate()), new Date(segment.maxDate()), fileName, segment.path().toFile().length(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Открывает сегменты из Archive_Segments шарда; файлы, не попавшие туда (сбой между записью файла
+     * и фиксацией или БД восстановлена из более раннего снимка), удаляются
+     */
+    private void open(int shard) {
+        Path shardDirectory = shardDirectory(shard);
+        List<String> fileNames = shardRouter.executeOnShard(shard, () -> jdbcTemplate.queryForList(SELECT_SQL, String.class));
+        List<ArchiveSegment> opened = new ArrayList<>(fileNames.size());
+        try {
+            for (String fileName : fileNames) {
+                Path path = shardDirectory.resolve(fileName);
+                if (!Files.exists(path)) {
+                    throw new IllegalStateException(String.format("Сегмент архива %1$s из Archive_Segments не найден", path));
+                }
+                opened.add(ArchiveSegment.open(path));
+            }
+            if (Files.isDirectory(shardDirectory)) {
+                Set<String> registered = new HashSet<>(fileNames);
+                try (Stream<Path> files = Files.list(shardDirectory)) {
+                    files.filter(path -> !registered.contains(path.getFileName().toString())).forEach(path -> {
+                        log.warn("Шард {}: файл {} не зарегистрирован в Archive_Segments и удаляется", shard, path);
+                        deleteQuietly(path);
+                    });
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть архив операций в " + shardDirectory, e);
+        }
+        segments.put(shard, Collections.unmodifiableList(opened));
+        if (!opened.isEmpty()) {
+            log.info("Шард {}: открыто сегментов архива: {}, операций: {}", shard, opened.size(),
+                    opened.stream().mapToLong(ArchiveSegment::rows).sum());
+        }
+    }
+
+    private Path shardDirectory(int shard) {
+        return directory.resolve("shard-" + shard);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить {}", path, e);
+        }
+    }
+
+    private static int compareIds(UUID first, UUID second) {
+        int high = Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(first.getLeastSignificantBits(), second.getLeastSignificantBits());
+    }
+
+    /**
+     * Фиксация удаления строк и публикация сегмента читателям идут под commitLock:
+     * read() видит либо строки в Transactions, либо сегмент, но не оба и не ни одного
+     */
+    private final class CommitSynchronization implements TransactionSynchronization {
+        private final int shard;
+        private final ArchiveSegment segment;
+
+        private CommitSynchronization(int shard, ArchiveSegment segment) {
+            this.shard = shard;
+            this.segment = segment;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            commitLock.writeLock().lock();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (!commitLock.writeLock().isHeldByCurrentThread()) {
+                return;
+            }
+            try {
+                if (status == STATUS_COMMITTED) {
+                    List<ArchiveSegment> published = new ArrayList<>(segments.getOrDefault(shard, Collections.emptyList()));
+                    published.add(segment);
+                    segments.put(shard, Collections.unmodifiableList(published));
+                }
+            } finally {
+                commitLock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static final class MergeIterator implements Iterator<Transactions> {
+        private final Iterator<Transactions> first;
+        private final Iterator<Transactions> second;
+        private final Comparator<Transactions> order;
+        private Transactions nextFirst;
+        private Transactions nextSecond;
+
+        private MergeIterator(Iterator<Transactions> first, Iterator<Transactions> second, Comparator<Transactions> order) {
+            this.first = first;
+            this.second = second;
+            this.order = order;
+            this.nextFirst = first.hasNext() ? first.next() : null;
+            this.nextSecond = second.hasNext() ? second.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextFirst != null || nextSecond != null;
+        }
+
+        @Override
+        public Transactions next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Transactions result;
+            if (nextSecond == null || nextFirst != null && order.compare(nextFirst, nextSecond) <= 0) {
+                result = nextFirst;
+                nextFirst = first.hasNext() ? first.next() : null;
+            } else {
+                result = nextSecond;
+                nextSecond = second.hasNext() ? second.next() : null;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.concurrent;
+
+import org.example.config.BankProperties;
+import org.example.metrics.TransactionMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Полосатые (striped) блокировки лицевых счетов.
+ * Блокировки всегда берутся в порядке возрастания номера полосы, поэтому
+ * перевод A -> B и встречный B -> A не могут взаимно заблокироваться.
+ * Внутри транзакции блокировки удерживаются до её завершения (commit/rollback),
+ * чтобы следующий поток читал уже зафиксированный баланс.
+ */
+@Component
+public class AccountLockManager {
+    private final ReentrantLock[] stripes;
+    private final TransactionMetrics metrics;
+    private final HotAccounts hotAccounts;
+
+    public AccountLockManager(BankProperties properties, TransactionMetrics metrics, HotAccounts hotAccounts) {
+        this.metrics = metrics;
+        this.hotAccounts = hotAccounts;
+        int size = properties.getLock().getStripes();
+        if (size <= 0) {
+            throw new IllegalArgumentException("Количество полос блокировок должно быть положительным");
+        }
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public void runLocked(Collection<String> accountNumbers, Runnable action) {
+        executeLocked(accountNumbers, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T executeLocked(Collection<String> accountNumbers, Supplier<T> action) {
+        int[] indexes = stripeIndexes(accountNumbers);
+        long waitNanos = lockAll(indexes);
+        hotAccounts.recordLockWait(accountNumbers, waitNanos);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        unlockAll(indexes);
+                    }
+                });
+            } catch (RuntimeException e) {
+                unlockAll(indexes);
+                throw e;
+            }
+            return action.get();
+        }
+
+        try {
+            return action.get();
+        } finally {
+            unlockAll(indexes);
+        }
+    }
+
+    int stripeIndex(String accountNumber) {
+        int hash = accountNumber.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), stripes.length);
+    }
+
+    private int[] stripeIndexes(Collection<String> accountNumbers) {
+        return accountNumbers.stream()
+                .filter(Objects::nonNull)
+                .mapToInt(this::stripeIndex)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    private long lockAll(int[] indexes) {
+        long start = System.nanoTime();
+        for (int i = 0; i < indexes.length; i++) {
+            try {
+                stripes[indexes[i]].lockInterruptibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unlockAll(indexes, i);
+                throw new IllegalStateException("Ожидание блокировки лицевого счета прервано", e);
+            }
+        }
+        long waitNanos = System.nanoTime() - start;
+        metrics.recordLockWait(waitNanos);
+        return waitNanos;
+    }
+
+    private void unlockAll(int[] indexes) {
+        unlockAll(indexes, indexes.length);
+    }
+
+    private void unlockAll(int[] indexes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.concurrent;
+
+import org.example.config.BankProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Горячие счета - счета, на которые зачисления идут так часто, что потоки выстраиваются в очередь
+ * за блокировкой счета. Часть задана в bank.hot-accounts.accounts, остальные при auto-detect
+ * находятся по долгому ожиданию блокировок и остаются горячими, пока на них идут зачисления.
+ */
+@Component
+public class HotAccounts {
+    private final Set<String> configured;
+    private final boolean autoDetect;
+    private final long contendedWaitNanos;
+    private final int detectionThreshold;
+    private final long detectionWindowMillis;
+    private final long cooldownMillis;
+    private final Map<String, Contention> contentions = new ConcurrentHashMap<>();
+    private final Map<String, Long> detectedUntil = new ConcurrentHashMap<>();
+
+    public HotAccounts(BankProperties properties) {
+        BankProperties.HotAccounts hotAccounts = properties.getHotAccounts();
+        this.configured = Set.copyOf(hotAccounts.getAccounts());
+        this.autoDetect = hotAccounts.isAutoDetect();
+        this.contendedWaitNanos = hotAccounts.getContendedWait().toNanos();
+        this.detectionThreshold = hotAccounts.getDetectionThreshold();
+        this.detectionWindowMillis = hotAccounts.getDetectionWindow().toMillis();
+        this.cooldownMillis = hotAccounts.getCooldown().toMillis();
+    }
+
+    public boolean isEnabled() {
+        return autoDetect || !configured.isEmpty();
+    }
+
+    public boolean isHot(String accountNumber) {
+        if (configured.contains(accountNumber)) {
+            return true;
+        }
+        Long until = autoDetect ? detectedUntil.get(accountNumber) : null;
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    /**
+     * Продлевает горячий режим найденного автоматически счета: зачисления на него блокировку
+     * уже не ждут, поэтому признаком нагрузки служат сами зачисления
+     */
+    public void keepHot(String accountNumber) {
+        if (autoDetect && !configured.contains(accountNumber)) {
+            detectedUntil.put(accountNumber, System.currentTimeMillis() + cooldownMillis);
+        }
+    }
+
+    /**
+     * Вызывается после захвата блокировок счетов; короткие ожидания не учитываются
+     */
+    public void recordLockWait(Collection<String> accountNumbers, long waitNanos) {
+        if (!autoDetect || waitNanos < contendedWaitNanos) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (String accountNumber : accountNumbers) {
+            if (accountNumber != null && !configured.contains(accountNumber)
+                    && contentions.computeIfAbsent(accountNumber, key -> new Contention()).add(now)) {
+                detectedUntil.put(accountNumber, now + cooldownMillis);
+            }
+        }
+    }
+
+    /**
+     * Забывает остывшие счета и устаревшие окна подсчета конфликтов
+     */
+    public void expire() {
+        long now = System.currentTimeMillis();
+        detectedUntil.values().removeIf(until -> until <= now);
+        contentions.values().removeIf(contention -> contention.isStale(now));
+    }
+
+    private final class Contention {
+        private long windowStart;
+        private int count;
+
+        synchronized boolean add(long now) {
+            if (now - windowStart >= detectionWindowMillis) {
+                windowStart = now;
+                count = 0;
+            }
+            return ++count >= detectionThreshold;
+        }
+
+        synchronized boolean isStale(long now) {
+            return now - windowStart >= detectionWindowMillis;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.example.concurrent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.BankProperties;
+import org.example.enums.TransactionType;
+import org.example.model.Transactions;
+import org.example.money.Money;
+import org.example.service.AccountService;
+import org.example.service.TransactionRecorder;
+import org.example.shard.ShardRouter;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Зачисления на горячие счета. Транзакция отправителя не блокирует счет получателя и не обновляет
+ * его строку Accounts, а только вставляет строку в Hot_Credit. Фоновый поток раз в flush-interval
+ * берет блокировку счета один раз на пачку зачислений: пишет по строке Transactions на каждое,
+ * одним UPDATE добавляет их сумму к балансу и удаляет пачку из Hot_Credit - все в одной транзакции.
+ * Пока зачисление не применено, баланс его не учитывает, так что списания видят заниженный баланс
+ * и не могут увести счет в минус.
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class HotCreditBuffer {
+    private static final String INSERT_SQL = "INSERT INTO Hot_Credit (TransactionID, Account_Number, "
+            + "Account_From_Number, Account_To_Number, Amount, Transaction_Type, Transaction_Date) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String ACCOUNTS_SQL = "SELECT DISTINCT Account_Number FROM Hot_Credit";
+    private static final String SELECT_SQL = "SELECT TransactionID, Account_From_Number, Account_To_Number, Amount, "
+            + "Transaction_Type, Transaction_Date FROM Hot_Credit WHERE Account_Number = ? ORDER BY TransactionID LIMIT ?";
+    private static final String DELETE_SQL = "DELETE FROM Hot_Credit WHERE TransactionID = ?";
+
+    private static final RowMapper<Transactions> ROW_MAPPER = (rs, rowNum) -> {
+        Transactions credit = new Transactions();
+        credit.setId(rs.getObject("TransactionID", UUID.class));
+        credit.setAccountFromNumber(rs.getString("Account_From_Number"));
+        credit.setAccountToNumber(rs.getString("Account_To_Number"));
+        credit.setAmount(Money.of(rs.getBigDecimal("Amount")));
+        credit.setTransactionType(TransactionType.valueOf(rs.getString("Transaction_Type")));
+        credit.setTransactionDate(rs.getTimestamp("Transaction_Date"));
+        return credit;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionRecorder transactionRecorder;
+    private final AccountService accountService;
+    private final AccountLockManager lockManager;
+    private final HotAccounts hotAccounts;
+    private final ShardRouter shardRouter;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hot-credit-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public HotCreditBuffer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           TransactionRecorder transactionRecorder, AccountService accountService,
+                           AccountLockManager lockManager, HotAccounts hotAccounts,
+                           ShardRouter shardRouter, BankProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionRecorder = transactionRecorder;
+        this.accountService = accountService;
+        this.lockManager = lockManager;
+        this.hotAccounts = hotAccounts;
+        this.shardRouter = shardRouter;
+        BankProperties.HotAccounts settings = properties.getHotAccounts();
+        this.batchSize = settings.getFlushBatchSize();
+        if (hotAccounts.isEnabled()) {
+            long intervalMillis = settings.getFlushInterval().toMillis();
+            flusher.scheduleWithFixedDelay(this::flushAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            // Строки Hot_Credit, оставшиеся от запуска с включенным режимом, применяются один раз
+            flusher.execute(this::flushAll);
+            flusher.shutdown();
+        }
+    }
+
+    /**
+     * Зачисление на счет копится в Hot_Credit, если счет горячий и лежит на текущем шарде
+     */
+    public boolean coalesces(String accountNumber) {
+        return accountNumber != null && hotAccounts.isEnabled() && shardRouter.isLocal(accountNumber)
+                && hotAccounts.isHot(accountNumber);
+    }
+
+    /**
+     * Ставит зачисления в очередь в текущей транзакции; строки Transactions для них пишет фоновый поток
+     */
+    public void stageAll(List<Transactions> credits) {
+        if (credits.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = credits.stream()
+                .map(credit -> new Object[]{credit.getId(), creditedAccount(credit), credit.getAccountFromNumber(),
+                        credit.getAccountToNumber(), credit.getAmount().toBigDecimal(), credit.getTransactionType().name(),
+                        new Timestamp(credit.getTransactionDate().getTime())})
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        credits.forEach(credit -> hotAccounts.keepHot(creditedAccount(credit)));
+    }
+
+    public void stage(Transactions credit) {
+        stageAll(Collections.singletonList(credit));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    void flushAll() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            try {
+                flush(shard);
+            } catch (RuntimeException e) {
+                log.warn("Шард {}: зачисления на горячие счета отложены до следующей попытки", shard, e);
+            }
+        }
+        hotAccounts.expire();
+    }
+
+    private void flush(int shard) {
+        List<String> accountNumbers = shardRouter.executeOnShard(shard, () -> jdbcTemplate.queryForList(ACCOUNTS_SQL, String.class));
+        for (String accountNumber : accountNumbers) {
+            int applied;
+            do {
+                applied = shardRouter.executeOnShard(shard, () -> transactionTemplate.execute(status ->
+                        lockManager.executeLocked(Collections.singletonList(accountNumber), () -> apply(accountNumber))));
+            } while (applied == batchSize);
+        }
+    }
+
+    private int apply(String accountNumber) {
+        List<Transactions> credits = jdbcTemplate.query(SELECT_SQL, ROW_MAPPER, accountNumber, batchSize);
+        if (credits.isEmpty()) {
+            return 0;
+        }
+        Money total = credits.stream().map(Transactions::getAmount).reduce(Money.ZERO, Money::plus);
+        transactionRecorder.recordAll(credits);
+        accountService.addToBalance(accountNumber, total);
+        jdbcTemplate.batchUpdate(DELETE_SQL, credits.stream()
+                .map(credit -> new Object[]{credit.getId()})
+                .collect(Collectors.toList()));
+        return credits.size();
+    }
+
+    private static String creditedAccount(Transactions credit) {
+        return TransactionType.DEPOSIT.equals(credit.getTransactionType())
+                ? credit.getAccountFromNumber()
+                : credit.getAccountToNumber();
+    }
+}
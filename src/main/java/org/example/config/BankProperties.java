@@ -0,0 +1,310 @@
+package org.example.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.example.enums.TransactionType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "bank")
+public class BankProperties {
+    private final Lock lock = new Lock();
+    private final Batch batch = new Batch();
+    private final Pin pin = new Pin();
+    private final Page page = new Page();
+    private final Stream stream = new Stream();
+    private final Journal journal = new Journal();
+    private final Idempotency idempotency = new Idempotency();
+    private final AccountImport accountImport = new AccountImport();
+    private final Shards shards = new Shards();
+    private final ReadModel readModel = new ReadModel();
+    private final HotAccounts hotAccounts = new HotAccounts();
+    private final ScheduledPayments scheduledPayments = new ScheduledPayments();
+    private final RateLimit rateLimit = new RateLimit();
+    private final Snapshot snapshot = new Snapshot();
+    private final Archive archive = new Archive();
+    private final Ledger ledger = new Ledger();
+
+    @Getter
+    @Setter
+    public static class Lock {
+        /**
+         * Количество полос (stripes) блокировок лицевых счетов
+         */
+        private int stripes = 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+        /**
+         * Максимальное количество операций в одном пакете
+         */
+        private int maxSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Pin {
+        /**
+         * Потоки, выделенные под проверку Пин-кода (BCrypt)
+         */
+        private int verifierThreads = Runtime.getRuntime().availableProcessors();
+        /**
+         * Максимум проверок в очереди, сверх него запрос отклоняется с 503
+         */
+        private int queueCapacity = 256;
+        private Duration timeout = Duration.ofSeconds(5);
+        private final Cache cache = new Cache();
+
+        @Getter
+        @Setter
+        public static class Cache {
+            private boolean enabled = true;
+            private Duration ttl = Duration.ofSeconds(30);
+            private int maxSize = 10_000;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Page {
+        private int defaultLimit = 50;
+        private int maxLimit = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Stream {
+        /**
+         * Размер выборки JDBC для потоковых запросов
+         */
+        private int fetchSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Journal {
+        /**
+         * Писать операции в журнал на диске и переносить их в БД в фоне
+         */
+        private boolean enabled = false;
+        private String directory = "journal";
+        private int segmentSize = 64 * 1024 * 1024;
+        private Duration flushInterval = Duration.ofMillis(50);
+        private int batchSize = 1000;
+        /**
+         * Сбрасывать сегмент на диск после каждой записи (защита от отключения питания, а не только от падения процесса)
+         */
+        private boolean fsync = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Idempotency {
+        /**
+         * Сколько хранится ответ по ключу идемпотентности
+         */
+        private Duration ttl = Duration.ofHours(24);
+        private int cacheSize = 100_000;
+        private Duration purgeInterval = Duration.ofMinutes(10);
+    }
+
+    @Getter
+    @Setter
+    public static class AccountImport {
+        /**
+         * Сколько записей импорта одновременно держится в памяти и вставляется одним пакетом
+         */
+        private int batchSize = 1000;
+        /**
+         * Потоки ForkJoin для хэширования Пин-кодов при импорте
+         */
+        private int hashingParallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Getter
+    @Setter
+    public static class Shards {
+        /**
+         * Количество баз H2, между которыми счета распределяются по хэшу номера; шард 0 - spring.datasource.url
+         */
+        private int count = 1;
+        /**
+         * URL остальных шардов, %d заменяется номером шарда
+         */
+        private String urlPattern = "jdbc:h2:mem:aston_shard%d;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+        /**
+         * Как часто исходящие межшардовые переводы зачисляются получателю, если их не доставили сразу после commit
+         */
+        private Duration outboxInterval = Duration.ofSeconds(1);
+        private int outboxBatchSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class ReadModel {
+        /**
+         * Насколько список счетов может отставать от зафиксированных изменений
+         */
+        private Duration maxStaleness = Duration.ofMillis(100);
+    }
+
+    @Getter
+    @Setter
+    public static class HotAccounts {
+        /**
+         * Счета, зачисления на которые всегда копятся в Hot_Credit и применяются пачкой
+         */
+        private Set<String> accounts = new HashSet<>();
+        /**
+         * Считать счет горячим, если его блокировку часто приходится ждать
+         */
+        private boolean autoDetect = false;
+        /**
+         * Ожидание блокировки дольше этого порога считается конфликтом
+         */
+        private Duration contendedWait = Duration.ofMillis(1);
+        /**
+         * Столько конфликтов за detection-window делают счет горячим
+         */
+        private int detectionThreshold = 100;
+        private Duration detectionWindow = Duration.ofSeconds(1);
+        /**
+         * Найденный автоматически счет перестает быть горячим, если на него столько времени не было зачислений
+         */
+        private Duration cooldown = Duration.ofSeconds(30);
+        private Duration flushInterval = Duration.ofMillis(20);
+        private int flushBatchSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class ScheduledPayments {
+        private boolean enabled = true;
+        /**
+         * Шаг колеса таймеров и период пробуждения планировщика
+         */
+        private Duration tick = Duration.ofMillis(100);
+        private int wheelSize = 64;
+        /**
+         * На сколько вперед платежи читаются из БД в колесо; чтение повторяется, когда остается половина
+         */
+        private Duration lookahead = Duration.ofMinutes(10);
+        private int loadPageSize = 1000;
+        /**
+         * Больше платежей в памяти не держится, остальные дочитываются по мере выполнения
+         */
+        private int maxLoaded = 200_000;
+        /**
+         * Сколько платежей выполняется за один тик; остальные сроком на этот тик ждут следующих
+         */
+        private int waveSize = 2000;
+        /**
+         * Платежи одного срока растягиваются на это окно по хэшу id, чтобы не бить в БД одним пиком
+         */
+        private Duration spread = Duration.ofMinutes(1);
+        private Duration retryDelay = Duration.ofMinutes(1);
+    }
+
+    @Getter
+    @Setter
+    public static class RateLimit {
+        private boolean enabled = true;
+        /**
+         * Запросов в секунду на счет отправителя по всем типам операций и допустимый всплеск
+         */
+        private Bucket account = new Bucket(20, 40);
+        /**
+         * Дополнительные, более строгие ограничения для отдельных типов операций
+         */
+        private Map<TransactionType, Bucket> types = new EnumMap<>(TransactionType.class);
+        /**
+         * Предельная сумма операций данного типа со счета за amount-window
+         */
+        private Map<TransactionType, BigDecimal> amounts = new EnumMap<>(TransactionType.class);
+        private Duration amountWindow = Duration.ofHours(1);
+        private int amountWindowSlots = 12;
+        /**
+         * Ограничители счетов без запросов дольше idle-timeout удаляются, а больше max-accounts не хранится:
+         * сверх этого новые счета делят один общий ограничитель
+         */
+        private Duration idleTimeout = Duration.ofMinutes(10);
+        private int maxAccounts = 100_000;
+
+        @Getter
+        @Setter
+        public static class Bucket {
+            private double permitsPerSecond;
+            private int burst;
+
+            public Bucket() {
+            }
+
+            public Bucket(double permitsPerSecond, int burst) {
+                this.permitsPerSecond = permitsPerSecond;
+                this.burst = burst;
+            }
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Snapshot {
+        /**
+         * Периодически сохранять сжатые снимки шардов на диск и загружать их при старте в пустую БД
+         */
+        private boolean enabled = false;
+        private String directory = "snapshot";
+        private Duration interval = Duration.ofMinutes(5);
+        /**
+         * Строк в одном пакете INSERT при загрузке снимка
+         */
+        private int batchSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Archive {
+        /**
+         * Переносить операции старше age из Transactions в сжатые сегменты на диске
+         */
+        private boolean enabled = false;
+        private String directory = "archive";
+        private Duration age = Duration.ofDays(365);
+        private Duration interval = Duration.ofHours(1);
+        /**
+         * Операций в одном сегменте; столько же строк удаляется из Transactions одной транзакцией
+         */
+        private int segmentRows = 50_000;
+        /**
+         * Бит фильтра Блума на номер счета: 10 дают около 1% ложных распаковок сегмента
+         */
+        private int bloomBitsPerAccount = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class Ledger {
+        /**
+         * Потоки ForkJoin для сверки балансов с итогами проводок
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        /**
+         * Счетов, читаемых одним запросом; непроверенный остаток диапазона делится пополам между подзадачами
+         */
+        private int partitionSize = 10_000;
+        /**
+         * Больше расхождений в отчет не попадает, но считаются все
+         */
+        private int maxDiscrepancies = 1000;
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.shard.ShardRouter;
+import org.example.shard.ShardRoutingDataSource;
+import org.example.snapshot.ShardSnapshots;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Источник данных из bank.shards.count баз H2. Шард 0 - spring.datasource.url, остальные
+ * строятся по bank.shards.url-pattern; миграции Flyway применяются к каждому шарду,
+ * после них в пустые шарды загружается снимок, если bank.snapshot.enabled.
+ */
+@Configuration
+public class ShardDataSourceConfig {
+
+    @Bean
+    public ShardRouter shardRouter(BankProperties properties) {
+        return new ShardRouter(properties.getShards().getCount());
+    }
+
+    @Bean
+    @Primary
+    public ShardRoutingDataSource dataSource(DataSourceProperties dataSourceProperties, BankProperties properties,
+                                             ShardRouter shardRouter) {
+        Map<Object, Object> shards = new HashMap<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            String url = shard == ShardRouter.HOME_SHARD
+                    ? dataSourceProperties.determineUrl()
+                    : String.format(properties.getShards().getUrlPattern(), shard);
+            HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .build();
+            dataSource.setPoolName("shard-" + shard);
+            shards.put(shard, dataSource);
+        }
+        return new ShardRoutingDataSource(shardRouter, shards);
+    }
+
+    @Bean
+    public FlywayMigrationStrategy shardMigrationStrategy(ShardRoutingDataSource dataSource, ShardSnapshots snapshots) {
+        return flyway -> {
+            dataSource.getShards().values().forEach(shard -> Flyway.configure()
+                    .configuration(flyway.getConfiguration())
+                    .dataSource(shard)
+                    .load()
+                    .migrate());
+            snapshots.restore();
+        };
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.config;
 
+import org.example.money.Money;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import springfox.documentation.builders.PathSelectors;
@@ -8,8 +10,15 @@ import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+import java.math.BigDecimal;
+
+/**
+ * Сканирование контроллеров Springfox заметно удлиняет старт; springfox.documentation.enabled=false
+ * (профиль lazy) отключает и автоконфигурацию, и этот Docket
+ */
 @Configuration
 @EnableSwagger2
+@ConditionalOnProperty(value = "springfox.documentation.enabled", havingValue = "true", matchIfMissing = true)
 public class SwaggerConfig {
     @Bean
     public Docket apiSwagger() {
@@ -17,6 +26,7 @@ public class SwaggerConfig {
                 .select()
                 .apis(RequestHandlerSelectors.basePackage("org.example.controller"))
                 .paths(PathSelectors.any())
-                .build();
+                .build()
+                .directModelSubstitute(Money.class, BigDecimal.class);
     }
 }
@@ -3,13 +3,30 @@ package org.example.controller;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
+import org.example.dto.AccountImportResult;
 import org.example.dto.AccountInfo;
+import org.example.dto.CursorPage;
+import org.example.enums.RecordFormat;
 import org.example.model.Account;
+import org.example.service.AccountImportService;
 import org.example.service.AccountService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @RestController
@@ -18,6 +35,8 @@ import java.util.stream.Collectors;
 @Api(tags = "Bank accounts API")
 public class AccountController {
     private final AccountService accountService;
+    private final AccountImportService accountImportService;
+    private final NdjsonWriter ndjsonWriter;
 
     @PostMapping()
     @ApiOperation("Create new bank account")
@@ -25,14 +44,48 @@ public class AccountController {
         return ResponseEntity.ok(accountService.add(accountInfo));
     }
 
+    @PostMapping(value = "/import", consumes = {StatementCsvWriter.CSV_VALUE, NdjsonWriter.NDJSON_VALUE}, produces = NdjsonWriter.NDJSON_VALUE)
+    @ApiOperation("Import bank accounts from CSV (name,balance,pinCode) or NDJSON of AccountInfo, per-record results are streamed back as NDJSON")
+    public void importAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body,
+                               HttpServletResponse response) throws IOException {
+        RecordFormat format = NdjsonWriter.NDJSON.isCompatibleWith(contentType) ? RecordFormat.NDJSON : RecordFormat.CSV;
+        Charset charset = contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+
+        response.setContentType(NdjsonWriter.NDJSON_VALUE);
+        OutputStream outputStream = response.getOutputStream();
+        Consumer<AccountImportResult> lines = ndjsonWriter.lines(outputStream);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, charset));
+        accountImportService.importAccounts(reader, format, results -> {
+            results.forEach(lines);
+            try {
+                outputStream.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     @GetMapping()
-    @ApiOperation("Get all bank accounts")
+    @ApiOperation("Get all bank accounts from the in-memory read model, ordered by account number")
     public ResponseEntity<List<AccountInfo>> getAllAccounts() {
-        List<Account> accounts = accountService.getAll();
+        return ResponseEntity.ok(accountService.getAllInfos());
+    }
 
-        List<AccountInfo> accountInfos = getAccountInfos(accounts);
+    @GetMapping("/page")
+    @ApiOperation("Get page of bank accounts, pass nextCursor of previous page to continue")
+    public ResponseEntity<CursorPage<AccountInfo>> getAccountsPage(@RequestParam(required = false) String cursor,
+                                                                   @RequestParam(required = false) Integer limit) {
+        CursorPage<Account> page = accountService.getPage(cursor, limit);
 
-        return ResponseEntity.ok(accountInfos);
+        return ResponseEntity.ok(new CursorPage<>(getAccountInfos(page.getItems()), page.getNextCursor()));
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonWriter.NDJSON_VALUE)
+    @ApiOperation("Stream all bank accounts as NDJSON")
+    public ResponseEntity<StreamingResponseBody> streamAllAccounts() {
+        StreamingResponseBody body = outputStream -> accountService.streamAll(ndjsonWriter.lines(outputStream));
+
+        return ResponseEntity.ok().contentType(NdjsonWriter.NDJSON).body(body);
     }
 
     @GetMapping("/{accountNumber}")
@@ -44,11 +97,13 @@ public class AccountController {
     @GetMapping("/maxBalance")
     @ApiOperation("Get bank account with max balance")
     public ResponseEntity<List<AccountInfo>> getAccountWithMaxBalance() {
-        List<Account> accounts = accountService.getAccountWithMaxBalance();
-
-        List<AccountInfo> accountInfos = getAccountInfos(accounts);
+        return ResponseEntity.ok(accountService.getAccountInfosWithMaxBalance());
+    }
 
-        return ResponseEntity.ok(accountInfos);
+    @GetMapping("/top")
+    @ApiOperation("Get k bank accounts with the highest balance")
+    public ResponseEntity<List<AccountInfo>> getTopAccounts(@RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.ok(accountService.getTopByBalance(k));
     }
 
     private List<AccountInfo> getAccountInfos(List<Account> accounts) {
@@ -0,0 +1,23 @@
+package org.example.controller;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.example.dto.ReconciliationReport;
+import org.example.service.LedgerReconciliationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/admin/ledger")
+@Api(tags = "Ledger reconciliation API")
+public class LedgerController {
+    private final LedgerReconciliationService reconciliationService;
+
+    @GetMapping("/reconciliation")
+    @ApiOperation("Verify every balance against opening balance plus running ledger totals, report discrepancies")
+    public ResponseEntity<ReconciliationReport> reconcile() {
+        return ResponseEntity.ok(reconciliationService.reconcile());
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.controller;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import org.example.dto.ScheduledPayment;
+import org.example.dto.ScheduledPaymentRequest;
+import org.example.service.ScheduledPaymentService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/scheduled-payments")
+@Api(tags = "Scheduled and recurring payments API")
+public class ScheduledPaymentController {
+    private static final String PIN_CODE_HEADER = "Pin-Code";
+
+    private final ScheduledPaymentService scheduledPaymentService;
+
+    @PostMapping
+    @ApiOperation("Schedule one-off or recurring PAYMENT/TRANSFER; PIN code is verified once, at scheduling")
+    public ResponseEntity<ScheduledPayment> schedule(@RequestBody ScheduledPaymentRequest request) {
+        return ResponseEntity.ok(scheduledPaymentService.schedule(request));
+    }
+
+    @GetMapping("/{accountNumber}")
+    @ApiOperation("Get scheduled payments of account with result of the last run")
+    public ResponseEntity<List<ScheduledPayment>> getByAccountNumber(@PathVariable String accountNumber) {
+        return ResponseEntity.ok(scheduledPaymentService.getByAccountNumber(accountNumber));
+    }
+
+    @DeleteMapping("/{accountNumber}/{id}")
+    @ApiOperation("Cancel scheduled payment")
+    public ResponseEntity<Void> cancel(@PathVariable String accountNumber, @PathVariable UUID id,
+                                       @RequestHeader(PIN_CODE_HEADER) String pinCode) {
+        scheduledPaymentService.cancel(accountNumber, id, pinCode);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.controller;
+
+import org.example.model.Transactions;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+@Component
+public class StatementCsvWriter {
+    public static final String CSV_VALUE = "text/csv";
+    public static final MediaType CSV = MediaType.parseMediaType(CSV_VALUE);
+
+    private static final byte[] HEADER = "TransactionID,Transaction_Date,Transaction_Type,Account_From_Number,Account_To_Number,Amount\n"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Пишет заголовок и возвращает запись строк выписки
+     */
+    public Consumer<Transactions> lines(OutputStream outputStream) throws IOException {
+        outputStream.write(HEADER);
+        StringBuilder line = new StringBuilder(128);
+        return transaction -> {
+            line.setLength(0);
+            line.append(transaction.getId()).append(',')
+                    .append(transaction.getTransactionDate().toInstant()).append(',')
+                    .append(transaction.getTransactionType()).append(',')
+                    .append(transaction.getAccountFromNumber()).append(',');
+            if (transaction.getAccountToNumber() != null) {
+                line.append(transaction.getAccountToNumber());
+            }
+            line.append(',').append(transaction.getAmount()).append('\n');
+            try {
+                outputStream.write(line.toString().getBytes(StandardCharsets.US_ASCII));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
@@ -3,28 +3,119 @@ package org.example.controller;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
+import org.example.dto.CursorPage;
 import org.example.dto.TransactionRequest;
+import org.example.dto.TransactionResult;
+import org.example.enums.RecordFormat;
+import org.example.exception.RateLimitExceededException;
+import org.example.limit.AccountRateLimiter;
+import org.example.metrics.TransactionMetrics;
 import org.example.model.Transactions;
+import org.example.service.IdempotencyService;
 import org.example.service.TransactionService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/operations")
 @Api(tags = "Bank account transactions API")
 public class TransactionController {
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int EXPORT_BUFFER_SIZE = 8192;
 
     private final TransactionService transactionService;
+    private final IdempotencyService idempotencyService;
+    private final NdjsonWriter ndjsonWriter;
+    private final StatementCsvWriter statementCsvWriter;
+    private final TransactionMetrics metrics;
+    private final AccountRateLimiter rateLimiter;
 
     @PostMapping("/process")
-    @ApiOperation("Process transaction on the bank account")
-    public ResponseEntity<String> processTransaction(@RequestBody TransactionRequest request) {
-        transactionService.processTransaction(request);
-        return ResponseEntity.status(HttpStatus.OK).body("Операция успешно выполнена");
+    @ApiOperation("Process transaction on the bank account; a repeated Idempotency-Key returns the stored response, "
+            + "a recently used one without counting against rate limits; too frequent or too large operations of an account are rejected with 429")
+    public ResponseEntity<String> processTransaction(
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody TransactionRequest request) {
+        // Повтор из кэша отдается до ограничителя: он не расходует ни маркеры, ни лимит суммы.
+        // В БД ключ ищется уже после ограничителя, чтобы поток новых ключей получал 429 без запросов к БД
+        if (idempotencyKey != null) {
+            Optional<String> cached = idempotencyService.findCachedResponse(idempotencyKey, request);
+            if (cached.isPresent()) {
+                return replayed(cached.get());
+            }
+        }
+        AccountRateLimiter.Reservation reservation = rateLimiter.check(request);
+        String response;
+        try {
+            if (idempotencyKey != null) {
+                Optional<String> stored = idempotencyService.findResponse(idempotencyKey, request);
+                if (stored.isPresent()) {
+                    reservation.release();
+                    return replayed(stored.get());
+                }
+            }
+            response = metrics.timeTransaction(request.getType(),
+                    () -> transactionService.processTransaction(request, idempotencyKey));
+        } catch (RuntimeException e) {
+            // Неудачная операция откатилась и не должна расходовать лимит суммы
+            reservation.release();
+            throw e;
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+
+    @PostMapping("/batch")
+    @ApiOperation("Process batch of transactions in a single commit; operations over the rate limits of their account "
+            + "are reported as failed results and not executed")
+    public ResponseEntity<List<TransactionResult>> processBatch(@RequestBody List<TransactionRequest> requests) {
+        transactionService.checkBatchSize(requests.size());
+        // Каждая операция пакета проходит ограничитель своего счета, как отдельный запрос
+        List<TransactionResult> results = new ArrayList<>(requests.size());
+        List<TransactionRequest> admitted = new ArrayList<>(requests.size());
+        List<Integer> indexes = new ArrayList<>(requests.size());
+        List<AccountRateLimiter.Reservation> reservations = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                reservations.add(rateLimiter.check(requests.get(i)));
+            } catch (RateLimitExceededException e) {
+                results.add(new TransactionResult(i, false, e.getMessage()));
+                continue;
+            }
+            admitted.add(requests.get(i));
+            indexes.add(i);
+        }
+        List<TransactionResult> processed;
+        try {
+            processed = admitted.isEmpty() ? Collections.emptyList() : transactionService.processBatch(admitted);
+        } catch (RuntimeException e) {
+            reservations.forEach(AccountRateLimiter.Reservation::release);
+            throw e;
+        }
+        for (TransactionResult result : processed) {
+            if (!result.isSuccess()) {
+                reservations.get(result.getIndex()).release();
+            }
+            results.add(new TransactionResult(indexes.get(result.getIndex()), result.isSuccess(), result.getMessage()));
+        }
+        results.sort(Comparator.comparingInt(TransactionResult::getIndex));
+        return ResponseEntity.ok(results);
     }
 
     @GetMapping("/{accountNumber}")
@@ -32,4 +123,70 @@ public class TransactionController {
     public ResponseEntity<List<Transactions>> getTransactionsByAccountNumber(@PathVariable String accountNumber) {
         return ResponseEntity.ok(transactionService.getTransactionsByAccountNumber(accountNumber));
     }
+
+    @GetMapping("/{accountNumber}/history")
+    @ApiOperation("Get incoming and outgoing transactions for account within [from, to), newest first")
+    public ResponseEntity<List<Transactions>> getHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        return ResponseEntity.ok(transactionService.getHistory(accountNumber, from, to));
+    }
+
+    @GetMapping("/{accountNumber}/page")
+    @ApiOperation("Get page of transactions for account, newest first; pass nextCursor of previous page to continue")
+    public ResponseEntity<CursorPage<Transactions>> getTransactionsPage(@PathVariable String accountNumber,
+                                                                        @RequestParam(required = false) String cursor,
+                                                                        @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(transactionService.getTransactionsPage(accountNumber, cursor, limit));
+    }
+
+    @GetMapping(value = "/{accountNumber}/stream", produces = NdjsonWriter.NDJSON_VALUE)
+    @ApiOperation("Stream all transactions for account as NDJSON")
+    public ResponseEntity<StreamingResponseBody> streamTransactions(@PathVariable String accountNumber) {
+        transactionService.checkAccountNumber(accountNumber);
+        StreamingResponseBody body = outputStream ->
+                transactionService.streamTransactions(accountNumber, ndjsonWriter.lines(outputStream));
+
+        return ResponseEntity.ok().contentType(NdjsonWriter.NDJSON).body(body);
+    }
+
+    @GetMapping(value = "/{accountNumber}/export", produces = {StatementCsvWriter.CSV_VALUE, NdjsonWriter.NDJSON_VALUE})
+    @ApiOperation("Export incoming and outgoing transactions for account within [from, to) as CSV or NDJSON, oldest first")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(defaultValue = "CSV") RecordFormat format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        // Ошибки запроса выявляются до начала ответа: после него код 200 и заголовки уже отправлены
+        transactionService.checkHistoryRequest(accountNumber, from, to);
+
+        boolean csv = format == RecordFormat.CSV;
+        StreamingResponseBody body = outputStream -> {
+            GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(outputStream, EXPORT_BUFFER_SIZE, true) : null;
+            OutputStream target = new BufferedOutputStream(gzip ? gzipStream : outputStream, EXPORT_BUFFER_SIZE);
+            Consumer<Transactions> lines = csv ? statementCsvWriter.lines(target) : ndjsonWriter.lines(target);
+            target.flush();
+
+            transactionService.exportHistory(accountNumber, from, to, lines);
+            target.flush();
+            if (gzipStream != null) {
+                gzipStream.finish();
+            }
+        };
+
+        String fileName = "statement-" + accountNumber + (csv ? ".csv" : ".ndjson");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(csv ? StatementCsvWriter.CSV : NdjsonWriter.NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    private static ResponseEntity<String> replayed(String response) {
+        return ResponseEntity.status(HttpStatus.OK).header(IDEMPOTENT_REPLAYED_HEADER, "true").body(response);
+    }
 }
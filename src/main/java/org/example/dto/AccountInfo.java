@@ -4,8 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
-
-import java.math.BigDecimal;
+import org.example.money.Money;
 
 @Getter
 @NoArgsConstructor
@@ -13,6 +12,10 @@ import java.math.BigDecimal;
 @Builder
 public class AccountInfo {
     private String name;
-    private BigDecimal balance;
+    private Money balance;
     private String pinCode;
+
+    public AccountInfo(String name, Money balance) {
+        this(name, balance, null);
+    }
 }
@@ -0,0 +1,22 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Счет, баланс которого не равен начальному балансу плюс сумма проводок;
+ * expected пуст, если у счета нет итогов в Ledger_Totals
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerDiscrepancy {
+    private String accountNumber;
+    private BigDecimal balance;
+    private BigDecimal expected;
+}
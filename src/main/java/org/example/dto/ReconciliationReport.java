@@ -0,0 +1,23 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationReport {
+    private long accounts;
+    private int partitions;
+    private long discrepancyCount;
+    /**
+     * Первые bank.ledger.max-discrepancies расхождений по шардам и номерам счетов
+     */
+    private List<LedgerDiscrepancy> discrepancies;
+    private long durationMillis;
+}
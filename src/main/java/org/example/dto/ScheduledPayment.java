@@ -0,0 +1,51 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.example.enums.TransactionType;
+import org.example.money.Money;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class ScheduledPayment {
+    private UUID id;
+    private String accountFromNumber;
+    private String accountToNumber;
+    private Money amount;
+    private TransactionType type;
+    private Long periodSeconds;
+    private Date nextRunAt;
+    private Date lastRunAt;
+    private String lastResult;
+
+    /**
+     * Копия с первым сроком после runAtMillis; пропущенные за время простоя сроки не наверстываются.
+     * У разового платежа следующего срока нет
+     */
+    public ScheduledPayment nextRunAfter(long runAtMillis) {
+        Date next = null;
+        if (periodSeconds != null) {
+            long periodMillis = TimeUnit.SECONDS.toMillis(periodSeconds);
+            long missed = Math.max(0, (runAtMillis - nextRunAt.getTime()) / periodMillis);
+            next = new Date(nextRunAt.getTime() + (missed + 1) * periodMillis);
+        }
+        return toBuilder().nextRunAt(next).lastRunAt(new Date(runAtMillis)).build();
+    }
+
+    public TransactionRequest toRequest() {
+        return TransactionRequest.builder()
+                .amount(amount)
+                .type(type)
+                .accountFromNumber(accountFromNumber)
+                .accountToNumber(accountToNumber)
+                .build();
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScheduledPaymentRequest {
+    /**
+     * Платеж или перевод; Пин-код проверяется один раз при создании
+     */
+    private TransactionRequest payment;
+    private Date firstRunAt;
+    /**
+     * Период повтора; без него платеж выполняется один раз
+     */
+    private Long periodSeconds;
+}
@@ -4,14 +4,13 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import org.example.enums.TransactionType;
-
-import java.math.BigDecimal;
+import org.example.money.Money;
 
 @Getter
 @Setter
 @Builder
 public class TransactionRequest {
-    private BigDecimal amount;
+    private Money amount;
     private TransactionType type;
     private String pinCode;
     private String accountFromNumber;
@@ -0,0 +1,15 @@
+package org.example.enums;
+
+/**
+ * Построчные форматы импорта и выгрузки
+ */
+public enum RecordFormat {
+    /**
+     * Значения через запятую, первая строка - заголовок
+     */
+    CSV,
+    /**
+     * Один JSON-объект на строку
+     */
+    NDJSON
+}
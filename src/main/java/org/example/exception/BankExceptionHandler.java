@@ -1,5 +1,6 @@
 package org.example.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -14,13 +15,37 @@ public class BankExceptionHandler extends ResponseEntityExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(message.getMessage());
     }
 
+    @ExceptionHandler(ScheduledPaymentNotFoundException.class)
+    public ResponseEntity<Object> handlerScheduledPaymentNotFoundException(ScheduledPaymentNotFoundException message) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(message.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Object> handlerException(Exception message) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(message.getMessage());
     }
 
-    @ExceptionHandler(value = {IncorrectPinCodeException.class, IncorrectAccountNumberException.class, InsufficientFundsException.class})
+    @ExceptionHandler(value = {IncorrectPinCodeException.class, IncorrectAccountNumberException.class, InsufficientFundsException.class,
+            IncorrectTransactionRequestException.class, IncorrectCursorException.class})
     public ResponseEntity<Object> handleTransactionExceptions(RuntimeException message) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(message.getMessage());
     }
+
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    public ResponseEntity<Object> handleIdempotencyKeyConflictException(IdempotencyKeyConflictException message) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(message.getMessage());
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<Object> handleRateLimitExceededException(RateLimitExceededException message) {
+        long retryAfterSeconds = Math.max(1, (message.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(message.getMessage());
+    }
+
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<Object> handleServiceBusyException(ServiceBusyException message) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(message.getMessage());
+    }
 }
@@ -0,0 +1,7 @@
+package org.example.exception;
+
+public class IncorrectCursorException extends RuntimeException {
+    public IncorrectCursorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.example.exception;
+
+public class IncorrectTransactionRequestException extends RuntimeException {
+    public IncorrectTransactionRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.example.exception;
+
+public class ScheduledPaymentNotFoundException extends RuntimeException {
+    public ScheduledPaymentNotFoundException(String message) {
+        super(message);
+    }
+}
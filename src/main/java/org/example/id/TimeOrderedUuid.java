@@ -0,0 +1,40 @@
+package org.example.id;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Идентификаторы в формате UUIDv7: 48 бит времени в миллисекундах, 12 бит счетчика внутри
+ * миллисекунды и 62 случайных бита. Новые ключи растут монотонно и добавляются в правый край
+ * индекса первичного ключа, а не в случайную страницу. Случайная часть берется из ThreadLocalRandom,
+ * а не из SecureRandom; счетчик продвигается CAS без блокировок.
+ */
+public final class TimeOrderedUuid {
+    private static final int COUNTER_BITS = 12;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+    private static final long VERSION = 0x7000L;
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+    private static final long RANDOM_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    /**
+     * Время в миллисекундах, сдвинутое на COUNTER_BITS, плюс счетчик. При переполнении счетчика
+     * значение заимствует следующую миллисекунду, поэтому порядок сохраняется и при отставании часов.
+     */
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private TimeOrderedUuid() {
+    }
+
+    public static UUID next() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        long stamp = LAST.updateAndGet(last -> Math.max(last + 1, now));
+        long mostSigBits = (stamp >>> COUNTER_BITS) << 16 | VERSION | (stamp & COUNTER_MASK);
+        long leastSigBits = ThreadLocalRandom.current().nextLong() & RANDOM_MASK | VARIANT;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    public static long timestampMillis(UUID uuid) {
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+}
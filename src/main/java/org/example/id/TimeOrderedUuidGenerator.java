@@ -0,0 +1,18 @@
+package org.example.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.io.Serializable;
+
+/**
+ * Генератор Hibernate для сущностей с {@code @GeneratedValue} UUID
+ */
+public class TimeOrderedUuidGenerator implements IdentifierGenerator {
+    public static final String NAME = "time-ordered-uuid";
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return TimeOrderedUuid.next();
+    }
+}
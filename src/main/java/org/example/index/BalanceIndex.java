@@ -0,0 +1,257 @@
+package org.example.index;
+
+import org.example.config.BankProperties;
+import org.example.dto.AccountInfo;
+import org.example.money.Money;
+import org.example.shard.ShardRouter;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Проекция лицевых счетов для чтения (CQRS): номер, владелец и баланс в памяти,
+ * упорядоченные по номеру и по убыванию баланса. Строится из БД при старте; после фиксации
+ * транзакций изменения ставятся в очередь и применяются отдельным потоком, не задерживая запись.
+ * Чтение не обращается к БД и видит все изменения, зафиксированные раньше, чем bank.read-model.max-staleness назад:
+ * если в очереди есть более старое событие, читатель сам дожидается применения очереди.
+ * Изменение баланса - это удаление и вставка в byBalance, поэтому упорядоченные чтения идут под блокировкой чтения.
+ */
+@Lazy(false)
+@Component
+public class BalanceIndex implements SmartInitializingSingleton {
+    private static final Comparator<Entry> BY_BALANCE_DESC = Comparator.comparingLong((Entry entry) -> entry.balance)
+            .reversed()
+            .thenComparing(entry -> entry.accountNumber);
+
+    private final NavigableMap<String, Entry> byAccountNumber = new ConcurrentSkipListMap<>();
+    private final NavigableSet<Entry> byBalance = new ConcurrentSkipListSet<>(BY_BALANCE_DESC);
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final long maxStalenessNanos;
+    private final Queue<Change> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final Lock applyLock = indexLock.writeLock();
+    private final Lock readLock = indexLock.readLock();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final ExecutorService projector = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "balance-index-projector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BalanceIndex(JdbcTemplate jdbcTemplate, ShardRouter shardRouter, BankProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.maxStalenessNanos = properties.getReadModel().getMaxStaleness().toNanos();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        projector.shutdownNow();
+    }
+
+    public void rebuild() {
+        applyLock.lock();
+        try {
+            // Очередь уже отражена в БД, повторное применение приращений исказило бы балансы
+            pending.clear();
+            byAccountNumber.clear();
+            byBalance.clear();
+            shardRouter.runOnEachShard(() -> jdbcTemplate.query("SELECT Account_Number, Name, Balance FROM Accounts",
+                    (RowCallbackHandler) rs -> put(rs.getString("Account_Number"), rs.getString("Name"), balanceOf(rs.getBigDecimal("Balance")))));
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    public void putOnCommit(String accountNumber, String name, Money balance) {
+        onCommit(() -> put(accountNumber, name, balance));
+    }
+
+    public void applyDeltaOnCommit(String accountNumber, Money delta) {
+        onCommit(() -> applyDelta(accountNumber, delta));
+    }
+
+    /**
+     * Изменения применяются под applyLock: compute в ConcurrentSkipListMap может повторять функцию при гонке
+     */
+    public void put(String accountNumber, String name, Money balance) {
+        Entry entry = new Entry(accountNumber, name, balance == null ? 0 : balance.getMinorUnits());
+        applyLock.lock();
+        try {
+            byAccountNumber.compute(accountNumber, (key, previous) -> replace(previous, entry));
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    public void applyDelta(String accountNumber, Money delta) {
+        applyLock.lock();
+        try {
+            byAccountNumber.computeIfPresent(accountNumber, (key, previous) ->
+                    replace(previous, new Entry(accountNumber, previous.name, Math.addExact(previous.balance, delta.getMinorUnits()))));
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    /**
+     * Все счета по возрастанию номера
+     */
+    public List<AccountInfo> all() {
+        catchUp();
+        List<AccountInfo> result = new ArrayList<>(byAccountNumber.size());
+        byAccountNumber.values().forEach(entry -> result.add(entry.toAccountInfo()));
+        return result;
+    }
+
+    /**
+     * Без блокировки чтения счет, баланс которого меняется, мог бы на время пропасть из byBalance
+     */
+    public List<AccountInfo> max() {
+        catchUp();
+        List<AccountInfo> result = new ArrayList<>();
+        readLock.lock();
+        try {
+            Iterator<Entry> entries = byBalance.iterator();
+            if (!entries.hasNext()) {
+                return result;
+            }
+            Entry first = entries.next();
+            result.add(first.toAccountInfo());
+            while (entries.hasNext()) {
+                Entry next = entries.next();
+                if (next.balance != first.balance) {
+                    break;
+                }
+                result.add(next.toAccountInfo());
+            }
+            return result;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public List<AccountInfo> top(int k) {
+        catchUp();
+        List<AccountInfo> result = new ArrayList<>(k);
+        readLock.lock();
+        try {
+            Iterator<Entry> entries = byBalance.iterator();
+            while (result.size() < k && entries.hasNext()) {
+                result.add(entries.next().toAccountInfo());
+            }
+            return result;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private Entry replace(Entry previous, Entry entry) {
+        if (previous != null) {
+            byBalance.remove(previous);
+        }
+        byBalance.add(entry);
+        return entry;
+    }
+
+    private static Money balanceOf(BigDecimal balance) {
+        return balance == null ? null : Money.of(balance);
+    }
+
+    private void onCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(action);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // Блокировки счетов еще удерживаются, поэтому порядок в очереди совпадает с порядком фиксации
+                enqueue(action);
+            }
+        });
+    }
+
+    private void enqueue(Runnable action) {
+        pending.add(new Change(action, System.nanoTime()));
+        if (drainScheduled.compareAndSet(false, true)) {
+            projector.execute(() -> {
+                drainScheduled.set(false);
+                drain();
+            });
+        }
+    }
+
+    private void catchUp() {
+        Change oldest = pending.peek();
+        if (oldest != null && System.nanoTime() - oldest.enqueuedAt >= maxStalenessNanos) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        applyLock.lock();
+        try {
+            Change change;
+            while ((change = pending.poll()) != null) {
+                change.action.run();
+            }
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    private static final class Change {
+        private final Runnable action;
+        private final long enqueuedAt;
+
+        private Change(Runnable action, long enqueuedAt) {
+            this.action = action;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final class Entry {
+        private final String accountNumber;
+        private final String name;
+        private final long balance;
+
+        private Entry(String accountNumber, String name, long balance) {
+            this.accountNumber = accountNumber;
+            this.name = name;
+            this.balance = balance;
+        }
+
+        private AccountInfo toAccountInfo() {
+            return new AccountInfo(name, Money.ofMinorUnits(balance));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.journal;
+
+import org.example.enums.TransactionType;
+import org.example.model.Transactions;
+import org.example.money.Money;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Компактное двоичное представление записи журнала: вид записи (byte) и номер пакета (long).
+ * Операция дальше содержит id (2 x long), дату (long, мс), сумму в копейках (long), тип (byte),
+ * номера счетов (длина byte + ASCII, длина -1 означает null). Отметки о фиксации и откате пакета
+ * состоят только из заголовка.
+ */
+final class JournalRecordCodec {
+    static final byte OPERATION = 1;
+    static final byte COMMIT = 2;
+    static final byte ROLLBACK = 3;
+
+    private static final int HEADER_SIZE = 1 + 8;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private JournalRecordCodec() {
+    }
+
+    static byte[] encode(long batch, Transactions transactions) {
+        byte[] accountFrom = bytes(transactions.getAccountFromNumber());
+        byte[] accountTo = bytes(transactions.getAccountToNumber());
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 8 * 4 + 1 + 1 + lengthOf(accountFrom) + 1 + lengthOf(accountTo));
+        buffer.put(OPERATION);
+        buffer.putLong(batch);
+        buffer.putLong(transactions.getId().getMostSignificantBits());
+        buffer.putLong(transactions.getId().getLeastSignificantBits());
+        buffer.putLong(transactions.getTransactionDate().getTime());
+        buffer.putLong(transactions.getAmount().getMinorUnits());
+        buffer.put((byte) transactions.getTransactionType().ordinal());
+        putBytes(buffer, accountFrom);
+        putBytes(buffer, accountTo);
+        return buffer.array();
+    }
+
+    static byte[] marker(byte kind, long batch) {
+        return ByteBuffer.allocate(HEADER_SIZE).put(kind).putLong(batch).array();
+    }
+
+    static byte kind(ByteBuffer record) {
+        return record.get(0);
+    }
+
+    static long batch(ByteBuffer record) {
+        return record.getLong(1);
+    }
+
+    static Transactions decode(ByteBuffer record) {
+        ByteBuffer buffer = record.duplicate();
+        buffer.position(HEADER_SIZE);
+        Transactions transactions = new Transactions();
+        transactions.setId(new UUID(buffer.getLong(), buffer.getLong()));
+        transactions.setTransactionDate(new Date(buffer.getLong()));
+        transactions.setAmount(Money.ofMinorUnits(buffer.getLong()));
+        transactions.setTransactionType(TYPES[buffer.get()]);
+        transactions.setAccountFromNumber(getString(buffer));
+        transactions.setAccountToNumber(getString(buffer));
+        return transactions;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static int lengthOf(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.put((byte) -1);
+            return;
+        }
+        buffer.put((byte) value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.get();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.US_ASCII);
+    }
+}
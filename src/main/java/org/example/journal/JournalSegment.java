@@ -0,0 +1,174 @@
+package org.example.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Файл сегмента журнала, отображенный в память.
+ * Заголовок: magic, версия, смещение, до которого записи уже перенесены в БД (checkpoint).
+ * Запись: длина (int), CRC32 (int), данные. Длина пишется последней, поэтому
+ * нулевая длина или неверная CRC означают конец журнала (в том числе оборванную запись).
+ * Версия 2: записи операций помечены номером пакета, а исход пакета - отдельной записью-отметкой.
+ */
+final class JournalSegment {
+    static final int HEADER_SIZE = 64;
+    private static final int MAGIC = 0x4A524E4C;
+    private static final int VERSION = 2;
+    private static final int CHECKPOINT_POSITION = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private volatile int writePosition;
+    private volatile boolean sealed;
+
+    private JournalSegment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path path, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        JournalSegment segment = new JournalSegment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.buffer.putLong(CHECKPOINT_POSITION, HEADER_SIZE);
+        segment.writePosition = HEADER_SIZE;
+        return segment;
+    }
+
+    static JournalSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        JournalSegment segment = new JournalSegment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        if (segment.buffer.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Файл " + path + " не является сегментом журнала операций");
+        }
+        if (segment.buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Сегмент журнала " + path + " записан версией " + segment.buffer.getInt(4)
+                    + ", ожидается " + VERSION);
+        }
+        segment.writePosition = segment.scanEnd(segment.checkpoint());
+        segment.sealed = true;
+        return segment;
+    }
+
+    /**
+     * Вызывается только под блокировкой записи журнала.
+     */
+    boolean tryAppend(byte[] record) {
+        int position = writePosition;
+        int end = position + RECORD_HEADER_SIZE + record.length;
+        if (end + 4 > buffer.capacity()) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + RECORD_HEADER_SIZE);
+        view.put(record);
+        buffer.putInt(position, record.length);
+        writePosition = end;
+        return true;
+    }
+
+    /**
+     * Передает записи начиная с from, пока consumer их принимает; возвращает позицию первой непринятой
+     * или непрочитанной записи
+     */
+    int readRecords(int from, int limit, int maxRecords, Predicate<ByteBuffer> consumer) {
+        ByteBuffer view = buffer.duplicate();
+        int position = from;
+        int count = 0;
+        while (count < maxRecords && position + RECORD_HEADER_SIZE <= limit) {
+            int length = view.getInt(position);
+            view.limit(position + RECORD_HEADER_SIZE + length);
+            view.position(position + RECORD_HEADER_SIZE);
+            boolean accepted = consumer.test(view.slice());
+            view.limit(view.capacity());
+            if (!accepted) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+            count++;
+        }
+        return position;
+    }
+
+    int checkpoint() {
+        return (int) buffer.getLong(CHECKPOINT_POSITION);
+    }
+
+    void checkpoint(int position) {
+        buffer.putLong(CHECKPOINT_POSITION, position);
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    void seal() {
+        sealed = true;
+    }
+
+    boolean isDrained() {
+        return sealed && checkpoint() == writePosition;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    Path path() {
+        return path;
+    }
+
+    void closeAndDelete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private int scanEnd(int from) {
+        int position = from;
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            int end = position + RECORD_HEADER_SIZE + length;
+            if (length <= 0 || end > buffer.capacity()) {
+                break;
+            }
+            byte[] record = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position + RECORD_HEADER_SIZE);
+            view.get(record);
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            position = end;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.journal;
+
+import lombok.RequiredArgsConstructor;
+import org.example.ledger.LedgerTotals;
+import org.example.model.Transactions;
+import org.example.service.TransactionRecorder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Пишет операции в журнал непосредственно перед фиксацией транзакции:
+ * ошибка записи в журнал откатывает изменение балансов, а подтверждение
+ * клиенту уходит только после того, как запись уже в журнале. После фиксации
+ * пакет отмечается как зафиксированный, после отката - как откаченный; без отметки
+ * о фиксации операции не переносятся в Transactions. Итоги проводок обновляются сразу, в транзакции операции.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "bank.journal", name = "enabled", havingValue = "true")
+public class JournalTransactionRecorder implements TransactionRecorder {
+    private final TransactionJournal journal;
+    private final LedgerTotals ledgerTotals;
+
+    @Override
+    public void record(Transactions transactions) {
+        recordAll(Collections.singletonList(transactions));
+    }
+
+    @Override
+    public void recordAll(List<Transactions> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        ledgerTotals.postAll(transactions);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            journal.commit(journal.append(transactions));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private Long batch;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                batch = journal.append(transactions);
+            }
+
+            @Override
+            public void afterCommit() {
+                journal.commit(batch);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED && batch != null) {
+                    journal.rollback(batch);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,281 @@
+package org.example.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.BankProperties;
+import org.example.model.Transactions;
+import org.example.repository.TransactionRepository;
+import org.example.shard.ShardRouter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Журнал операций в отображенных в память файлах сегментов.
+ * Запись операции стоит копирования в page cache; фоновый поток переносит записи
+ * в таблицу Transactions пакетами и сдвигает checkpoint сегмента. Операции одной транзакции
+ * образуют пакет, который переносится только после отметки о фиксации (commit); перенос
+ * останавливается на пакете, исход которого еще не известен. После сбоя непрочитанный хвост
+ * сегментов повторно переносится при старте без пакетов, не отмеченных как зафиксированные;
+ * перенос идемпотентен (MERGE по id).
+ */
+@Slf4j
+@Lazy(false)
+@Component
+@ConditionalOnProperty(prefix = "bank.journal", name = "enabled", havingValue = "true")
+public class TransactionJournal implements SmartInitializingSingleton, DisposableBean {
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final TransactionRepository transactionRepository;
+    private final ShardRouter shardRouter;
+    private final BankProperties.Journal properties;
+    private final Path directory;
+    private final Deque<JournalSegment> segments = new ConcurrentLinkedDeque<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transaction-journal-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Исход пакетов, еще не пройденных переносом: true - зафиксирован, false - откачен
+     */
+    private final Map<Long, Boolean> outcomes = new ConcurrentHashMap<>();
+    private volatile JournalSegment active;
+    private long segmentSequence;
+    private long batchSequence;
+
+    public TransactionJournal(TransactionRepository transactionRepository, ShardRouter shardRouter, BankProperties properties) {
+        this.transactionRepository = transactionRepository;
+        this.shardRouter = shardRouter;
+        this.properties = properties.getJournal();
+        this.directory = Paths.get(this.properties.getDirectory());
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            Files.createDirectories(directory);
+            replay();
+            appendLock.lock();
+            try {
+                roll();
+            } finally {
+                appendLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал операций в " + directory, e);
+        }
+        long interval = properties.getFlushInterval().toMillis();
+        writer.scheduleWithFixedDelay(this::drainSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Пишет операции пакетом и возвращает его номер; в БД пакет попадет после commit(batch)
+     */
+    public long append(List<Transactions> transactions) {
+        appendLock.lock();
+        long batch = ++batchSequence;
+        boolean appended = false;
+        try {
+            for (Transactions transaction : transactions) {
+                write(JournalRecordCodec.encode(batch, transaction));
+            }
+            if (properties.isFsync()) {
+                active.force();
+            }
+            appended = true;
+            return batch;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать операцию в журнал", e);
+        } finally {
+            if (!appended) {
+                // Часть пакета могла попасть в журнал: перенос должен ее пропустить, а не ждать отметки
+                outcomes.put(batch, false);
+            }
+            appendLock.unlock();
+        }
+    }
+
+    public void commit(long batch) {
+        complete(batch, true);
+    }
+
+    public void rollback(long batch) {
+        complete(batch, false);
+    }
+
+    /**
+     * Исход сначала становится известен переносу, затем пишется отметка для восстановления после сбоя
+     */
+    private void complete(long batch, boolean committed) {
+        outcomes.put(batch, committed);
+        appendLock.lock();
+        try {
+            write(JournalRecordCodec.marker(committed ? JournalRecordCodec.COMMIT : JournalRecordCodec.ROLLBACK, batch));
+            if (properties.isFsync()) {
+                active.force();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать отметку пакета в журнал", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void write(byte[] record) throws IOException {
+        if (!active.tryAppend(record)) {
+            roll();
+            if (!active.tryAppend(record)) {
+                throw new IllegalStateException("Запись журнала больше размера сегмента");
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(properties.getFlushInterval().toMillis() * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        for (JournalSegment segment : segments) {
+            segment.close();
+        }
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.seal();
+        }
+        Path path = directory.resolve(String.format("%015d-%06d%s", System.currentTimeMillis(), segmentSequence++,
+                SEGMENT_SUFFIX));
+        active = JournalSegment.create(path, properties.getSegmentSize());
+        segments.addLast(active);
+    }
+
+    private void drainSafely() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.error("Ошибка переноса журнала операций в БД, повтор при следующем запуске", e);
+        }
+    }
+
+    /**
+     * Сегменты переносятся по порядку: следующий не удаляется раньше, чем перенесены пакеты
+     * предыдущих, поэтому отметки их исхода остаются на диске до конца переноса
+     */
+    private void drain() {
+        drainLock.lock();
+        try {
+            for (JournalSegment segment : segments) {
+                if (!drainSegment(segment, outcomes::get) || !segment.isDrained()) {
+                    return;
+                }
+                segments.remove(segment);
+                segment.closeAndDelete();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Переносит зафиксированные операции сегмента; false, если перенос остановился на пакете,
+     * исход которого outcome еще не знает (null)
+     */
+    private boolean drainSegment(JournalSegment segment, Function<Long, Boolean> outcome) {
+        int limit = segment.writePosition();
+        int position = segment.checkpoint();
+        List<Transactions> batch = new ArrayList<>(properties.getBatchSize());
+        List<Long> marked = new ArrayList<>();
+        while (position < limit) {
+            int next = segment.readRecords(position, limit, properties.getBatchSize(), record -> {
+                long recordBatch = JournalRecordCodec.batch(record);
+                if (JournalRecordCodec.kind(record) != JournalRecordCodec.OPERATION) {
+                    // Отметка идет после всех операций пакета
+                    marked.add(recordBatch);
+                    return true;
+                }
+                Boolean committed = outcome.apply(recordBatch);
+                if (committed == null) {
+                    return false;
+                }
+                if (committed) {
+                    batch.add(JournalRecordCodec.decode(record));
+                }
+                return true;
+            });
+            shardRouter.groupByShard(batch, Transactions::getAccountFromNumber).forEach((shard, rows) ->
+                    shardRouter.runOnShard(shard, () -> transactionRepository.mergeAll(rows)));
+            segment.checkpoint(next);
+            // Исход забывается только после переноса: если mergeAll упал, повтор перечитает пакет с тем же исходом
+            marked.forEach(outcomes::remove);
+            marked.clear();
+            batch.clear();
+            if (next == position) {
+                return false;
+            }
+            position = next;
+        }
+        return true;
+    }
+
+    private void replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(directory)) {
+            files = paths.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<JournalSegment> recovered = new ArrayList<>(files.size());
+        Set<Long> committed = new HashSet<>();
+        for (Path file : files) {
+            JournalSegment segment = JournalSegment.open(file);
+            recovered.add(segment);
+            segment.readRecords(segment.checkpoint(), segment.writePosition(), Integer.MAX_VALUE, record -> {
+                if (JournalRecordCodec.kind(record) == JournalRecordCodec.COMMIT) {
+                    committed.add(JournalRecordCodec.batch(record));
+                }
+                return true;
+            });
+        }
+        // Пакет без отметки о фиксации не был подтвержден: его транзакция откатилась или не успела завершиться
+        for (JournalSegment segment : recovered) {
+            int pending = segment.writePosition() - segment.checkpoint();
+            drainSegment(segment, committed::contains);
+            segment.closeAndDelete();
+            if (pending > 0) {
+                log.info("Журнал {}: восстановлено {} байт операций", segment.path(), pending);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.example.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.enums.TransactionType;
+import org.example.model.Transactions;
+import org.example.money.Money;
+import org.example.shard.ShardRouter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Нарастающие итоги проводок по счетам в Ledger_Totals. Проводки выводятся из строк Transactions
+ * там, где строки пишутся, а не из изменений баланса: строка списывает сумму со счета отправителя
+ * (DEPOSIT - зачисляет на него) и зачисляет ее на счет получателя перевода. Проводки транзакции
+ * суммируются по счетам и перед фиксацией пишутся одним пакетом UPDATE - горячий счет получает
+ * одно обновление на транзакцию. Баланс счета должен быть равен Opening_Balance + Net за вычетом
+ * переводов с него, которые еще ждут строки Transactions в Hot_Credit.
+ */
+@Slf4j
+@Component
+public class LedgerTotals {
+    private static final String INSERT_SQL = "INSERT INTO Ledger_Totals (Account_Number, Opening_Balance, Net, Postings) "
+            + "VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE Ledger_Totals SET Net = Net + ?, Postings = Postings + ? "
+            + "WHERE Account_Number = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+
+    public LedgerTotals(JdbcTemplate jdbcTemplate, ShardRouter shardRouter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Заводит итоги нового счета с начальным балансом; вызывается в транзакции создания счета
+     */
+    public void open(String accountNumber, Money openingBalance) {
+        Postings postings = postings();
+        postings.totals(accountNumber).opening = openingBalance;
+        flushOutsideTransaction(postings);
+    }
+
+    /**
+     * Проводки по строкам Transactions, записанным на текущий шард в текущей транзакции.
+     * Проводятся только счета этого шарда: получатель межшардового перевода получает проводку,
+     * когда строка копируется на его шард
+     */
+    public void postAll(Collection<Transactions> rows) {
+        Postings postings = postings();
+        for (Transactions row : rows) {
+            long amount = row.getAmount().getMinorUnits();
+            if (TransactionType.DEPOSIT.equals(row.getTransactionType())) {
+                postings.post(row.getAccountFromNumber(), amount);
+                continue;
+            }
+            postings.post(row.getAccountFromNumber(), -amount);
+            if (TransactionType.TRANSFER.equals(row.getTransactionType())) {
+                postings.post(row.getAccountToNumber(), amount);
+            }
+        }
+        flushOutsideTransaction(postings);
+    }
+
+    public void post(Transactions row) {
+        postAll(Collections.singletonList(row));
+    }
+
+    /**
+     * Проводки текущей транзакции хранятся в ее синхронизации: так они не смешиваются
+     * с проводками приостановленной внешней транзакции
+     */
+    private Postings postings() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new Postings();
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Postings && ((Postings) synchronization).owner() == this) {
+                return (Postings) synchronization;
+            }
+        }
+        Postings postings = new Postings();
+        TransactionSynchronizationManager.registerSynchronization(postings);
+        return postings;
+    }
+
+    private void flushOutsideTransaction(Postings postings) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            postings.flush();
+        }
+    }
+
+    private static BigDecimal decimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, Money.SCALE);
+    }
+
+    private static final class Totals {
+        private Money opening;
+        private long net;
+        private long postings;
+    }
+
+    private final class Postings implements TransactionSynchronization {
+        /**
+         * Счета упорядочены по номеру: параллельные транзакции блокируют строки Ledger_Totals в одном порядке
+         */
+        private final Map<String, Totals> byAccount = new TreeMap<>();
+
+        private LedgerTotals owner() {
+            return LedgerTotals.this;
+        }
+
+        private Totals totals(String accountNumber) {
+            return byAccount.computeIfAbsent(accountNumber, key -> new Totals());
+        }
+
+        private void post(String accountNumber, long amount) {
+            if (accountNumber == null || !shardRouter.isLocal(accountNumber)) {
+                return;
+            }
+            Totals totals = totals(accountNumber);
+            totals.net += amount;
+            totals.postings++;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            flush();
+        }
+
+        private void flush() {
+            List<Object[]> opened = new ArrayList<>();
+            List<Object[]> posted = new ArrayList<>();
+            List<String> postedAccounts = new ArrayList<>();
+            byAccount.forEach((accountNumber, totals) -> {
+                if (totals.opening != null) {
+                    opened.add(new Object[]{accountNumber, totals.opening.toBigDecimal(), decimal(totals.net), totals.postings});
+                } else if (totals.postings > 0) {
+                    posted.add(new Object[]{decimal(totals.net), totals.postings, accountNumber});
+                    postedAccounts.add(accountNumber);
+                }
+            });
+            byAccount.clear();
+            if (!opened.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, opened);
+            }
+            if (posted.isEmpty()) {
+                return;
+            }
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, posted);
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    // Строка не заводится заново: ее отсутствие - расхождение, о котором сообщает сверка
+                    log.warn("Нет итогов проводок для счета {}, проводки не учтены", postedAccounts.get(i));
+                }
+            }
+        }
+    }
+}
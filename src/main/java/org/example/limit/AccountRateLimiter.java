@@ -0,0 +1,176 @@
+package org.example.limit;
+
+import org.example.config.BankProperties;
+import org.example.dto.TransactionRequest;
+import org.example.enums.TransactionType;
+import org.example.exception.RateLimitExceededException;
+import org.example.metrics.TransactionMetrics;
+import org.example.money.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничения частоты и суммы операций по счету отправителя, проверяемые до Пин-кода и БД.
+ * На каждый счет - корзина маркеров по всем типам, корзины отдельных типов и скользящие окна
+ * сумм; все они обновляются CAS без блокировок. Сумма операции резервируется в окне и
+ * возвращается через Reservation.release(), если операция не выполнена. При переполнении
+ * max-accounts удаляются ограничители счетов без запросов дольше idle-timeout; активные не удаляются,
+ * иначе счет начинал бы с полной корзины. Если места все равно нет, новые счета делят общий ограничитель.
+ */
+@Component
+public class AccountRateLimiter {
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final boolean enabled;
+    private final BankProperties.RateLimit settings;
+    private final long[] amountLimits;
+    private final long amountWindowNanos;
+    private final long idleNanos;
+    private final int maxAccounts;
+    private final TransactionMetrics metrics;
+    private final LongSupplier clock;
+    private final Map<String, AccountLimits> accounts = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AccountLimits overflow;
+
+    @Autowired
+    public AccountRateLimiter(BankProperties properties, TransactionMetrics metrics) {
+        this(properties, metrics, System::nanoTime);
+    }
+
+    public AccountRateLimiter(BankProperties properties, TransactionMetrics metrics, LongSupplier clock) {
+        this.settings = properties.getRateLimit();
+        this.enabled = settings.isEnabled();
+        this.metrics = metrics;
+        this.clock = clock;
+        this.amountLimits = new long[TYPES.length];
+        for (TransactionType type : TYPES) {
+            BigDecimal limit = settings.getAmounts().get(type);
+            amountLimits[type.ordinal()] = limit == null ? -1 : Money.of(limit).getMinorUnits();
+        }
+        this.amountWindowNanos = settings.getAmountWindow().toNanos();
+        this.idleNanos = settings.getIdleTimeout().toNanos();
+        this.maxAccounts = settings.getMaxAccounts();
+        this.overflow = new AccountLimits(clock.getAsLong());
+    }
+
+    /**
+     * Бросает RateLimitExceededException, если операция превышает ограничение счета отправителя;
+     * иначе возвращает резерв суммы операции в окне счета
+     */
+    public Reservation check(TransactionRequest request) throws RateLimitExceededException {
+        if (!enabled || request == null || request.getAccountFromNumber() == null) {
+            return Reservation.NONE;
+        }
+        long now = clock.getAsLong();
+        AccountLimits limits = accounts.get(request.getAccountFromNumber());
+        if (limits == null) {
+            limits = register(request.getAccountFromNumber(), now);
+        }
+        limits.lastSeen = now;
+
+        long wait = limits.account.tryAcquire(now);
+        if (wait > 0) {
+            throw rejected(request.getType(), "account", "Слишком много операций по счету", wait);
+        }
+        TransactionType type = request.getType();
+        if (type == null) {
+            return Reservation.NONE;
+        }
+        TokenBucket typeBucket = limits.types[type.ordinal()];
+        if (typeBucket != null && (wait = typeBucket.tryAcquire(now)) > 0) {
+            throw rejected(type, "type", "Слишком много операций этого типа по счету", wait);
+        }
+        SlidingWindowSum amounts = limits.amounts[type.ordinal()];
+        Money amount = request.getAmount();
+        if (amounts != null && amount != null && amount.signum() > 0
+                && !amounts.tryAdd(amount.getMinorUnits(), amountLimits[type.ordinal()], now)) {
+            throw rejected(type, "amount", "Превышена сумма операций этого типа по счету", amounts.retryAfterNanos());
+        }
+        return amounts != null && amount != null && amount.signum() > 0
+                ? new Reservation(amounts, amount.getMinorUnits(), now)
+                : Reservation.NONE;
+    }
+
+    private AccountLimits register(String accountNumber, long now) {
+        if (accounts.size() >= maxAccounts) {
+            evictIdle(now);
+            if (accounts.size() >= maxAccounts) {
+                return overflow;
+            }
+        }
+        return accounts.computeIfAbsent(accountNumber, key -> new AccountLimits(now));
+    }
+
+    private RateLimitExceededException rejected(TransactionType type, String limit, String message, long waitNanos) {
+        metrics.rateLimited(type, limit);
+        return new RateLimitExceededException(message, Duration.ofNanos(waitNanos));
+    }
+
+    private void evictIdle(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            accounts.values().removeIf(limits -> now - limits.lastSeen >= idleNanos);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Сумма операции, учтенная в скользящем окне счета
+     */
+    public static final class Reservation {
+        private static final Reservation NONE = new Reservation(null, 0, 0);
+
+        private final SlidingWindowSum window;
+        private final long amount;
+        private final long reservedAt;
+
+        private Reservation(SlidingWindowSum window, long amount, long reservedAt) {
+            this.window = window;
+            this.amount = amount;
+            this.reservedAt = reservedAt;
+        }
+
+        /**
+         * Возвращает сумму в окно, если операция отклонена или откатилась
+         */
+        public void release() {
+            if (window != null) {
+                window.release(amount, reservedAt);
+            }
+        }
+    }
+
+    private final class AccountLimits {
+        private final TokenBucket account;
+        private final TokenBucket[] types = new TokenBucket[TYPES.length];
+        private final SlidingWindowSum[] amounts = new SlidingWindowSum[TYPES.length];
+        /**
+         * Обычное поле: для вытеснения достаточно приблизительного времени, а запись без барьера дешевле
+         */
+        private long lastSeen;
+
+        private AccountLimits(long now) {
+            BankProperties.RateLimit.Bucket bucket = settings.getAccount();
+            account = new TokenBucket(bucket.getPermitsPerSecond(), bucket.getBurst(), now);
+            settings.getTypes().forEach((type, typeBucket) ->
+                    types[type.ordinal()] = new TokenBucket(typeBucket.getPermitsPerSecond(), typeBucket.getBurst(), now));
+            for (TransactionType type : TYPES) {
+                if (amountLimits[type.ordinal()] >= 0) {
+                    amounts[type.ordinal()] = new SlidingWindowSum(amountWindowNanos, settings.getAmountWindowSlots());
+                }
+            }
+            lastSeen = now;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.limit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Сумма за скользящее окно из slots отрезков. Каждый отрезок - одно long: сумма в старших
+ * 48 битах и младшие 16 бит номера отрезка, поэтому устаревший отрезок обнуляется тем же CAS,
+ * что и пополняется, без блокировок.
+ */
+public class SlidingWindowSum {
+    private static final int EPOCH_BITS = 16;
+    private static final long EPOCH_MASK = (1L << EPOCH_BITS) - 1;
+
+    private final long slotNanos;
+    private final int slots;
+    private final AtomicLongArray cells;
+
+    public SlidingWindowSum(long windowNanos, int slots) {
+        if (windowNanos <= 0 || slots <= 0) {
+            throw new IllegalArgumentException("Окно и число его отрезков должны быть положительными");
+        }
+        this.slots = slots;
+        this.slotNanos = Math.max(1, windowNanos / slots);
+        this.cells = new AtomicLongArray(slots);
+    }
+
+    /**
+     * Добавляет amount, если сумма за окно вместе с ним не превышает limit. Сначала сумма
+     * добавляется, затем проверяется и при превышении вычитается обратно: при гонке лишний отказ
+     * возможен, превышение лимита - нет
+     */
+    public boolean tryAdd(long amount, long limit, long nowNanos) {
+        long epoch = Math.floorDiv(nowNanos, slotNanos);
+        int index = (int) Math.floorMod(epoch, (long) slots);
+        add(index, epoch, amount);
+        if (sum(epoch) <= limit) {
+            return true;
+        }
+        add(index, epoch, -amount);
+        return false;
+    }
+
+    /**
+     * Возвращает amount, добавленный tryAdd в момент addedAtNanos. Если его отрезок уже вышел
+     * из окна, возвращать нечего
+     */
+    public void release(long amount, long addedAtNanos) {
+        long epoch = Math.floorDiv(addedAtNanos, slotNanos);
+        add((int) Math.floorMod(epoch, (long) slots), epoch, -amount);
+    }
+
+    public long retryAfterNanos() {
+        return slotNanos;
+    }
+
+    private void add(int index, long epoch, long amount) {
+        long tag = epoch & EPOCH_MASK;
+        while (true) {
+            long cell = cells.get(index);
+            long current = (cell & EPOCH_MASK) == tag ? cell >> EPOCH_BITS : 0;
+            if (amount < 0 && current == 0) {
+                // Отрезок уже сменился, возвращать нечего
+                return;
+            }
+            if (cells.compareAndSet(index, cell, (current + amount) << EPOCH_BITS | tag)) {
+                return;
+            }
+        }
+    }
+
+    private long sum(long epoch) {
+        long total = 0;
+        for (int i = 0; i < slots; i++) {
+            long cellEpoch = epoch - i;
+            long cell = cells.get((int) Math.floorMod(cellEpoch, (long) slots));
+            if ((cell & EPOCH_MASK) == (cellEpoch & EPOCH_MASK)) {
+                total += cell >> EPOCH_BITS;
+            }
+        }
+        return total;
+    }
+}
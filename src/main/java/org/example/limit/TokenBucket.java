@@ -0,0 +1,42 @@
+package org.example.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Корзина маркеров в форме GCRA: состояние - одно теоретическое время следующего запроса,
+ * которое продвигается CAS без блокировок. Подряд проходит до burst запросов, дальше - по одному
+ * в 1 / permitsPerSecond секунды.
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(double permitsPerSecond, int burst, long nowNanos) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Скорость и запас корзины маркеров должны быть положительными");
+        }
+        this.intervalNanos = Math.max(1, (long) (NANOS_PER_SECOND / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * burst;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Забирает маркер; 0, если он был, иначе сколько наносекунд ждать следующего
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long next = (arrival - nowNanos > 0 ? arrival : nowNanos) + intervalNanos;
+            long wait = next - nowNanos - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+}
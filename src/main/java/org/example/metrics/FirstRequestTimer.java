@@ -0,0 +1,47 @@
+package org.example.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Время от запуска JVM до ответа на первый HTTP-запрос: включает загрузку снимка и создание
+ * ленивых бинов, которые первый запрос инициализирует, в отличие от лога "Started ... in"
+ */
+@Slf4j
+@Component
+public class FirstRequestTimer extends OncePerRequestFilter {
+    private final MeterRegistry registry;
+    private final AtomicBoolean served = new AtomicBoolean();
+
+    public FirstRequestTimer(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!served.get() && served.compareAndSet(false, true)) {
+                long millis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+                TimeGauge.builder("bank.startup.first.request", () -> millis, TimeUnit.MILLISECONDS)
+                        .description("Time from JVM start to the first served HTTP request")
+                        .register(registry);
+                log.info("Первый запрос {} обслужен через {} мс после запуска JVM", request.getRequestURI(), millis);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.enums.TransactionType;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики конвейера обработки операций: полная длительность операции по типу и исходу
+ * (имя исключения для ошибок) и отдельные этапы - проверка Пин-кода, поиск счетов,
+ * ожидание блокировок и запись в БД.
+ */
+@Component
+public class TransactionMetrics {
+    public static final String SUCCESS = "success";
+    private static final String UNKNOWN_TYPE = "UNKNOWN";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> transactionTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> insufficientFundsCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rateLimitedCounters = new ConcurrentHashMap<>();
+    private final Timer pinVerification;
+    private final Counter pinCacheHits;
+    private final Counter pinCacheMisses;
+    private final Timer accountLookup;
+    private final Timer lockWait;
+    private final Timer dbFlush;
+
+    public TransactionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        pinVerification = Timer.builder("bank.pin.verification")
+                .description("BCrypt verification of PIN codes")
+                .publishPercentileHistogram()
+                .register(registry);
+        pinCacheHits = Counter.builder("bank.pin.cache").tag("result", "hit").register(registry);
+        pinCacheMisses = Counter.builder("bank.pin.cache").tag("result", "miss").register(registry);
+        accountLookup = Timer.builder("bank.account.lookup")
+                .publishPercentileHistogram()
+                .register(registry);
+        lockWait = Timer.builder("bank.lock.wait")
+                .description("Time spent waiting for per-account locks")
+                .publishPercentileHistogram()
+                .register(registry);
+        dbFlush = Timer.builder("bank.db.flush")
+                .description("Time spent writing balances and transaction rows")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public void timeTransaction(TransactionType type, Runnable action) {
+        timeTransaction(type, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T timeTransaction(TransactionType type, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            T result = action.get();
+            transactionTimer(type, SUCCESS).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            transactionTimer(type, e.getClass().getSimpleName()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    public boolean timePinVerification(Supplier<Boolean> verification) {
+        return pinVerification.record(verification);
+    }
+
+    public void pinCacheHit() {
+        pinCacheHits.increment();
+    }
+
+    public void pinCacheMiss() {
+        pinCacheMisses.increment();
+    }
+
+    public <T> T timeAccountLookup(Supplier<T> lookup) {
+        return accountLookup.record(lookup);
+    }
+
+    public void recordLockWait(long nanos) {
+        lockWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void timeDbFlush(Runnable flush) {
+        dbFlush.record(flush);
+    }
+
+    public void insufficientFunds(TransactionType type) {
+        String tag = type == null ? UNKNOWN_TYPE : type.name();
+        insufficientFundsCounters.computeIfAbsent(tag, key -> Counter.builder("bank.transaction.insufficient.funds")
+                .tag("type", key)
+                .register(registry)).increment();
+    }
+
+    public void rateLimited(TransactionType type, String limit) {
+        String typeTag = type == null ? UNKNOWN_TYPE : type.name();
+        rateLimitedCounters.computeIfAbsent(typeTag + ':' + limit, key -> Counter.builder("bank.transaction.rate.limited")
+                .description("Transactions rejected with 429 before PIN verification")
+                .tag("type", typeTag)
+                .tag("limit", limit)
+                .register(registry)).increment();
+    }
+
+    private Timer transactionTimer(TransactionType type, String outcome) {
+        String typeTag = type == null ? UNKNOWN_TYPE : type.name();
+        return transactionTimers.computeIfAbsent(typeTag + ':' + outcome, key -> Timer.builder("bank.transaction")
+                .description("Latency of processed transactions including commit")
+                .tag("type", typeTag)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
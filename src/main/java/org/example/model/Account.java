@@ -6,9 +6,11 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import org.example.exception.InsufficientFundsException;
+import org.example.id.TimeOrderedUuidGenerator;
+import org.example.money.Money;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
-import java.math.BigDecimal;
 import java.util.UUID;
 
 @Entity
@@ -20,7 +22,8 @@ import java.util.UUID;
 public class Account {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = TimeOrderedUuidGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedUuidGenerator.NAME, strategy = "org.example.id.TimeOrderedUuidGenerator")
     private UUID id;
 
     @Column(name = "Account_Number")
@@ -33,13 +36,14 @@ public class Account {
     private String pinCode;
 
     @Column(name = "Balance")
-    private BigDecimal balance;
+    private Money balance;
 
-    public void editBalance(BigDecimal amount) throws InsufficientFundsException {
-        if (balance.add(amount).compareTo(BigDecimal.ZERO) < 0){
+    public void editBalance(Money amount) throws InsufficientFundsException {
+        Money result = balance.plus(amount);
+        if (result.isNegative()) {
             throw new InsufficientFundsException("Отрицательный баланс недопустим");
         }
-        balance = balance.add(amount);
+        balance = result;
     }
 
     public String getPinCode() {
@@ -1,13 +1,16 @@
 package org.example.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.example.enums.TransactionType;
+import org.example.money.Money;
+import org.springframework.data.domain.Persistable;
 
 import javax.persistence.*;
-import java.math.BigDecimal;
 import java.util.Date;
 import java.util.UUID;
 
@@ -16,7 +19,7 @@ import java.util.UUID;
 @Setter
 @RequiredArgsConstructor
 @Table(name = "Transactions")
-public class Transactions {
+public class Transactions implements Persistable<UUID> {
     @Id
     @Column(name = "TransactionID")
     private UUID id;
@@ -28,7 +31,7 @@ public class Transactions {
     private String accountToNumber;
 
     @Column(name = "Amount")
-    private BigDecimal amount;
+    private Money amount;
 
     @Column(name = "Transaction_Type")
     @Enumerated(EnumType.STRING)
@@ -37,4 +40,25 @@ public class Transactions {
     @Column(name = "Transaction_Date", columnDefinition = "TIMESTAMP DEFAULT CURRENT_TIMESTAMP")
     @Temporal(TemporalType.TIMESTAMP)
     private Date transactionDate;
+
+    /**
+     * id назначается до сохранения, поэтому без этого флага save() выполнял бы merge:
+     * SELECT по ключу перед каждой вставкой, что к тому же разбивает пакетную вставку Hibernate
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
 }
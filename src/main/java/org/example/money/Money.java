@@ -0,0 +1,124 @@
+package org.example.money;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежная сумма в копейках (long) с масштабом столбцов DECIMAL(10, 2).
+ * Арифметика выполняется над long с проверкой переполнения и выхода за пределы столбца,
+ * BigDecimal создается только на границе с JDBC.
+ */
+@JsonSerialize(using = MoneyJsonSerializer.class)
+@JsonDeserialize(using = MoneyJsonDeserializer.class)
+public final class Money implements Comparable<Money> {
+    public static final int SCALE = 2;
+    /**
+     * Наибольшее по модулю значение DECIMAL(10, 2) в копейках
+     */
+    public static final long MAX_MINOR_UNITS = 9_999_999_999L;
+    public static final Money ZERO = new Money(0);
+
+    private static final long MINOR_PER_UNIT = 100;
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinorUnits(long minorUnits) {
+        if (minorUnits == 0) {
+            return ZERO;
+        }
+        if (minorUnits > MAX_MINOR_UNITS || minorUnits < -MAX_MINOR_UNITS) {
+            throw new ArithmeticException("Сумма выходит за пределы DECIMAL(10, 2)");
+        }
+        return new Money(minorUnits);
+    }
+
+    public static Money of(long units) {
+        return ofMinorUnits(Math.multiplyExact(units, MINOR_PER_UNIT));
+    }
+
+    public static Money of(BigDecimal value) {
+        BigDecimal scaled;
+        try {
+            scaled = value.setScale(SCALE, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Сумма должна содержать не более 2 знаков после запятой");
+        }
+        return ofMinorUnits(scaled.unscaledValue().longValueExact());
+    }
+
+    public static Money parse(String value) {
+        return of(new BigDecimal(value.trim()));
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinorUnits(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money negate() {
+        return minorUnits == 0 ? this : new Money(-minorUnits);
+    }
+
+    public Money abs() {
+        return minorUnits < 0 ? negate() : this;
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Money && minorUnits == ((Money) o).minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    /**
+     * Десятичная запись с двумя знаками после запятой, как у BigDecimal из столбца DECIMAL(10, 2)
+     */
+    @Override
+    public String toString() {
+        long abs = Math.abs(minorUnits);
+        long fraction = abs % MINOR_PER_UNIT;
+        StringBuilder result = new StringBuilder(16);
+        if (minorUnits < 0) {
+            result.append('-');
+        }
+        result.append(abs / MINOR_PER_UNIT).append('.');
+        if (fraction < 10) {
+            result.append('0');
+        }
+        return result.append(fraction).toString();
+    }
+}
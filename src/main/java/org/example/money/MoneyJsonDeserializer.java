@@ -0,0 +1,40 @@
+package org.example.money;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+
+import java.io.IOException;
+
+/**
+ * Принимает сумму числом или строкой; больше двух знаков после запятой и выход
+ * за пределы DECIMAL(10, 2) отклоняются, а не округляются
+ */
+public class MoneyJsonDeserializer extends StdDeserializer<Money> {
+
+    public MoneyJsonDeserializer() {
+        super(Money.class);
+    }
+
+    @Override
+    public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+        try {
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                return Money.of(p.getLongValue());
+            }
+            if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                return Money.of(p.getDecimalValue());
+            }
+            if (token == JsonToken.VALUE_STRING) {
+                return Money.parse(p.getText());
+            }
+        } catch (ArithmeticException | NumberFormatException | JsonProcessingException e) {
+            throw InvalidFormatException.from(p, e.getMessage(), p.getText(), Money.class);
+        }
+        return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+    }
+}
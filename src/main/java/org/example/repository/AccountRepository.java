@@ -2,22 +2,46 @@ package org.example.repository;
 
 
 import org.example.model.Account;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface AccountRepository extends JpaRepository<Account, Long> {
+public interface AccountRepository extends JpaRepository<Account, Long>, AccountRepositoryCustom {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Account saveAndFlush(Account entity);
 
     Optional<Account> findByAccountNumber(String accountNumber);
 
+    List<Account> findAllByAccountNumberIn(Collection<String> accountNumbers);
+
+    boolean existsByAccountNumber(String accountNumber);
+
+    @Query("SELECT a.pinCode FROM Account a WHERE a.accountNumber = :accountNumber")
+    Optional<String> findPinCodeByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    /**
+     * Атомарно изменяет баланс, если он не станет отрицательным.
+     * Возвращает 0, если счета нет или средств недостаточно.
+     */
+    @Modifying
+    @Query(value = "UPDATE Accounts SET Balance = COALESCE(Balance, 0) + :delta "
+            + "WHERE Account_Number = :accountNumber AND COALESCE(Balance, 0) + :delta >= 0", nativeQuery = true)
+    int addToBalance(@Param("accountNumber") String accountNumber, @Param("delta") BigDecimal delta);
+
     @Query("SELECT a FROM Account a WHERE a.balance = (SELECT MAX (b.balance) FROM Account b)")
     List<Account> findWithMaxBalance();
+
+    @Query("SELECT a FROM Account a WHERE a.accountNumber > :after ORDER BY a.accountNumber")
+    List<Account> findPageAfter(@Param("after") String after, Pageable pageable);
 }
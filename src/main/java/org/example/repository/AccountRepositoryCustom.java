@@ -0,0 +1,13 @@
+package org.example.repository;
+
+import org.example.dto.AccountInfo;
+
+import java.util.stream.Stream;
+
+public interface AccountRepositoryCustom {
+
+    /**
+     * Имена и балансы всех счетов по возрастанию номера; строки читаются порциями bank.stream.fetch-size
+     */
+    Stream<AccountInfo> streamAllInfos();
+}
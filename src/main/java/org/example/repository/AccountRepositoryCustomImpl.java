@@ -0,0 +1,31 @@
+package org.example.repository;
+
+import org.example.config.BankProperties;
+import org.example.dto.AccountInfo;
+import org.example.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.util.stream.Stream;
+
+public class AccountRepositoryCustomImpl implements AccountRepositoryCustom {
+    private static final String STREAM_SQL = "SELECT Name, Balance FROM Accounts ORDER BY Account_Number";
+
+    private static final RowMapper<AccountInfo> ROW_MAPPER = (rs, rowNum) -> {
+        BigDecimal balance = rs.getBigDecimal("Balance");
+        return new AccountInfo(rs.getString("Name"), balance == null ? null : Money.of(balance));
+    };
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public AccountRepositoryCustomImpl(JdbcTemplate jdbcTemplate, BankProperties properties) {
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(properties.getStream().getFetchSize());
+    }
+
+    @Override
+    public Stream<AccountInfo> streamAllInfos() {
+        return streamingJdbcTemplate.queryForStream(STREAM_SQL, ROW_MAPPER);
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.example.dto.ScheduledPayment;
+import org.example.dto.TransactionResult;
+import org.example.enums.TransactionType;
+import org.example.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Таблица Scheduled_Payments текущего шарда. Выборки для планировщика идут по индексу
+ * (Next_Run_At, Id) с ключевым курсором, без OFFSET и без чтения всей таблицы.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ScheduledPaymentRepository {
+    private static final String COLUMNS = "Id, Account_From_Number, Account_To_Number, Amount, Transaction_Type, "
+            + "Period_Seconds, Next_Run_At, Last_Run_At, Last_Result";
+    private static final String INSERT_SQL = "INSERT INTO Scheduled_Payments (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_SQL = "SELECT " + COLUMNS + " FROM Scheduled_Payments ";
+    private static final String CLAIM_SQL = "UPDATE Scheduled_Payments SET Next_Run_At = ?, Last_Run_At = ? "
+            + "WHERE Id = ? AND Next_Run_At = ?";
+    private static final String RESULT_SQL = "UPDATE Scheduled_Payments SET Last_Result = ? WHERE Id = ?";
+
+    private static final RowMapper<ScheduledPayment> ROW_MAPPER = (rs, rowNum) -> ScheduledPayment.builder()
+            .id(rs.getObject("Id", UUID.class))
+            .accountFromNumber(rs.getString("Account_From_Number"))
+            .accountToNumber(rs.getString("Account_To_Number"))
+            .amount(Money.of(rs.getBigDecimal("Amount")))
+            .type(TransactionType.valueOf(rs.getString("Transaction_Type")))
+            .periodSeconds(rs.getObject("Period_Seconds", Long.class))
+            .nextRunAt(rs.getTimestamp("Next_Run_At"))
+            .lastRunAt(rs.getTimestamp("Last_Run_At"))
+            .lastResult(rs.getString("Last_Result"))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insert(ScheduledPayment payment) {
+        jdbcTemplate.update(INSERT_SQL, payment.getId(), payment.getAccountFromNumber(), payment.getAccountToNumber(),
+                payment.getAmount().toBigDecimal(), payment.getType().name(), payment.getPeriodSeconds(),
+                timestamp(payment.getNextRunAt()), timestamp(payment.getLastRunAt()), payment.getLastResult());
+    }
+
+    public List<ScheduledPayment> findAllByAccountFromNumber(String accountNumber) {
+        return jdbcTemplate.query(SELECT_SQL + "WHERE Account_From_Number = ? ORDER BY Id", ROW_MAPPER, accountNumber);
+    }
+
+    public int delete(String accountNumber, UUID id) {
+        return jdbcTemplate.update("DELETE FROM Scheduled_Payments WHERE Id = ? AND Account_From_Number = ?", id, accountNumber);
+    }
+
+    /**
+     * Платежи со сроком в [from, before) по возрастанию (Next_Run_At, Id)
+     */
+    public List<ScheduledPayment> findDue(Date from, Date before, int limit) {
+        return jdbcTemplate.query(SELECT_SQL + "WHERE Next_Run_At >= ? AND Next_Run_At < ? ORDER BY Next_Run_At, Id LIMIT ?",
+                ROW_MAPPER, timestamp(from), timestamp(before), limit);
+    }
+
+    /**
+     * Продолжение выборки после платежа (afterTime, afterId)
+     */
+    public List<ScheduledPayment> findDueAfter(Date afterTime, UUID afterId, Date before, int limit) {
+        Timestamp after = timestamp(afterTime);
+        return jdbcTemplate.query(SELECT_SQL + "WHERE (Next_Run_At > ? OR Next_Run_At = ? AND Id > ?) AND Next_Run_At < ? "
+                + "ORDER BY Next_Run_At, Id LIMIT ?", ROW_MAPPER, after, after, afterId, timestamp(before), limit);
+    }
+
+    /**
+     * Переносит срок каждого платежа на следующий, если он не изменился с момента загрузки;
+     * возвращает перенесенные платежи - отмененные и уже выполненные пропускаются
+     */
+    public List<ScheduledPayment> claimAll(List<ScheduledPayment> payments, long runAtMillis) {
+        List<ScheduledPayment> advanced = payments.stream()
+                .map(payment -> payment.nextRunAfter(runAtMillis))
+                .collect(Collectors.toList());
+        List<Object[]> rows = new ArrayList<>(payments.size());
+        for (int i = 0; i < payments.size(); i++) {
+            rows.add(new Object[]{timestamp(advanced.get(i).getNextRunAt()), new Timestamp(runAtMillis),
+                    payments.get(i).getId(), timestamp(payments.get(i).getNextRunAt())});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(CLAIM_SQL, rows);
+
+        List<ScheduledPayment> claimed = new ArrayList<>(payments.size());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                claimed.add(advanced.get(i));
+            }
+        }
+        return claimed;
+    }
+
+    public void saveResults(List<ScheduledPayment> payments, List<TransactionResult> results, String successMessage) {
+        jdbcTemplate.batchUpdate(RESULT_SQL, results.stream()
+                .map(result -> new Object[]{result.isSuccess() ? successMessage : result.getMessage(),
+                        payments.get(result.getIndex()).getId()})
+                .collect(Collectors.toList()));
+    }
+
+    private static Timestamp timestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+}
@@ -1,12 +1,33 @@
 package org.example.repository;
 
 import org.example.model.Transactions;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+
 @Repository
-public interface TransactionRepository extends JpaRepository<Transactions, UUID> {
+public interface TransactionRepository extends JpaRepository<Transactions, UUID>, TransactionRepositoryCustom {
     List<Transactions> findAllByAccountFromNumber(String accountNumber);
+
+    List<Transactions> findByAccountFromNumberOrderByTransactionDateDescIdDesc(String accountNumber, Pageable pageable);
+
+    @Query("SELECT t FROM Transactions t WHERE t.accountFromNumber = :accountNumber AND (t.transactionDate < :date " +
+            "OR (t.transactionDate = :date AND t.id < :id)) ORDER BY t.transactionDate DESC, t.id DESC")
+    List<Transactions> findPageBefore(@Param("accountNumber") String accountNumber, @Param("date") Date date,
+                                      @Param("id") UUID id, Pageable pageable);
+
+    @Query(value = "SELECT * FROM Transactions WHERE Account_From_Number = :accountNumber " +
+            "AND Transaction_Date >= :from AND Transaction_Date < :to " +
+            "UNION ALL " +
+            "SELECT * FROM Transactions WHERE Account_To_Number = :accountNumber AND Account_From_Number <> :accountNumber " +
+            "AND Transaction_Date >= :from AND Transaction_Date < :to " +
+            "ORDER BY Transaction_Date DESC, TransactionID DESC", nativeQuery = true)
+    List<Transactions> findHistory(@Param("accountNumber") String accountNumber, @Param("from") Date from,
+                                   @Param("to") Date to);
 }
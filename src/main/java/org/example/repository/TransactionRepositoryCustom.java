@@ -0,0 +1,29 @@
+package org.example.repository;
+
+import org.example.model.Transactions;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface TransactionRepositoryCustom {
+
+    void insertAll(List<Transactions> transactions);
+
+    void mergeAll(List<Transactions> transactions);
+
+    Stream<Transactions> streamByAccountFromNumber(String accountNumber);
+
+    /**
+     * Входящие и исходящие операции счета за [from, to) по возрастанию даты, без сортировки на стороне БД
+     */
+    Stream<Transactions> streamHistory(String accountNumber, Date from, Date to);
+
+    /**
+     * Самые старые операции с датой раньше before, по возрастанию (дата, id)
+     */
+    List<Transactions> findOldest(Date before, int limit);
+
+    void deleteAllByIds(List<UUID> ids);
+}
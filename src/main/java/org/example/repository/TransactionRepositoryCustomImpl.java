@@ -0,0 +1,152 @@
+package org.example.repository;
+
+import org.example.config.BankProperties;
+import org.example.enums.TransactionType;
+import org.example.model.Transactions;
+import org.example.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
+    private static final String INSERT_SQL = "INSERT INTO Transactions (TransactionID, Account_From_Number, " +
+            "Account_To_Number, Amount, Transaction_Type, Transaction_Date) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String MERGE_SQL = "MERGE INTO Transactions (TransactionID, Account_From_Number, " +
+            "Account_To_Number, Amount, Transaction_Type, Transaction_Date) KEY (TransactionID) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_SQL = "SELECT TransactionID, Account_From_Number, Account_To_Number, Amount, " +
+            "Transaction_Type, Transaction_Date FROM Transactions ";
+    private static final String DELETE_SQL = "DELETE FROM Transactions WHERE TransactionID = ?";
+    private static final int BATCH_SIZE = 500;
+
+    private static final RowMapper<Transactions> ROW_MAPPER = (rs, rowNum) -> {
+        Transactions transactions = new Transactions();
+        transactions.setId(rs.getObject("TransactionID", UUID.class));
+        transactions.setAccountFromNumber(rs.getString("Account_From_Number"));
+        transactions.setAccountToNumber(rs.getString("Account_To_Number"));
+        transactions.setAmount(Money.of(rs.getBigDecimal("Amount")));
+        transactions.setTransactionType(TransactionType.valueOf(rs.getString("Transaction_Type")));
+        transactions.setTransactionDate(rs.getTimestamp("Transaction_Date"));
+        return transactions;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public TransactionRepositoryCustomImpl(JdbcTemplate jdbcTemplate, BankProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(properties.getStream().getFetchSize());
+    }
+
+    @Override
+    public void insertAll(List<Transactions> transactions) {
+        batchUpdate(INSERT_SQL, transactions);
+    }
+
+    @Override
+    public void mergeAll(List<Transactions> transactions) {
+        batchUpdate(MERGE_SQL, transactions);
+    }
+
+    @Override
+    public Stream<Transactions> streamByAccountFromNumber(String accountNumber) {
+        return streamingJdbcTemplate.queryForStream(SELECT_SQL +
+                "WHERE Account_From_Number = ? ORDER BY Transaction_Date DESC, TransactionID DESC", ROW_MAPPER, accountNumber);
+    }
+
+    @Override
+    public Stream<Transactions> streamHistory(String accountNumber, Date from, Date to) {
+        Timestamp periodFrom = new Timestamp(from.getTime());
+        Timestamp periodTo = new Timestamp(to.getTime());
+        // Каждая ветка читается по своему индексу (счет, дата) уже упорядоченной, поэтому слияние
+        // двух курсоров держит в памяти по одной строке из каждого вместо сортировки всей выборки
+        Stream<Transactions> outgoing = streamingJdbcTemplate.queryForStream(SELECT_SQL +
+                        "WHERE Account_From_Number = ? AND Transaction_Date >= ? AND Transaction_Date < ? ORDER BY Transaction_Date",
+                ROW_MAPPER, accountNumber, periodFrom, periodTo);
+        Stream<Transactions> incoming;
+        try {
+            incoming = streamingJdbcTemplate.queryForStream(SELECT_SQL +
+                            "WHERE Account_To_Number = ? AND Account_From_Number <> ? AND Transaction_Date >= ? " +
+                            "AND Transaction_Date < ? ORDER BY Transaction_Date",
+                    ROW_MAPPER, accountNumber, accountNumber, periodFrom, periodTo);
+        } catch (RuntimeException e) {
+            outgoing.close();
+            throw e;
+        }
+        Iterator<Transactions> merged = new DateMergeIterator(outgoing.iterator(), incoming.iterator());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(outgoing::close)
+                .onClose(incoming::close);
+    }
+
+    @Override
+    public List<Transactions> findOldest(Date before, int limit) {
+        return jdbcTemplate.query(SELECT_SQL + "WHERE Transaction_Date < ? ORDER BY Transaction_Date, TransactionID LIMIT ?",
+                ROW_MAPPER, new Timestamp(before.getTime()), limit);
+    }
+
+    @Override
+    public void deleteAllByIds(List<UUID> ids) {
+        jdbcTemplate.batchUpdate(DELETE_SQL, ids, BATCH_SIZE, (ps, id) -> ps.setObject(1, id));
+    }
+
+    private void batchUpdate(String sql, List<Transactions> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sql, transactions, BATCH_SIZE, (ps, transaction) -> {
+            ps.setObject(1, transaction.getId());
+            ps.setString(2, transaction.getAccountFromNumber());
+            ps.setString(3, transaction.getAccountToNumber());
+            ps.setBigDecimal(4, transaction.getAmount().toBigDecimal());
+            ps.setString(5, transaction.getTransactionType().name());
+            ps.setTimestamp(6, new Timestamp(transaction.getTransactionDate().getTime()));
+        });
+    }
+
+    private static final class DateMergeIterator implements Iterator<Transactions> {
+        private final Iterator<Transactions> first;
+        private final Iterator<Transactions> second;
+        private Transactions nextFirst;
+        private Transactions nextSecond;
+
+        private DateMergeIterator(Iterator<Transactions> first, Iterator<Transactions> second) {
+            this.first = first;
+            this.second = second;
+            this.nextFirst = first.hasNext() ? first.next() : null;
+            this.nextSecond = second.hasNext() ? second.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextFirst != null || nextSecond != null;
+        }
+
+        @Override
+        public Transactions next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Transactions result;
+            if (nextSecond == null
+                    || nextFirst != null && !nextFirst.getTransactionDate().after(nextSecond.getTransactionDate())) {
+                result = nextFirst;
+                nextFirst = first.hasNext() ? first.next() : null;
+            } else {
+                result = nextSecond;
+                nextSecond = second.hasNext() ? second.next() : null;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.example.schedule;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.BankProperties;
+import org.example.dto.ScheduledPayment;
+import org.example.dto.TransactionRequest;
+import org.example.dto.TransactionResult;
+import org.example.repository.ScheduledPaymentRepository;
+import org.example.service.TransactionService;
+import org.example.service.impl.TransactionServiceImpl;
+import org.example.shard.ShardRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Выполняет регулярные платежи. Раз в lookahead / 2 каждый шард дочитывает в колесо таймеров
+ * платежи со сроком до now + lookahead, продолжая с места прошлой выборки. Срок платежа в колесе
+ * сдвигается на долю окна spread по его id, а за тик выполняется не больше wave-size платежей,
+ * пакетами не больше bank.batch.max-size. Перенос срока и сами операции пакета фиксируются
+ * одной транзакцией шарда, поэтому после сбоя платеж не выполняется повторно.
+ * Колесом, очередью и курсорами владеет единственный поток планировщика.
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class ScheduledPaymentScheduler {
+    private final ScheduledPaymentRepository repository;
+    private final TransactionServiceImpl transactionService;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final long lookaheadMillis;
+    private final int loadPageSize;
+    private final int maxLoaded;
+    private final int waveSize;
+    private final int batchSize;
+    private final long spreadMillis;
+    private final long retryDelayMillis;
+    private final LongSupplier clock;
+    private final TimingWheel<ScheduledPayment> wheel;
+    private final Deque<ScheduledPayment> due = new ArrayDeque<>();
+    private final LoadCursor[] cursors;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "scheduled-payments");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ScheduledPaymentScheduler(ScheduledPaymentRepository repository, TransactionServiceImpl transactionService,
+                                     PlatformTransactionManager transactionManager, ShardRouter shardRouter,
+                                     BankProperties properties) {
+        this(repository, transactionService, transactionManager, shardRouter, properties, System::currentTimeMillis);
+    }
+
+    /**
+     * clock - текущее время в миллисекундах: по нему выбираются сроки платежей и строится колесо
+     */
+    public ScheduledPaymentScheduler(ScheduledPaymentRepository repository, TransactionServiceImpl transactionService,
+                                     PlatformTransactionManager transactionManager, ShardRouter shardRouter,
+                                     BankProperties properties, LongSupplier clock) {
+        this.repository = repository;
+        this.transactionService = transactionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        BankProperties.ScheduledPayments settings = properties.getScheduledPayments();
+        this.enabled = settings.isEnabled();
+        this.lookaheadMillis = settings.getLookahead().toMillis();
+        this.loadPageSize = settings.getLoadPageSize();
+        this.maxLoaded = settings.getMaxLoaded();
+        this.waveSize = settings.getWaveSize();
+        this.batchSize = properties.getBatch().getMaxSize();
+        this.spreadMillis = settings.getSpread().toMillis();
+        this.retryDelayMillis = settings.getRetryDelay().toMillis();
+        this.clock = clock;
+        long tickMillis = settings.getTick().toMillis();
+        this.wheel = new TimingWheel<>(tickMillis, settings.getWheelSize(), clock.getAsLong());
+        this.cursors = new LoadCursor[shardRouter.getShardCount()];
+        for (int shard = 0; shard < cursors.length; shard++) {
+            cursors[shard] = new LoadCursor();
+        }
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Сообщает о новом платеже: если его срок уже позади курсора загрузки, он сразу попадает в колесо
+     */
+    public void scheduled(ScheduledPayment payment) {
+        if (enabled) {
+            scheduler.execute(() -> track(shardRouter.shardOf(payment.getAccountFromNumber()), payment));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    void tick() {
+        try {
+            long now = clock.getAsLong();
+            load(now);
+            wheel.advance(now, due::add);
+            runWave(now);
+        } catch (RuntimeException e) {
+            log.warn("Ошибка планировщика регулярных платежей", e);
+        }
+    }
+
+    private void load(long now) {
+        Date horizon = new Date(now + lookaheadMillis);
+        for (int shard = 0; shard < cursors.length; shard++) {
+            LoadCursor cursor = cursors[shard];
+            if (cursor.isComplete() && cursor.loadedBefore.getTime() >= now + lookaheadMillis / 2) {
+                continue;
+            }
+            List<ScheduledPayment> page;
+            do {
+                if (wheel.size() + due.size() >= maxLoaded) {
+                    return;
+                }
+                page = shardRouter.executeOnShard(shard, () -> cursor.isComplete()
+                        ? repository.findDue(cursor.loadedBefore, horizon, loadPageSize)
+                        : repository.findDueAfter(cursor.lastTime, cursor.lastId, horizon, loadPageSize));
+                page.forEach(this::enqueue);
+                cursor.advance(page, page.size() < loadPageSize, horizon);
+            } while (page.size() == loadPageSize);
+        }
+    }
+
+    private void runWave(long now) {
+        List<ScheduledPayment> wave = new ArrayList<>(Math.min(waveSize, due.size()));
+        while (wave.size() < waveSize && !due.isEmpty()) {
+            wave.add(due.poll());
+        }
+        shardRouter.groupByShard(wave, ScheduledPayment::getAccountFromNumber).forEach((shard, payments) -> {
+            for (int from = 0; from < payments.size(); from += batchSize) {
+                execute(shard, payments.subList(from, Math.min(from + batchSize, payments.size())), now);
+            }
+        });
+    }
+
+    private void execute(int shard, List<ScheduledPayment> payments, long now) {
+        List<ScheduledPayment> claimed;
+        try {
+            claimed = shardRouter.executeOnShard(shard, () -> transactionTemplate.execute(status -> {
+                List<ScheduledPayment> advanced = repository.claimAll(payments, now);
+                if (advanced.isEmpty()) {
+                    return advanced;
+                }
+                List<TransactionRequest> requests = advanced.stream()
+                        .map(ScheduledPayment::toRequest)
+                        .collect(Collectors.toList());
+                List<TransactionResult> results = transactionService.processScheduledBatch(requests);
+                repository.saveResults(advanced, results, TransactionService.PROCESSED_MESSAGE);
+                return advanced;
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Шард {}: {} регулярных платежей отложены на {} мс", shard, payments.size(), retryDelayMillis, e);
+            payments.forEach(payment -> {
+                if (!wheel.add(payment, now + retryDelayMillis)) {
+                    due.add(payment);
+                }
+            });
+            return;
+        }
+        claimed.forEach(payment -> track(shard, payment));
+    }
+
+    private void track(int shard, ScheduledPayment payment) {
+        if (payment.getNextRunAt() != null && cursors[shard].covers(payment)) {
+            enqueue(payment);
+        }
+    }
+
+    private void enqueue(ScheduledPayment payment) {
+        long offset = spreadMillis > 0 ? Math.floorMod(payment.getId().getLeastSignificantBits(), spreadMillis) : 0;
+        if (!wheel.add(payment, payment.getNextRunAt().getTime() + offset)) {
+            due.add(payment);
+        }
+    }
+
+    /**
+     * Граница загруженного: все платежи со сроком до loadedBefore либо, посреди выборки,
+     * все платежи до (lastTime, lastId) включительно в порядке индекса
+     */
+    private static final class LoadCursor {
+        private Date loadedBefore = new Date(0);
+        private Date lastTime;
+        private UUID lastId;
+
+        boolean isComplete() {
+            return lastTime == null;
+        }
+
+        void advance(List<ScheduledPayment> page, boolean lastPage, Date horizon) {
+            if (lastPage) {
+                loadedBefore = horizon;
+                lastTime = null;
+                lastId = null;
+            } else {
+                ScheduledPayment last = page.get(page.size() - 1);
+                lastTime = last.getNextRunAt();
+                lastId = last.getId();
+            }
+        }
+
+        boolean covers(ScheduledPayment payment) {
+            long time = payment.getNextRunAt().getTime();
+            if (isComplete()) {
+                return time < loadedBefore.getTime();
+            }
+            return time < lastTime.getTime()
+                    || time == lastTime.getTime() && compareUnsigned(payment.getId(), lastId) <= 0;
+        }
+
+        private static int compareUnsigned(UUID left, UUID right) {
+            int high = Long.compareUnsigned(left.getMostSignificantBits(), right.getMostSignificantBits());
+            return high != 0 ? high : Long.compareUnsigned(left.getLeastSignificantBits(), right.getLeastSignificantBits());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров: wheelSize ячеек по tickMillis, записи дальше оборота колеса
+ * лежат в колесе следующего уровня с ячейкой в целый оборот текущего и спускаются вниз по мере
+ * приближения срока. Добавление и продвижение на тик - O(1) независимо от числа записей.
+ * Класс не потокобезопасен: им владеет один поток планировщика.
+ */
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long intervalMillis;
+    private final List<List<Entry<T>>> buckets;
+    private long currentTime;
+    private TimingWheel<T> overflowWheel;
+    private int size;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 1) {
+            throw new IllegalArgumentException("Тик колеса должен быть положительным, а ячеек должно быть больше одной");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.intervalMillis = tickMillis * wheelSize;
+        this.currentTime = startMillis - Math.floorMod(startMillis, tickMillis);
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Кладет запись в колесо; false, если её срок уже наступил. Срок округляется вверх до тика,
+     * поэтому запись никогда не выдается раньше срока и опаздывает меньше чем на тик
+     */
+    public boolean add(T item, long dueMillis) {
+        return add(new Entry<>(item, dueMillis + tickMillis - 1));
+    }
+
+    /**
+     * Продвигает колесо до now и передает в expired записи, срок которых наступил, в порядке тиков
+     */
+    public void advance(long now, Consumer<T> expired) {
+        advanceEntries(now, entry -> expired.accept(entry.item));
+    }
+
+    public int size() {
+        return overflowWheel == null ? size : size + overflowWheel.size();
+    }
+
+    private boolean add(Entry<T> entry) {
+        if (entry.dueMillis < currentTime + tickMillis) {
+            return false;
+        }
+        if (entry.dueMillis < currentTime + intervalMillis) {
+            buckets.get((int) Math.floorMod(entry.dueMillis / tickMillis, (long) wheelSize)).add(entry);
+            size++;
+            return true;
+        }
+        return overflowWheel().add(entry);
+    }
+
+    private void advanceEntries(long now, Consumer<Entry<T>> expired) {
+        while (currentTime + tickMillis <= now) {
+            currentTime += tickMillis;
+            if (overflowWheel != null) {
+                // Записи, чей оборот наступил, переходят из верхнего колеса в ячейки этого
+                overflowWheel.advanceEntries(currentTime, entry -> {
+                    if (!add(entry)) {
+                        expired.accept(entry);
+                    }
+                });
+            }
+            List<Entry<T>> bucket = buckets.get((int) Math.floorMod(currentTime / tickMillis, (long) wheelSize));
+            if (!bucket.isEmpty()) {
+                List<Entry<T>> entries = new ArrayList<>(bucket);
+                bucket.clear();
+                size -= entries.size();
+                entries.forEach(expired);
+            }
+        }
+    }
+
+    private TimingWheel<T> overflowWheel() {
+        if (overflowWheel == null) {
+            overflowWheel = new TimingWheel<>(intervalMillis, wheelSize, currentTime);
+        }
+        return overflowWheel;
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final long dueMillis;
+
+        private Entry(T item, long dueMillis) {
+            this.item = item;
+            this.dueMillis = dueMillis;
+        }
+    }
+}
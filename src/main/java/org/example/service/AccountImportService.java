@@ -0,0 +1,18 @@
+package org.example.service;
+
+import org.example.dto.AccountImportResult;
+import org.example.enums.RecordFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface AccountImportService {
+
+    /**
+     * Читает записи потоком и создает счета окнами фиксированного размера;
+     * результаты каждого окна передаются в results по порядку записей
+     */
+    void importAccounts(BufferedReader reader, RecordFormat format, Consumer<List<AccountImportResult>> results) throws IOException;
+}
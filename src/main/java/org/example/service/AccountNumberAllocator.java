@@ -0,0 +1,6 @@
+package org.example.service;
+
+public interface AccountNumberAllocator {
+
+    String next();
+}
@@ -1,21 +1,50 @@
 package org.example.service;
 
 import org.example.dto.AccountInfo;
+import org.example.dto.CursorPage;
 import org.example.exception.AccountNotFoundException;
 import org.example.exception.IncorrectPinCodeException;
+import org.example.exception.InsufficientFundsException;
 import org.example.model.Account;
+import org.example.money.Money;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface AccountService {
 
     List<Account> getAll();
 
+    /**
+     * Все счета из проекции для чтения, без обращения к БД
+     */
+    List<AccountInfo> getAllInfos();
+
+    CursorPage<Account> getPage(String cursor, Integer limit);
+
+    void streamAll(Consumer<AccountInfo> consumer);
+
     void update(Account account);
 
+    void updateAll(Collection<Account> accounts);
+
     Account getByAccountNumber(String accountNumber) throws AccountNotFoundException;
 
+    String getPinCode(String accountNumber) throws AccountNotFoundException;
+
+    /**
+     * Изменяет баланс одним условным UPDATE без чтения счета
+     */
+    void addToBalance(String accountNumber, Money delta) throws AccountNotFoundException, InsufficientFundsException;
+
+    List<Account> getAllByAccountNumbers(Collection<String> accountNumbers);
+
     Account add(AccountInfo accountInfo) throws IncorrectPinCodeException;
 
     List<Account> getAccountWithMaxBalance() throws AccountNotFoundException;
+
+    List<AccountInfo> getAccountInfosWithMaxBalance() throws AccountNotFoundException;
+
+    List<AccountInfo> getTopByBalance(int k);
 }
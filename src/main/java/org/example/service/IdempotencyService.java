@@ -0,0 +1,31 @@
+package org.example.service;
+
+import org.example.dto.TransactionRequest;
+
+import java.util.Optional;
+
+public interface IdempotencyService {
+    String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * Сохраненный ответ на запрос с этим ключом или пусто, если ключ еще не использовался.
+     * Если ключ использован для другого запроса, выбрасывает IdempotencyKeyConflictException.
+     */
+    Optional<String> findResponse(String idempotencyKey, TransactionRequest request);
+
+    /**
+     * То же, что findResponse, но только по кэшу, без обращения к БД
+     */
+    Optional<String> findCachedResponse(String idempotencyKey, TransactionRequest request);
+
+    /**
+     * Закрепляет ключ за запросом на шарде ключа; вызывается вне транзакции до выполнения операции.
+     * Если ключ закреплен за другим запросом, выбрасывает IdempotencyKeyConflictException
+     */
+    void claim(String idempotencyKey, TransactionRequest request);
+
+    /**
+     * Сохраняет ответ в текущей транзакции; в кэш он попадает после фиксации
+     */
+    void remember(String idempotencyKey, TransactionRequest request, String response);
+}
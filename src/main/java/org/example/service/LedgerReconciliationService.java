@@ -0,0 +1,11 @@
+package org.example.service;
+
+import org.example.dto.ReconciliationReport;
+
+public interface LedgerReconciliationService {
+
+    /**
+     * Сверяет баланс каждого счета с его итогами проводок: Balance = Opening_Balance + Net
+     */
+    ReconciliationReport reconcile();
+}
@@ -0,0 +1,11 @@
+package org.example.service;
+
+import org.example.exception.IncorrectPinCodeException;
+import org.example.model.Account;
+
+public interface PinCodeService {
+
+    void verify(Account account, String pinCode) throws IncorrectPinCodeException;
+
+    void verify(String accountNumber, String pinCodeHash, String pinCode) throws IncorrectPinCodeException;
+}
@@ -0,0 +1,19 @@
+package org.example.service;
+
+import org.example.dto.ScheduledPayment;
+import org.example.dto.ScheduledPaymentRequest;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ScheduledPaymentService {
+
+    /**
+     * Проверяет Пин-код и счета и ставит платеж в расписание; дальше он выполняется без Пин-кода
+     */
+    ScheduledPayment schedule(ScheduledPaymentRequest request);
+
+    List<ScheduledPayment> getByAccountNumber(String accountNumber);
+
+    void cancel(String accountNumber, UUID id, String pinCode);
+}
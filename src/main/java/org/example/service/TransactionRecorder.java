@@ -0,0 +1,12 @@
+package org.example.service;
+
+import org.example.model.Transactions;
+
+import java.util.List;
+
+public interface TransactionRecorder {
+
+    void record(Transactions transactions);
+
+    void recordAll(List<Transactions> transactions);
+}
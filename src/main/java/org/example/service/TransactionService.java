@@ -1,13 +1,49 @@
 package org.example.service;
 
+import org.example.dto.CursorPage;
 import org.example.dto.TransactionRequest;
+import org.example.dto.TransactionResult;
 import org.example.model.Transactions;
 
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TransactionService {
+    String PROCESSED_MESSAGE = "Операция успешно выполнена";
 
     void processTransaction(TransactionRequest request);
 
+    /**
+     * Выполняет операцию не более одного раза для данного ключа идемпотентности
+     * и возвращает ответ; при повторе возвращается ответ первого выполнения
+     */
+    String processTransaction(TransactionRequest request, String idempotencyKey);
+
+    List<TransactionResult> processBatch(List<TransactionRequest> requests);
+
+    /**
+     * Проверка размера пакета до ограничителя частоты, чтобы слишком большой пакет не расходовал лимиты
+     */
+    void checkBatchSize(int size);
+
     List<Transactions> getTransactionsByAccountNumber(String accountNumber);
+
+    List<Transactions> getHistory(String accountNumber, Date from, Date to);
+
+    CursorPage<Transactions> getTransactionsPage(String accountNumber, String cursor, Integer limit);
+
+    void streamTransactions(String accountNumber, Consumer<Transactions> consumer);
+
+    /**
+     * Выписка по счету за период по возрастанию даты; строки передаются в consumer по одной
+     */
+    void exportHistory(String accountNumber, Date from, Date to, Consumer<Transactions> consumer);
+
+    void checkHistoryRequest(String accountNumber, Date from, Date to);
+
+    /**
+     * Проверка номера счета до начала потокового ответа
+     */
+    void checkAccountNumber(String accountNumber);
 }
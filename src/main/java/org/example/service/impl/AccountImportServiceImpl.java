@@ -0,0 +1,212 @@
+package org.example.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.config.BankProperties;
+import org.example.dto.AccountImportResult;
+import org.example.dto.AccountInfo;
+import org.example.enums.RecordFormat;
+import org.example.id.TimeOrderedUuid;
+import org.example.index.BalanceIndex;
+import org.example.ledger.LedgerTotals;
+import org.example.money.Money;
+import org.example.service.AccountImportService;
+import org.example.service.AccountNumberAllocator;
+import org.example.shard.ShardRouter;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Массовое создание счетов: записи читаются окнами по bank.account-import.batch-size,
+ * Пин-коды окна хэшируются параллельно на отдельном ForkJoinPool, а счета вставляются
+ * одним JDBC-пакетом на шард в собственной транзакции. В памяти находится не больше одного окна.
+ */
+@Service
+public class AccountImportServiceImpl implements AccountImportService {
+    private static final String INSERT_SQL = "INSERT INTO Accounts (Id, Account_Number, Name, Pin_Code, Balance) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final AccountNumberAllocator accountNumberAllocator;
+    private final BalanceIndex balanceIndex;
+    private final LedgerTotals ledgerTotals;
+    private final ShardRouter shardRouter;
+    private final ForkJoinPool hashingPool;
+    private final int batchSize;
+
+    public AccountImportServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper, AccountNumberAllocator accountNumberAllocator,
+                                    BalanceIndex balanceIndex, LedgerTotals ledgerTotals, ShardRouter shardRouter,
+                                    BankProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.accountNumberAllocator = accountNumberAllocator;
+        this.balanceIndex = balanceIndex;
+        this.ledgerTotals = ledgerTotals;
+        this.shardRouter = shardRouter;
+        BankProperties.AccountImport accountImport = properties.getAccountImport();
+        this.batchSize = accountImport.getBatchSize();
+        this.hashingPool = new ForkJoinPool(accountImport.getHashingParallelism(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("pin-hasher-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public void importAccounts(BufferedReader reader, RecordFormat format, Consumer<List<AccountImportResult>> results) throws IOException {
+        List<PendingAccount> window = new ArrayList<>(batchSize);
+        int index = 0;
+        boolean firstLine = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            boolean header = firstLine && format == RecordFormat.CSV && isCsvHeader(line);
+            firstLine = false;
+            if (header) {
+                continue;
+            }
+            window.add(parse(index++, line, format));
+            if (window.size() == batchSize) {
+                results.accept(importWindow(window));
+                window = new ArrayList<>(batchSize);
+            }
+        }
+        if (!window.isEmpty()) {
+            results.accept(importWindow(window));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingPool.shutdownNow();
+    }
+
+    private List<AccountImportResult> importWindow(List<PendingAccount> window) {
+        List<PendingAccount> valid = window.stream()
+                .filter(account -> account.error == null)
+                .collect(Collectors.toList());
+
+        List<ForkJoinTask<?>> hashing = valid.stream()
+                .map(account -> hashingPool.submit(() -> {
+                    account.pinCodeHash = BCrypt.hashpw(account.info.getPinCode(), BCrypt.gensalt());
+                }))
+                .collect(Collectors.toList());
+        hashing.forEach(ForkJoinTask::join);
+        valid.forEach(account -> account.accountNumber = accountNumberAllocator.next());
+        shardRouter.groupByShard(valid, account -> account.accountNumber).forEach(this::insertOnShard);
+
+        return window.stream()
+                .map(account -> new AccountImportResult(account.index, account.accountNumber, account.error == null, account.error))
+                .collect(Collectors.toList());
+    }
+
+    private void insertOnShard(int shard, List<PendingAccount> accounts) {
+        try {
+            shardRouter.runOnShard(shard, () -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, accounts, accounts.size(), (ps, account) -> {
+                    ps.setObject(1, TimeOrderedUuid.next());
+                    ps.setString(2, account.accountNumber);
+                    ps.setString(3, account.info.getName());
+                    ps.setString(4, account.pinCodeHash);
+                    ps.setBigDecimal(5, account.balance.toBigDecimal());
+                });
+                accounts.forEach(account -> ledgerTotals.open(account.accountNumber, account.balance));
+            }));
+            accounts.forEach(account -> balanceIndex.put(account.accountNumber, account.info.getName(), account.balance));
+        } catch (DataAccessException e) {
+            accounts.forEach(account -> {
+                account.accountNumber = null;
+                account.error = "Не удалось сохранить пакет счетов: " + e.getMostSpecificCause().getMessage();
+            });
+        }
+    }
+
+    private PendingAccount parse(int index, String line, RecordFormat format) {
+        PendingAccount account = new PendingAccount(index);
+        try {
+            account.info = format == RecordFormat.CSV ? parseCsv(line) : objectMapper.readValue(line, AccountInfo.class);
+        } catch (NumberFormatException e) {
+            account.error = "Некорректный баланс";
+            return account;
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            account.error = e.getMessage();
+            return account;
+        } catch (JsonProcessingException e) {
+            account.error = "Некорректная строка NDJSON";
+            return account;
+        }
+        if (account.info == null) {
+            account.error = "Пустая запись";
+            return account;
+        }
+        account.error = validate(account.info);
+        account.balance = account.info.getBalance() == null ? Money.ZERO : account.info.getBalance();
+        return account;
+    }
+
+    /**
+     * name,balance,pinCode; имя может содержать запятые, поэтому поля отделяются справа
+     */
+    private static AccountInfo parseCsv(String line) {
+        int pinSeparator = line.lastIndexOf(',');
+        int balanceSeparator = pinSeparator < 0 ? -1 : line.lastIndexOf(',', pinSeparator - 1);
+        if (balanceSeparator < 0) {
+            throw new IllegalArgumentException("Некорректная строка CSV, ожидается name,balance,pinCode");
+        }
+        String balance = line.substring(balanceSeparator + 1, pinSeparator).trim();
+        return new AccountInfo(line.substring(0, balanceSeparator).trim(),
+                balance.isEmpty() ? null : Money.parse(balance),
+                line.substring(pinSeparator + 1).trim());
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.trim().toLowerCase().startsWith("name,");
+    }
+
+    private static String validate(AccountInfo info) {
+        if (info.getName() == null || info.getName().isBlank()) {
+            return "Не указано имя владельца счета";
+        }
+        String pinCode = info.getPinCode();
+        if (pinCode == null || pinCode.length() != 4 || !pinCode.chars().allMatch(Character::isDigit)) {
+            return "Пин-код должен состоять из 4 цифр";
+        }
+        if (info.getBalance() != null && info.getBalance().isNegative()) {
+            return "Начальный баланс не может быть отрицательным";
+        }
+        return null;
+    }
+
+    private static final class PendingAccount {
+        private final int index;
+        private AccountInfo info;
+        private Money balance;
+        private String error;
+        private String pinCodeHash;
+        private String accountNumber;
+
+        private PendingAccount(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.service.AccountNumberAllocator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Выдает уникальные 10-значные номера лицевых счетов: 9 цифр порядкового номера
+ * и контрольная цифра Луна. Порядковые номера резервируются в БД блоками по 1000,
+ * внутри блока номер выдается одним getAndIncrement без блокировок.
+ */
+@Service
+@RequiredArgsConstructor
+public class AccountNumberAllocatorImpl implements AccountNumberAllocator {
+    static final int BLOCK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicReference<Block> current = new AtomicReference<>(new Block(0, 0));
+    private final Object refillLock = new Object();
+
+    @Override
+    public String next() {
+        while (true) {
+            Block block = current.get();
+            long serial = block.next.getAndIncrement();
+            if (serial < block.limit) {
+                return Long.toString(serial * 10 + checkDigit(serial));
+            }
+            refill(block);
+        }
+    }
+
+    public static boolean isValid(String accountNumber) {
+        if (accountNumber == null || accountNumber.length() != 10) {
+            return false;
+        }
+        for (int i = 0; i < accountNumber.length(); i++) {
+            if (!Character.isDigit(accountNumber.charAt(i))) {
+                return false;
+            }
+        }
+        long number = Long.parseLong(accountNumber);
+        return checkDigit(number / 10) == number % 10;
+    }
+
+    static int checkDigit(long payload) {
+        int sum = 0;
+        boolean doubled = true;
+        for (long rest = payload; rest > 0; rest /= 10) {
+            int digit = (int) (rest % 10);
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private void refill(Block exhausted) {
+        synchronized (refillLock) {
+            if (current.get() != exhausted) {
+                return;
+            }
+            Long blockNumber = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR Account_Number_Block_Seq", Long.class);
+            if (blockNumber == null) {
+                throw new IllegalStateException("Не удалось зарезервировать блок номеров лицевых счетов");
+            }
+            long start = blockNumber * BLOCK_SIZE;
+            current.set(new Block(start, start + BLOCK_SIZE));
+        }
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long limit;
+
+        private Block(long start, long limit) {
+            this.next = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
@@ -1,55 +1,142 @@
 package org.example.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.example.config.BankProperties;
 import org.example.dto.AccountInfo;
+import org.example.dto.CursorPage;
 import org.example.exception.AccountNotFoundException;
 import org.example.exception.IncorrectAccountNumberException;
 import org.example.exception.IncorrectPinCodeException;
+import org.example.exception.InsufficientFundsException;
+import org.example.index.BalanceIndex;
+import org.example.ledger.LedgerTotals;
 import org.example.model.Account;
+import org.example.money.Money;
 import org.example.repository.AccountRepository;
+import org.example.service.AccountNumberAllocator;
 import org.example.service.AccountService;
 import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class AccountServiceImpl implements AccountService {
     private final AccountRepository accountRepository;
+    private final BankProperties properties;
+    private final BalanceIndex balanceIndex;
+    private final AccountNumberAllocator accountNumberAllocator;
+    private final LedgerTotals ledgerTotals;
 
     @Override
     public List<Account> getAll() {
         return accountRepository.findAll();
     }
 
+    @Override
+    public List<AccountInfo> getAllInfos() {
+        return balanceIndex.all();
+    }
+
+    @Override
+    public CursorPage<Account> getPage(String cursor, Integer limit) {
+        BankProperties.Page page = properties.getPage();
+        int size = CursorCodec.limit(limit, page.getDefaultLimit(), page.getMaxLimit());
+        String after = cursor == null ? "" : CursorCodec.decode(cursor, 1)[0];
+
+        List<Account> accounts = accountRepository.findPageAfter(after, PageRequest.of(0, size + 1));
+        if (accounts.size() <= size) {
+            return new CursorPage<>(accounts, null);
+        }
+        List<Account> items = new ArrayList<>(accounts.subList(0, size));
+        return new CursorPage<>(items, CursorCodec.encode(items.get(size - 1).getAccountNumber()));
+    }
+
+    @Override
+    @Transactional
+    public void streamAll(Consumer<AccountInfo> consumer) {
+        try (Stream<AccountInfo> accounts = accountRepository.streamAllInfos()) {
+            accounts.forEach(consumer);
+        }
+    }
+
     @Override
     public void update(Account account) throws AccountNotFoundException, IncorrectAccountNumberException {
         getByAccountNumber(account.getAccountNumber());
         accountRepository.saveAndFlush(account);
+        balanceIndex.putOnCommit(account.getAccountNumber(), account.getName(), account.getBalance());
+    }
+
+    @Override
+    public void updateAll(Collection<Account> accounts) {
+        accountRepository.saveAll(accounts);
+        accounts.forEach(account ->
+                balanceIndex.putOnCommit(account.getAccountNumber(), account.getName(), account.getBalance()));
     }
 
     @Override
     public Account getByAccountNumber(String accountNumber) throws AccountNotFoundException {
-        if (accountNumber == null || accountNumber.length() != 10) {
-            throw new IncorrectAccountNumberException("Длина номера лицевого счета должна быть равна 10 символам");
-        }
+        checkAccountNumber(accountNumber);
         Optional<Account> account = accountRepository.findByAccountNumber(accountNumber);
-        return account.orElseThrow(() -> new AccountNotFoundException(String.format("Лицевой счет %1$s не найден", accountNumber)));
+        return account.orElseThrow(() -> accountNotFound(accountNumber));
+    }
+
+    @Override
+    public String getPinCode(String accountNumber) throws AccountNotFoundException {
+        checkAccountNumber(accountNumber);
+        return accountRepository.findPinCodeByAccountNumber(accountNumber).orElseThrow(() -> accountNotFound(accountNumber));
+    }
+
+    @Override
+    @Transactional
+    public void addToBalance(String accountNumber, Money delta) throws AccountNotFoundException, InsufficientFundsException {
+        checkAccountNumber(accountNumber);
+        if (accountRepository.addToBalance(accountNumber, delta.toBigDecimal()) == 0) {
+            if (delta.signum() < 0 && accountRepository.existsByAccountNumber(accountNumber)) {
+                throw new InsufficientFundsException("Отрицательный баланс недопустим");
+            }
+            throw accountNotFound(accountNumber);
+        }
+        balanceIndex.applyDeltaOnCommit(accountNumber, delta);
     }
 
     @Override
+    public List<Account> getAllByAccountNumbers(Collection<String> accountNumbers) {
+        if (accountNumbers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return accountRepository.findAllByAccountNumberIn(accountNumbers);
+    }
+
+    @Override
+    @Transactional
     public Account add(AccountInfo accountInfo) throws IncorrectPinCodeException {
+        return add(accountInfo, accountNumberAllocator.next());
+    }
+
+    @Transactional
+    public Account add(AccountInfo accountInfo, String accountNumber) throws IncorrectPinCodeException {
         String accountPinCode = accountInfo.getPinCode();
         if (accountPinCode == null || accountPinCode.isBlank() || accountPinCode.length() != 4) {
             throw new IncorrectPinCodeException(String.format("Некорректный Пин-код: %1$s", accountPinCode));
         }
-        Account account = Account.builder().accountNumber(generateAccountNumber()).name(accountInfo.getName())
-                .balance(accountInfo.getBalance()).pinCode(BCrypt.hashpw(accountPinCode, BCrypt.gensalt())).build();
+        Account account = Account.builder().accountNumber(accountNumber).name(accountInfo.getName())
+                .balance(accountInfo.getBalance() == null ? Money.ZERO : accountInfo.getBalance()).pinCode(BCrypt.hashpw(accountPinCode, BCrypt.gensalt())).build();
 
-        return accountRepository.save(account);
+        Account saved = accountRepository.save(account);
+        ledgerTotals.open(saved.getAccountNumber(), saved.getBalance());
+        balanceIndex.putOnCommit(saved.getAccountNumber(), saved.getName(), saved.getBalance());
+        return saved;
     }
 
     @Override
@@ -62,8 +149,33 @@ public class AccountServiceImpl implements AccountService {
         return accountsWithMaxBalance;
     }
 
+    @Override
+    public List<AccountInfo> getAccountInfosWithMaxBalance() throws AccountNotFoundException {
+        List<AccountInfo> accountsWithMaxBalance = balanceIndex.max();
+        if (accountsWithMaxBalance.isEmpty()) {
+            throw new AccountNotFoundException("Лицевого счета не существует, либо они пустые");
+        }
+
+        return accountsWithMaxBalance;
+    }
+
+    @Override
+    public List<AccountInfo> getTopByBalance(int k) {
+        return balanceIndex.top(CursorCodec.limit(k, properties.getPage().getDefaultLimit(), properties.getPage().getMaxLimit()));
+    }
+
+    private static void checkAccountNumber(String accountNumber) {
+        if (accountNumber == null || accountNumber.length() != 10) {
+            throw new IncorrectAccountNumberException("Длина номера лицевого счета должна быть равна 10 символам");
+        }
+    }
+
+    private static AccountNotFoundException accountNotFound(String accountNumber) {
+        return new AccountNotFoundException(String.format("Лицевой счет %1$s не найден", accountNumber));
+    }
+
     public static String generateAccountNumber() {
-        Random random = new Random();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         StringBuilder accountNumber = new StringBuilder();
 
         for (int i = 0; i < 10; i++) {
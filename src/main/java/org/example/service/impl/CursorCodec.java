@@ -0,0 +1,41 @@
+package org.example.service.impl;
+
+import org.example.exception.IncorrectCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор для keyset-пагинации: значения ключа последней строки страницы в Base64.
+ */
+final class CursorCodec {
+    private static final String SEPARATOR = ":";
+
+    private CursorCodec() {
+    }
+
+    static String encode(String... keys) {
+        byte[] bytes = String.join(SEPARATOR, keys).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    static String[] decode(String cursor, int keyCount) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] keys = decoded.split(SEPARATOR, -1);
+            if (keys.length != keyCount) {
+                throw new IncorrectCursorException("Некорректный курсор страницы");
+            }
+            return keys;
+        } catch (IllegalArgumentException e) {
+            throw new IncorrectCursorException("Некорректный курсор страницы");
+        }
+    }
+
+    static int limit(Integer limit, int defaultLimit, int maxLimit) {
+        if (limit == null) {
+            return defaultLimit;
+        }
+        return Math.max(1, Math.min(limit, maxLimit));
+    }
+}
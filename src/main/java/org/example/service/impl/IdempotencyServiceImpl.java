@@ -0,0 +1,198 @@
+package org.example.service.impl;
+
+import org.example.cache.ExpiringCache;
+import org.example.config.BankProperties;
+import org.example.dto.TransactionRequest;
+import org.example.exception.IdempotencyKeyConflictException;
+import org.example.exception.IncorrectTransactionRequestException;
+import org.example.money.Money;
+import org.example.service.IdempotencyService;
+import org.example.shard.ShardRouter;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ключи идемпотентности хранятся в таблице Idempotency_Keys и в ограниченном кэше
+ * с вытеснением по времени. Сохраняются только успешные ответы: неудачная операция
+ * откатывается вместе с ключом, и ее можно безопасно повторить.
+ * Запрос сравнивается по SHA-256 от типа, счетов и суммы, без Пин-кода.
+ * Ключ хранится на шарде счета отправителя, в той же транзакции, что и операция. При нескольких
+ * шардах ключ еще до операции закрепляется за запросом в Idempotency_Claims на шарде ключа:
+ * так повтор ключа с отправителем другого шарда тоже получает конфликт. Закрепление не откатывается
+ * вместе с неудачной операцией - ее можно повторить тем же запросом, но не другим.
+ */
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final ExpiringCache<String, StoredResponse> responses;
+    private final Duration ttl;
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idempotency-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public IdempotencyServiceImpl(JdbcTemplate jdbcTemplate, ShardRouter shardRouter, BankProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        BankProperties.Idempotency idempotency = properties.getIdempotency();
+        ttl = idempotency.getTtl();
+        responses = new ExpiringCache<>(ttl, idempotency.getCacheSize());
+        long purgeMillis = idempotency.getPurgeInterval().toMillis();
+        purger.scheduleWithFixedDelay(this::purgeExpired, purgeMillis, purgeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Optional<String> findResponse(String idempotencyKey, TransactionRequest request) {
+        checkKey(idempotencyKey);
+        String requestHash = requestHash(request);
+        StoredResponse stored = responses.get(idempotencyKey);
+        if (stored == null) {
+            List<StoredResponse> rows = shardRouter.executeOnAccount(request.getAccountFromNumber(), () -> jdbcTemplate.query(
+                    "SELECT Request_Hash, Response FROM Idempotency_Keys WHERE Idempotency_Key = ? AND Created_At > ?",
+                    (rs, rowNum) -> new StoredResponse(rs.getString(1), rs.getString(2)),
+                    idempotencyKey, expiredBefore()));
+            if (rows.isEmpty()) {
+                return Optional.empty();
+            }
+            stored = rows.get(0);
+            responses.put(idempotencyKey, stored);
+        }
+        return Optional.of(matching(stored, requestHash));
+    }
+
+    @Override
+    public Optional<String> findCachedResponse(String idempotencyKey, TransactionRequest request) {
+        checkKey(idempotencyKey);
+        StoredResponse stored = responses.get(idempotencyKey);
+        return stored == null ? Optional.empty() : Optional.of(matching(stored, requestHash(request)));
+    }
+
+    @Override
+    public void claim(String idempotencyKey, TransactionRequest request) {
+        checkKey(idempotencyKey);
+        if (shardRouter.getShardCount() == 1) {
+            // Ответы всех счетов на одном шарде: конфликт находит findResponse
+            return;
+        }
+        String requestHash = requestHash(request);
+        Timestamp expiredBefore = expiredBefore();
+        shardRouter.runOnShard(shardRouter.shardOf(idempotencyKey), () -> {
+            jdbcTemplate.update("DELETE FROM Idempotency_Claims WHERE Idempotency_Key = ? AND Created_At <= ?",
+                    idempotencyKey, expiredBefore);
+            try {
+                jdbcTemplate.update("INSERT INTO Idempotency_Claims (Idempotency_Key, Request_Hash, Created_At) VALUES (?, ?, ?)",
+                        idempotencyKey, requestHash, new Timestamp(System.currentTimeMillis()));
+            } catch (DuplicateKeyException e) {
+                List<String> claimed = jdbcTemplate.queryForList(
+                        "SELECT Request_Hash FROM Idempotency_Claims WHERE Idempotency_Key = ?", String.class, idempotencyKey);
+                if (!claimed.isEmpty() && !claimed.get(0).equals(requestHash)) {
+                    throw new IdempotencyKeyConflictException("Ключ идемпотентности уже использован для другой операции");
+                }
+            }
+        });
+    }
+
+    @Override
+    public void remember(String idempotencyKey, TransactionRequest request, String response) {
+        checkKey(idempotencyKey);
+        StoredResponse stored = new StoredResponse(requestHash(request), response);
+        Timestamp expiredBefore = expiredBefore();
+        shardRouter.runOnAccount(request.getAccountFromNumber(), () -> {
+            jdbcTemplate.update("DELETE FROM Idempotency_Keys WHERE Idempotency_Key = ? AND Created_At <= ?",
+                    idempotencyKey, expiredBefore);
+            jdbcTemplate.update("INSERT INTO Idempotency_Keys (Idempotency_Key, Request_Hash, Response, Created_At) VALUES (?, ?, ?, ?)",
+                    idempotencyKey, stored.requestHash, stored.response, new Timestamp(System.currentTimeMillis()));
+        });
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    responses.put(idempotencyKey, stored);
+                }
+            });
+        } else {
+            responses.put(idempotencyKey, stored);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+    }
+
+    void purgeExpired() {
+        responses.evictExpired();
+        Timestamp expiredBefore = expiredBefore();
+        shardRouter.runOnEachShard(() -> {
+            jdbcTemplate.update("DELETE FROM Idempotency_Keys WHERE Created_At <= ?", expiredBefore);
+            jdbcTemplate.update("DELETE FROM Idempotency_Claims WHERE Created_At <= ?", expiredBefore);
+        });
+    }
+
+    private Timestamp expiredBefore() {
+        return new Timestamp(System.currentTimeMillis() - ttl.toMillis());
+    }
+
+    private static String matching(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash.equals(requestHash)) {
+            throw new IdempotencyKeyConflictException("Ключ идемпотентности уже использован для другой операции");
+        }
+        return stored.response;
+    }
+
+    private static void checkKey(String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IncorrectTransactionRequestException(
+                    String.format("Ключ идемпотентности должен содержать от 1 до %1$d символов", MAX_KEY_LENGTH));
+        }
+    }
+
+    static String requestHash(TransactionRequest request) {
+        Money amount = request.getAmount();
+        String canonical = request.getType() + "|" + request.getAccountFromNumber() + "|" + request.getAccountToNumber()
+                + "|" + (amount == null ? null : amount.toBigDecimal().stripTrailingZeros().toPlainString());
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private static final class StoredResponse {
+        private final String requestHash;
+        private final String response;
+
+        private StoredResponse(String requestHash, String response) {
+            this.requestHash = requestHash;
+            this.response = response;
+        }
+    }
+}
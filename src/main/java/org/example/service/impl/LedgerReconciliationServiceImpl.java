@@ -0,0 +1,166 @@
+package org.example.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.BankProperties;
+import org.example.dto.LedgerDiscrepancy;
+import org.example.dto.ReconciliationReport;
+import org.example.service.LedgerReconciliationService;
+import org.example.shard.ShardRouter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Сверка балансов с итогами проводок из Ledger_Totals: сравнение по счетам вместо пересчета истории операций.
+ * Переводы с горячих счетов, списанные, но еще ожидающие строки Transactions в Hot_Credit, вычитаются из итогов.
+ * Номера счетов каждого шарда проверяются диапазонами на отдельном ForkJoinPool: задача читает
+ * до partition-size счетов диапазона одним запросом, а непроверенный остаток делит пополам между подзадачами.
+ * Баланс и итоги счета меняются одной транзакцией и читаются одним запросом, поэтому
+ * параллельные операции не дают ложных расхождений.
+ */
+@Slf4j
+@Service
+public class LedgerReconciliationServiceImpl implements LedgerReconciliationService {
+    private static final String RANGE_SQL = "SELECT a.Account_Number, COALESCE(a.Balance, 0) AS Balance, "
+            + "l.Opening_Balance + l.Net - COALESCE(p.Pending, 0) AS Expected FROM Accounts a "
+            + "LEFT JOIN Ledger_Totals l ON l.Account_Number = a.Account_Number "
+            + "LEFT JOIN (SELECT Account_From_Number AS Account_Number, SUM(Amount) AS Pending FROM Hot_Credit "
+            + "WHERE Transaction_Type = 'TRANSFER' AND Account_From_Number >= ? AND Account_From_Number <= ? "
+            + "GROUP BY Account_From_Number) p ON p.Account_Number = a.Account_Number "
+            + "WHERE a.Account_Number >= ? AND a.Account_Number <= ? ORDER BY a.Account_Number LIMIT ?";
+    private static final long LAST_ACCOUNT_NUMBER = 9_999_999_999L;
+
+    private static final RowMapper<LedgerDiscrepancy> ROW_MAPPER = (rs, rowNum) -> new LedgerDiscrepancy(
+            rs.getString("Account_Number"), rs.getBigDecimal("Balance"), rs.getBigDecimal("Expected"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final ForkJoinPool reconciliationPool;
+    private final int partitionSize;
+    private final int maxDiscrepancies;
+
+    public LedgerReconciliationServiceImpl(JdbcTemplate jdbcTemplate, ShardRouter shardRouter, BankProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        BankProperties.Ledger ledger = properties.getLedger();
+        this.partitionSize = ledger.getPartitionSize();
+        this.maxDiscrepancies = ledger.getMaxDiscrepancies();
+        this.reconciliationPool = new ForkJoinPool(ledger.getParallelism(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("ledger-reconciler-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public ReconciliationReport reconcile() {
+        long start = System.nanoTime();
+        List<ForkJoinTask<Partial>> shards = IntStream.range(0, shardRouter.getShardCount())
+                .mapToObj(shard -> reconciliationPool.submit(new RangeCheck(shard, 0, LAST_ACCOUNT_NUMBER)))
+                .collect(Collectors.toList());
+        Partial total = new Partial();
+        shards.forEach(shard -> total.add(shard.join()));
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (total.discrepancyCount > 0) {
+            log.warn("Сверка: {} счетов, расхождений: {}, {} мс", total.accounts, total.discrepancyCount, durationMillis);
+        } else {
+            log.info("Сверка: {} счетов без расхождений, {} частей, {} мс", total.accounts, total.partitions, durationMillis);
+        }
+        return new ReconciliationReport(total.accounts, total.partitions, total.discrepancyCount,
+                total.discrepancies, durationMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconciliationPool.shutdownNow();
+    }
+
+    private static String accountNumber(long value) {
+        return String.format("%010d", value);
+    }
+
+    private static boolean matches(LedgerDiscrepancy account) {
+        return account.getExpected() != null && account.getBalance().compareTo(account.getExpected()) == 0;
+    }
+
+    /**
+     * Проверка счетов шарда с номерами в [first, last]
+     */
+    private final class RangeCheck extends RecursiveTask<Partial> {
+        private final int shard;
+        private final long first;
+        private final long last;
+
+        private RangeCheck(int shard, long first, long last) {
+            this.shard = shard;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected Partial compute() {
+            String firstNumber = accountNumber(first);
+            String lastNumber = accountNumber(last);
+            List<LedgerDiscrepancy> accounts = shardRouter.executeOnShard(shard, () -> jdbcTemplate.query(RANGE_SQL,
+                    ROW_MAPPER, firstNumber, lastNumber, firstNumber, lastNumber, partitionSize + 1));
+            Partial partial = new Partial();
+            partial.partitions = 1;
+            accounts.stream().limit(partitionSize).forEach(partial::check);
+            if (accounts.size() <= partitionSize) {
+                return partial;
+            }
+            // Подзадачи создаются вне executeOnShard: поток, ожидающий join, может выполнять чужие задачи
+            long next = Long.parseLong(accounts.get(partitionSize).getAccountNumber());
+            long middle = next + (last - next) / 2;
+            if (middle == last) {
+                partial.add(new RangeCheck(shard, next, last).compute());
+                return partial;
+            }
+            RangeCheck lower = new RangeCheck(shard, next, middle);
+            RangeCheck upper = new RangeCheck(shard, middle + 1, last);
+            invokeAll(lower, upper);
+            partial.add(lower.join());
+            partial.add(upper.join());
+            return partial;
+        }
+    }
+
+    private final class Partial {
+        private long accounts;
+        private int partitions;
+        private long discrepancyCount;
+        private final List<LedgerDiscrepancy> discrepancies = new ArrayList<>();
+
+        private void check(LedgerDiscrepancy account) {
+            accounts++;
+            if (!matches(account)) {
+                discrepancyCount++;
+                if (discrepancies.size() < maxDiscrepancies) {
+                    discrepancies.add(account);
+                }
+            }
+        }
+
+        private void add(Partial other) {
+            accounts += other.accounts;
+            partitions += other.partitions;
+            discrepancyCount += other.discrepancyCount;
+            other.discrepancies.stream()
+                    .limit(Math.max(0, maxDiscrepancies - discrepancies.size()))
+                    .forEach(discrepancies::add);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.service.impl;
+
+import org.example.cache.ExpiringCache;
+import org.example.config.BankProperties;
+import org.example.exception.IncorrectPinCodeException;
+import org.example.exception.ServiceBusyException;
+import org.example.metrics.TransactionMetrics;
+import org.example.model.Account;
+import org.example.service.PinCodeService;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Проверка Пин-кода на выделенном ограниченном пуле потоков, чтобы BCrypt не занимал
+ * все потоки Tomcat. Успешные проверки кэшируются на короткое время по HMAC от
+ * номера счета, Пин-кода и текущего хэша Пин-кода: смена Пин-кода меняет хэш,
+ * и старая запись кэша перестает совпадать.
+ */
+@Service
+public class PinCodeServiceImpl implements PinCodeService {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final ThreadPoolExecutor executor;
+    private final ExpiringCache<String, byte[]> verifiedPinCodes;
+    private final SecretKeySpec digestKey;
+    private final ThreadLocal<Mac> mac;
+    private final long timeoutMillis;
+    private final TransactionMetrics metrics;
+
+    public PinCodeServiceImpl(BankProperties properties, TransactionMetrics metrics) {
+        this.metrics = metrics;
+        BankProperties.Pin pin = properties.getPin();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(pin.getVerifierThreads(), pin.getVerifierThreads(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(pin.getQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "pin-verifier-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        timeoutMillis = pin.getTimeout().toMillis();
+
+        verifiedPinCodes = pin.getCache().isEnabled()
+                ? new ExpiringCache<>(pin.getCache().getTtl(), pin.getCache().getMaxSize())
+                : null;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        digestKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+        mac = ThreadLocal.withInitial(this::newMac);
+    }
+
+    @Override
+    public void verify(Account account, String pinCode) throws IncorrectPinCodeException {
+        verify(account.getAccountNumber(), account.getPinCode(), pinCode);
+    }
+
+    @Override
+    public void verify(String accountNumber, String pinCodeHash, String pinCode) throws IncorrectPinCodeException {
+        if (pinCode == null || pinCode.isBlank()) {
+            throw new IncorrectPinCodeException("ПинКод должен быть строго 4 значным");
+        }
+        byte[] digest = null;
+        if (verifiedPinCodes != null) {
+            digest = digest(accountNumber, pinCode, pinCodeHash);
+            byte[] verified = verifiedPinCodes.get(accountNumber);
+            if (verified != null && MessageDigest.isEqual(verified, digest)) {
+                metrics.pinCacheHit();
+                return;
+            }
+            metrics.pinCacheMiss();
+        }
+        if (!metrics.timePinVerification(() -> checkPinCode(pinCode, pinCodeHash))) {
+            throw new IncorrectPinCodeException("Неверный Пин-код");
+        }
+        if (verifiedPinCodes != null) {
+            verifiedPinCodes.put(accountNumber, digest);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean checkPinCode(String pinCode, String pinCodeHash) {
+        Future<Boolean> result;
+        try {
+            result = executor.submit(() -> BCrypt.checkpw(pinCode, pinCodeHash));
+        } catch (RejectedExecutionException e) {
+            throw new ServiceBusyException("Сервис перегружен, повторите операцию позже");
+        }
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            throw new ServiceBusyException("Превышено время проверки Пин-кода, повторите операцию позже");
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Проверка Пин-кода прервана");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw new IncorrectPinCodeException("Неверный Пин-код");
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private byte[] digest(String accountNumber, String pinCode, String pinCodeHash) {
+        Mac hmac = mac.get();
+        hmac.update(accountNumber.getBytes(StandardCharsets.UTF_8));
+        hmac.update((byte) 0);
+        hmac.update(pinCode.getBytes(StandardCharsets.UTF_8));
+        hmac.update((byte) 0);
+        return hmac.doFinal(pinCodeHash.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac hmac = Mac.getInstance(HMAC_ALGORITHM);
+            hmac.init(digestKey);
+            return hmac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.ledger.LedgerTotals;
+import org.example.model.Transactions;
+import org.example.repository.TransactionRepository;
+import org.example.service.TransactionRecorder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "bank.journal", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class RepositoryTransactionRecorder implements TransactionRecorder {
+    private final TransactionRepository transactionRepository;
+    private final LedgerTotals ledgerTotals;
+
+    @Override
+    public void record(Transactions transactions) {
+        transactionRepository.save(transactions);
+        ledgerTotals.post(transactions);
+    }
+
+    @Override
+    public void recordAll(List<Transactions> transactions) {
+        transactionRepository.insertAll(transactions);
+        ledgerTotals.postAll(transactions);
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.dto.ScheduledPayment;
+import org.example.dto.ScheduledPaymentRequest;
+import org.example.dto.TransactionRequest;
+import org.example.enums.TransactionType;
+import org.example.exception.IncorrectTransactionRequestException;
+import org.example.exception.ScheduledPaymentNotFoundException;
+import org.example.id.TimeOrderedUuid;
+import org.example.repository.ScheduledPaymentRepository;
+import org.example.schedule.ScheduledPaymentScheduler;
+import org.example.service.AccountService;
+import org.example.service.PinCodeService;
+import org.example.service.ScheduledPaymentService;
+import org.example.shard.ShardRouter;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Платеж хранится на шарде счета отправителя. Пин-код и счет получателя проверяются при создании:
+ * счета не удаляются, поэтому планировщик выполняет платеж без повторных проверок.
+ */
+@Service
+@RequiredArgsConstructor
+public class ScheduledPaymentServiceImpl implements ScheduledPaymentService {
+    private final ScheduledPaymentRepository repository;
+    private final ScheduledPaymentScheduler scheduler;
+    private final AccountService accountService;
+    private final PinCodeService pinCodeService;
+    private final ShardRouter shardRouter;
+
+    @Override
+    public ScheduledPayment schedule(ScheduledPaymentRequest request) {
+        TransactionRequest payment = request.getPayment();
+        validate(request);
+        verifyPinCode(payment.getAccountFromNumber(), payment.getPinCode());
+        boolean transfer = payment.getType().equals(TransactionType.TRANSFER);
+        if (transfer) {
+            accountService.getByAccountNumber(payment.getAccountToNumber());
+        }
+
+        ScheduledPayment scheduled = ScheduledPayment.builder()
+                .id(TimeOrderedUuid.next())
+                .accountFromNumber(payment.getAccountFromNumber())
+                .accountToNumber(transfer ? payment.getAccountToNumber() : null)
+                .amount(payment.getAmount())
+                .type(payment.getType())
+                .periodSeconds(request.getPeriodSeconds())
+                .nextRunAt(request.getFirstRunAt() == null ? new Date() : request.getFirstRunAt())
+                .build();
+        shardRouter.runOnAccount(scheduled.getAccountFromNumber(), () -> repository.insert(scheduled));
+        scheduler.scheduled(scheduled);
+        return scheduled;
+    }
+
+    @Override
+    public List<ScheduledPayment> getByAccountNumber(String accountNumber) {
+        accountService.getByAccountNumber(accountNumber);
+        return shardRouter.executeOnAccount(accountNumber, () -> repository.findAllByAccountFromNumber(accountNumber));
+    }
+
+    @Override
+    public void cancel(String accountNumber, UUID id, String pinCode) {
+        verifyPinCode(accountNumber, pinCode);
+        if (shardRouter.executeOnAccount(accountNumber, () -> repository.delete(accountNumber, id)) == 0) {
+            throw new ScheduledPaymentNotFoundException(String.format("Регулярный платеж %1$s не найден", id));
+        }
+    }
+
+    private void verifyPinCode(String accountNumber, String pinCode) {
+        pinCodeService.verify(accountNumber, accountService.getPinCode(accountNumber), pinCode);
+    }
+
+    private void validate(ScheduledPaymentRequest request) {
+        TransactionRequest payment = request.getPayment();
+        if (payment == null || payment.getType() == null) {
+            throw new IncorrectTransactionRequestException("Не указан тип операции");
+        }
+        if (!payment.getType().equals(TransactionType.PAYMENT) && !payment.getType().equals(TransactionType.TRANSFER)) {
+            throw new IncorrectTransactionRequestException("По расписанию выполняются только платежи и переводы");
+        }
+        if (payment.getAmount() == null || payment.getAmount().signum() <= 0) {
+            throw new IncorrectTransactionRequestException("Сумма операции должна быть положительной");
+        }
+        if (payment.getType().equals(TransactionType.TRANSFER)
+                && Objects.equals(payment.getAccountFromNumber(), payment.getAccountToNumber())) {
+            throw new IncorrectTransactionRequestException("Счета отправителя и получателя должны различаться");
+        }
+        if (request.getPeriodSeconds() != null && request.getPeriodSeconds() <= 0) {
+            throw new IncorrectTransactionRequestException("Период повтора должен быть положительным");
+        }
+    }
+}
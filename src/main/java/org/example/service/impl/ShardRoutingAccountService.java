@@ -0,0 +1,149 @@
+package org.example.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.config.BankProperties;
+import org.example.dto.AccountInfo;
+import org.example.dto.CursorPage;
+import org.example.exception.AccountNotFoundException;
+import org.example.exception.IncorrectPinCodeException;
+import org.example.exception.InsufficientFundsException;
+import org.example.model.Account;
+import org.example.money.Money;
+import org.example.service.AccountNumberAllocator;
+import org.example.service.AccountService;
+import org.example.shard.ShardRouter;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Выбирает шард перед вызовом AccountServiceImpl: операции со счетом идут на шард счета,
+ * выборки по всем счетам выполняются на каждом шарде и объединяются.
+ */
+@Primary
+@Service
+@RequiredArgsConstructor
+public class ShardRoutingAccountService implements AccountService {
+    private final AccountServiceImpl accountService;
+    private final AccountNumberAllocator accountNumberAllocator;
+    private final ShardRouter shardRouter;
+    private final BankProperties properties;
+
+    @Override
+    public List<Account> getAll() {
+        return shardRouter.collectFromShards(accountService::getAll);
+    }
+
+    @Override
+    public List<AccountInfo> getAllInfos() {
+        return accountService.getAllInfos();
+    }
+
+    /**
+     * Каждый шард отдает страницу после курсора, общая страница - первые строки их слияния по номеру счета
+     */
+    @Override
+    public CursorPage<Account> getPage(String cursor, Integer limit) {
+        BankProperties.Page page = properties.getPage();
+        int size = CursorCodec.limit(limit, page.getDefaultLimit(), page.getMaxLimit());
+
+        List<Account> merged = new ArrayList<>();
+        boolean more = false;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            CursorPage<Account> shardPage = shardRouter.executeOnShard(shard, () -> accountService.getPage(cursor, size));
+            merged.addAll(shardPage.getItems());
+            more |= shardPage.getNextCursor() != null;
+        }
+        merged.sort(Comparator.comparing(Account::getAccountNumber));
+        if (merged.size() <= size && !more) {
+            return new CursorPage<>(merged, null);
+        }
+        List<Account> items = new ArrayList<>(merged.subList(0, Math.min(size, merged.size())));
+        return new CursorPage<>(items, CursorCodec.encode(items.get(items.size() - 1).getAccountNumber()));
+    }
+
+    /**
+     * Счета передаются шард за шардом, порядок по номеру соблюдается только внутри шарда
+     */
+    @Override
+    public void streamAll(Consumer<AccountInfo> consumer) {
+        shardRouter.runOnEachShard(() -> accountService.streamAll(consumer));
+    }
+
+    @Override
+    public void update(Account account) {
+        shardRouter.runOnAccount(account.getAccountNumber(), () -> accountService.update(account));
+    }
+
+    @Override
+    public void updateAll(Collection<Account> accounts) {
+        shardRouter.groupByShard(accounts, Account::getAccountNumber).forEach((shard, shardAccounts) ->
+                shardRouter.runOnShard(shard, () -> accountService.updateAll(shardAccounts)));
+    }
+
+    @Override
+    public Account getByAccountNumber(String accountNumber) throws AccountNotFoundException {
+        return shardRouter.executeOnAccount(accountNumber, () -> accountService.getByAccountNumber(accountNumber));
+    }
+
+    @Override
+    public String getPinCode(String accountNumber) throws AccountNotFoundException {
+        return shardRouter.executeOnAccount(accountNumber, () -> accountService.getPinCode(accountNumber));
+    }
+
+    @Override
+    public void addToBalance(String accountNumber, Money delta) throws AccountNotFoundException, InsufficientFundsException {
+        shardRouter.runOnAccount(accountNumber, () -> accountService.addToBalance(accountNumber, delta));
+    }
+
+    @Override
+    public List<Account> getAllByAccountNumbers(Collection<String> accountNumbers) {
+        List<Account> accounts = new ArrayList<>(accountNumbers.size());
+        shardRouter.groupByShard(accountNumbers, Function.identity()).forEach((shard, shardAccountNumbers) ->
+                accounts.addAll(shardRouter.executeOnShard(shard, () -> accountService.getAllByAccountNumbers(shardAccountNumbers))));
+        return accounts;
+    }
+
+    @Override
+    public Account add(AccountInfo accountInfo) throws IncorrectPinCodeException {
+        // Номер выдается до выбора шарда: шард определяется номером счета
+        String accountNumber = accountNumberAllocator.next();
+        return shardRouter.executeOnAccount(accountNumber, () -> accountService.add(accountInfo, accountNumber));
+    }
+
+    @Override
+    public List<Account> getAccountWithMaxBalance() throws AccountNotFoundException {
+        List<Account> candidates = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            try {
+                candidates.addAll(shardRouter.executeOnShard(shard, accountService::getAccountWithMaxBalance));
+            } catch (AccountNotFoundException e) {
+                // На этом шарде нет счетов
+            }
+        }
+        Money max = candidates.stream()
+                .map(Account::getBalance)
+                .max(Comparator.naturalOrder())
+                .orElseThrow(() -> new AccountNotFoundException("Лицевого счета не существует, либо они пустые"));
+        return candidates.stream()
+                .filter(account -> max.equals(account.getBalance()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<AccountInfo> getAccountInfosWithMaxBalance() throws AccountNotFoundException {
+        return accountService.getAccountInfosWithMaxBalance();
+    }
+
+    @Override
+    public List<AccountInfo> getTopByBalance(int k) {
+        return accountService.getTopByBalance(k);
+    }
+}
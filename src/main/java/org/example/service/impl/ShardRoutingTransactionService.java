@@ -0,0 +1,145 @@
+package org.example.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.dto.CursorPage;
+import org.example.dto.TransactionRequest;
+import org.example.dto.TransactionResult;
+import org.example.enums.TransactionType;
+import org.example.model.Account;
+import org.example.model.Transactions;
+import org.example.service.AccountService;
+import org.example.service.IdempotencyService;
+import org.example.service.TransactionService;
+import org.example.shard.ShardRouter;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Выполняет операцию на шарде счета отправителя. Перевод на счет другого шарда проверяется
+ * заранее (счет получателя должен существовать), а зачисляется через Transfer_Outbox.
+ * Пакет со счетами нескольких шардов делится на части, каждая фиксируется на своем шарде отдельно.
+ * Ключ идемпотентности закрепляется на шарде ключа до операции, ответ хранится на шарде отправителя.
+ */
+@Primary
+@Service
+@RequiredArgsConstructor
+public class ShardRoutingTransactionService implements TransactionService {
+    private final TransactionServiceImpl transactionService;
+    private final AccountService accountService;
+    private final ShardRouter shardRouter;
+    private final IdempotencyService idempotencyService;
+
+    @Override
+    public void processTransaction(TransactionRequest request) {
+        checkRemoteAccountTo(request);
+        shardRouter.runOnAccount(request.getAccountFromNumber(), () -> transactionService.processTransaction(request));
+    }
+
+    @Override
+    public String processTransaction(TransactionRequest request, String idempotencyKey) {
+        checkRemoteAccountTo(request);
+        if (idempotencyKey != null) {
+            // Ответ хранится на шарде отправителя, поэтому ключ сначала закрепляется на шарде ключа
+            idempotencyService.claim(idempotencyKey, request);
+        }
+        return shardRouter.executeOnAccount(request.getAccountFromNumber(),
+                () -> transactionService.processTransaction(request, idempotencyKey));
+    }
+
+    @Override
+    public List<TransactionResult> processBatch(List<TransactionRequest> requests) {
+        checkBatchSize(requests.size());
+        Set<String> existingRemoteAccounts = accountService.getAllByAccountNumbers(requests.stream()
+                        .filter(this::isRemoteTransfer)
+                        .map(TransactionRequest::getAccountToNumber)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .map(Account::getAccountNumber)
+                .collect(Collectors.toSet());
+
+        List<TransactionResult> results = new ArrayList<>(requests.size());
+        Map<Integer, List<Integer>> indexesByShard = new TreeMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransactionRequest request = requests.get(i);
+            if (isRemoteTransfer(request) && !existingRemoteAccounts.contains(request.getAccountToNumber())) {
+                results.add(new TransactionResult(i, false,
+                        String.format("Лицевой счет %1$s не найден", request.getAccountToNumber())));
+                continue;
+            }
+            int shard = shardRouter.shardOf(request == null ? null : request.getAccountFromNumber());
+            indexesByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(i);
+        }
+
+        indexesByShard.forEach((shard, indexes) -> {
+            List<TransactionRequest> part = indexes.stream().map(requests::get).collect(Collectors.toList());
+            shardRouter.executeOnShard(shard, () -> transactionService.processBatch(part)).forEach(result ->
+                    results.add(new TransactionResult(indexes.get(result.getIndex()), result.isSuccess(), result.getMessage())));
+        });
+        results.sort(Comparator.comparingInt(TransactionResult::getIndex));
+        return results;
+    }
+
+    @Override
+    public List<Transactions> getTransactionsByAccountNumber(String accountNumber) {
+        return shardRouter.executeOnAccount(accountNumber, () -> transactionService.getTransactionsByAccountNumber(accountNumber));
+    }
+
+    @Override
+    public List<Transactions> getHistory(String accountNumber, Date from, Date to) {
+        return shardRouter.executeOnAccount(accountNumber, () -> transactionService.getHistory(accountNumber, from, to));
+    }
+
+    @Override
+    public CursorPage<Transactions> getTransactionsPage(String accountNumber, String cursor, Integer limit) {
+        return shardRouter.executeOnAccount(accountNumber, () -> transactionService.getTransactionsPage(accountNumber, cursor, limit));
+    }
+
+    @Override
+    public void streamTransactions(String accountNumber, Consumer<Transactions> consumer) {
+        shardRouter.runOnAccount(accountNumber, () -> transactionService.streamTransactions(accountNumber, consumer));
+    }
+
+    @Override
+    public void exportHistory(String accountNumber, Date from, Date to, Consumer<Transactions> consumer) {
+        shardRouter.runOnAccount(accountNumber, () -> transactionService.exportHistory(accountNumber, from, to, consumer));
+    }
+
+    @Override
+    public void checkHistoryRequest(String accountNumber, Date from, Date to) {
+        transactionService.checkHistoryRequest(accountNumber, from, to);
+    }
+
+    @Override
+    public void checkBatchSize(int size) {
+        transactionService.checkBatchSize(size);
+    }
+
+    @Override
+    public void checkAccountNumber(String accountNumber) {
+        transactionService.checkAccountNumber(accountNumber);
+    }
+
+    private boolean isRemoteTransfer(TransactionRequest request) {
+        return request != null && TransactionType.TRANSFER.equals(request.getType()) && request.getAccountToNumber() != null
+                && shardRouter.shardOf(request.getAccountToNumber()) != shardRouter.shardOf(request.getAccountFromNumber());
+    }
+
+    /**
+     * Зачисление на чужой шард выполняется после фиксации списания, поэтому получатель проверяется до нее
+     */
+    private void checkRemoteAccountTo(TransactionRequest request) {
+        if (isRemoteTransfer(request)) {
+            accountService.getByAccountNumber(request.getAccountToNumber());
+        }
+    }
+}
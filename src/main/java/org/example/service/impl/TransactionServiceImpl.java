@@ -1,68 +1,532 @@
 package org.example.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.example.archive.TransactionArchive;
+import org.example.concurrent.AccountLockManager;
+import org.example.concurrent.HotCreditBuffer;
+import org.example.config.BankProperties;
+import org.example.dto.CursorPage;
 import org.example.dto.TransactionRequest;
+import org.example.dto.TransactionResult;
+import org.example.exception.AccountNotFoundException;
 import org.example.exception.IncorrectAccountNumberException;
+import org.example.exception.IncorrectCursorException;
 import org.example.exception.IncorrectPinCodeException;
+import org.example.exception.IncorrectTransactionRequestException;
+import org.example.exception.InsufficientFundsException;
+import org.example.exception.ServiceBusyException;
+import org.example.id.TimeOrderedUuid;
+import org.example.metrics.TransactionMetrics;
 import org.example.model.Account;
 import org.example.enums.TransactionType;
 import org.example.model.Transactions;
+import org.example.money.Money;
 import org.example.repository.TransactionRepository;
 import org.example.service.AccountService;
+import org.example.service.IdempotencyService;
+import org.example.service.PinCodeService;
+import org.example.service.TransactionRecorder;
 import org.example.service.TransactionService;
-import org.mindrot.jbcrypt.BCrypt;
+import org.example.shard.ShardRouter;
+import org.example.shard.TransferOutbox;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.transaction.Transactional;
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionServiceImpl implements TransactionService {
 
     private final TransactionRepository transactionRepository;
+    private final TransactionRecorder transactionRecorder;
     private final AccountService accountService;
+    private final PinCodeService pinCodeService;
+    private final AccountLockManager lockManager;
+    private final IdempotencyService idempotencyService;
+    private final BankProperties properties;
+    private final TransactionMetrics metrics;
+    private final ShardRouter shardRouter;
+    private final TransferOutbox transferOutbox;
+    private final HotCreditBuffer hotCredits;
+    private final TransactionArchive transactionArchive;
 
     @Override
     @Transactional
     public void processTransaction(TransactionRequest request) throws IncorrectPinCodeException {
-        Account accountFrom = accountService.getByAccountNumber(request.getAccountFromNumber());
-        BigDecimal amount = request.getAmount();
-        if (!request.getType().equals(TransactionType.DEPOSIT)) {
-            String pinCode = request.getPinCode();
+        verifyPinCode(request);
+        String hotAccount = hotCreditAccount(request);
+        lockManager.runLocked(lockedAccounts(request, hotAccount), () -> applyTransaction(request, hotAccount));
+    }
+
+    @Override
+    @Transactional
+    public String processTransaction(TransactionRequest request, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            processTransaction(request);
+            return PROCESSED_MESSAGE;
+        }
+        verifyPinCode(request);
+        // Повторная проверка под блокировкой счетов: параллельный дубль ждет фиксации первого запроса
+        String hotAccount = hotCreditAccount(request);
+        return lockManager.executeLocked(lockedAccounts(request, hotAccount), () -> idempotencyService.findResponse(idempotencyKey, request)
+                .orElseGet(() -> {
+                    if (!rememberFirst(idempotencyKey, request)) {
+                        return idempotencyService.findResponse(idempotencyKey, request).orElse(PROCESSED_MESSAGE);
+                    }
+                    applyTransaction(request, hotAccount);
+                    return PROCESSED_MESSAGE;
+                }));
+    }
 
-            if (pinCode == null || pinCode.isBlank()) {
-                throw new IncorrectPinCodeException("ПинКод должен быть строго 4 значным");
+    /**
+     * Ключ записывается до операции: зачисление на горячий счет идет без блокировки, и вставка ключа
+     * параллельного дубля ждет фиксации первого запроса на первичном ключе Idempotency_Keys.
+     * Если ключ уже зафиксирован, транзакция откатывается и возвращается false
+     */
+    private boolean rememberFirst(String idempotencyKey, TransactionRequest request) {
+        try {
+            idempotencyService.remember(idempotencyKey, request, PROCESSED_MESSAGE);
+            return true;
+        } catch (DuplicateKeyException e) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             }
-            if (!BCrypt.checkpw(pinCode, accountFrom.getPinCode())) {
-                throw new IncorrectPinCodeException(String.format("Неверный Пин-код: %1;s", pinCode));
+            return false;
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<TransactionResult> processBatch(List<TransactionRequest> requests) {
+        return processBatch(requests, true);
+    }
+
+    /**
+     * Пакет регулярных платежей текущего шарда. Пин-код не проверяется - он проверен при создании
+     * платежа, - а счета получателей на других шардах проверены тогда же, поэтому метод можно
+     * вызывать внутри транзакции шарда вместе с изменением расписания
+     */
+    @Transactional
+    public List<TransactionResult> processScheduledBatch(List<TransactionRequest> requests) {
+        return processBatch(requests, false);
+    }
+
+    private List<TransactionResult> processBatch(List<TransactionRequest> requests, boolean verifyPinCode) {
+        checkBatchSize(requests.size());
+        Set<String> accountNumbers = requests.stream()
+                .filter(Objects::nonNull)
+                .flatMap(request -> involvedAccounts(request).stream())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        // Решение о горячем счете принимается один раз на пакет: все зачисления на счет идут одним путем
+        Set<String> hotAccounts = requests.stream()
+                .map(this::creditedAccount)
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(hotCredits::coalesces)
+                .collect(Collectors.toSet());
+        // Горячий счет блокируется, только если пакет с него и списывает
+        Set<String> lockedAccounts = new HashSet<>(accountNumbers);
+        lockedAccounts.removeAll(hotAccounts);
+        requests.stream()
+                .filter(request -> request != null && !TransactionType.DEPOSIT.equals(request.getType()))
+                .map(TransactionRequest::getAccountFromNumber)
+                .filter(accountNumbers::contains)
+                .forEach(lockedAccounts::add);
+
+        Map<Integer, String> rejected = verifyPinCode ? verifyPinCodes(requests) : Collections.emptyMap();
+        return lockManager.executeLocked(lockedAccounts, () -> applyBatch(requests, rejected, accountNumbers, hotAccounts));
+    }
+
+    /**
+     * Пин-коды пакета проверяются до блокировки счетов, как в verifyPinCode. Хэш читается отдельным
+     * запросом, а не сущностью Account: иначе под блокировкой пакет получил бы из контекста
+     * персистентности баланс, прочитанный до нее. Отказ, в том числе из-за перегрузки проверки,
+     * относится только к своей операции; возвращаются сообщения отказов по индексам операций
+     */
+    private Map<Integer, String> verifyPinCodes(List<TransactionRequest> requests) {
+        Map<String, String> pinCodeHashes = new HashMap<>();
+        Map<Integer, String> rejected = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransactionRequest request = requests.get(i);
+            try {
+                validate(request);
+                if (request.getType().equals(TransactionType.DEPOSIT)) {
+                    continue;
+                }
+                String accountFromNumber = request.getAccountFromNumber();
+                String pinCodeHash = pinCodeHashes.get(accountFromNumber);
+                if (pinCodeHash == null) {
+                    pinCodeHash = metrics.timeAccountLookup(() -> accountService.getPinCode(accountFromNumber));
+                    pinCodeHashes.put(accountFromNumber, pinCodeHash);
+                }
+                pinCodeService.verify(accountFromNumber, pinCodeHash, request.getPinCode());
+            } catch (IncorrectTransactionRequestException | IncorrectAccountNumberException | AccountNotFoundException
+                     | IncorrectPinCodeException | ServiceBusyException e) {
+                rejected.put(i, e.getMessage());
             }
+        }
+        return rejected;
+    }
+
+    /**
+     * Проверка запроса и Пин-кода до блокировки счетов: хэш Пин-кода не меняется за время операции,
+     * а BCrypt не должен удерживать блокировки
+     */
+    private void verifyPinCode(TransactionRequest request) throws IncorrectPinCodeException {
+        validate(request);
+        if (!request.getType().equals(TransactionType.DEPOSIT)) {
+            String accountFromNumber = request.getAccountFromNumber();
+            String pinCodeHash = metrics.timeAccountLookup(() -> accountService.getPinCode(accountFromNumber));
+            pinCodeService.verify(accountFromNumber, pinCodeHash, request.getPinCode());
+        }
+    }
+
+    /**
+     * Каждое изменение баланса - один условный UPDATE; при ошибке транзакция откатывается целиком.
+     * Пин-код уже проверен в verifyPinCode
+     */
+    private void applyTransaction(TransactionRequest request, String hotAccount) {
+        String accountFromNumber = request.getAccountFromNumber();
+        Money amount = request.getAmount();
+        if (!request.getType().equals(TransactionType.DEPOSIT)) {
             amount = amount.negate();
         }
-        accountFrom.editBalance(amount);
+        Transactions transactions = buildTransaction(request, amount);
+        Money delta = amount;
+        metrics.timeDbFlush(() -> {
+            if (hotAccount != null) {
+                applyHotCredit(request, transactions, hotAccount);
+                return;
+            }
+            countingInsufficientFunds(request, () -> accountService.addToBalance(accountFromNumber, delta));
+            if (request.getType().equals(TransactionType.TRANSFER)) {
+                credit(transactions);
+            }
+            transactionRecorder.record(transactions);
+        });
+    }
+
+    /**
+     * Списание с отправителя выполняется сразу, а зачисление на горячий счет и строка Transactions
+     * откладываются в Hot_Credit; существование счета проверяется без его блокировки
+     */
+    private void applyHotCredit(TransactionRequest request, Transactions transactions, String hotAccount) {
+        accountService.getByAccountNumber(hotAccount);
+        if (request.getType().equals(TransactionType.TRANSFER)) {
+            countingInsufficientFunds(request, () ->
+                    accountService.addToBalance(request.getAccountFromNumber(), request.getAmount().negate()));
+        }
+        hotCredits.stage(transactions);
+    }
+
+    private List<TransactionResult> applyBatch(List<TransactionRequest> requests, Map<Integer, String> rejected,
+                                               Set<String> accountNumbers, Set<String> hotAccounts) {
+        Set<String> localAccountNumbers = accountNumbers.stream().filter(shardRouter::isLocal).collect(Collectors.toSet());
+        Map<String, Account> accounts = metrics.timeAccountLookup(() -> accountService.getAllByAccountNumbers(localAccountNumbers))
+                .stream()
+                .collect(Collectors.toMap(Account::getAccountNumber, Function.identity()));
+
+        List<TransactionResult> results = new ArrayList<>(requests.size());
+        List<Transactions> transactions = new ArrayList<>(requests.size());
+        List<Transactions> remoteTransfers = new ArrayList<>();
+        List<Transactions> hotCreditRows = new ArrayList<>();
+        Set<Account> changedAccounts = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (int i = 0; i < requests.size(); i++) {
+            TransactionRequest request = requests.get(i);
+            if (rejected.containsKey(i)) {
+                results.add(new TransactionResult(i, false, rejected.get(i)));
+                continue;
+            }
+            try {
+                validate(request);
+                Account accountFrom = loadedAccount(accounts, request.getAccountFromNumber());
+                boolean transfer = request.getType().equals(TransactionType.TRANSFER);
+                boolean remoteTransfer = transfer && request.getAccountToNumber() != null
+                        && !shardRouter.isLocal(request.getAccountToNumber());
+                Account accountTo = transfer && !remoteTransfer
+                        ? loadedAccount(accounts, request.getAccountToNumber())
+                        : null;
+                if (remoteTransfer) {
+                    checkAccountNumber(request.getAccountToNumber());
+                }
+                Money amount = signedAmount(request);
+                boolean hotCredit = hotAccounts.contains(creditedAccount(request));
+
+                if (!hotCredit || transfer) {
+                    countingInsufficientFunds(request, () -> accountFrom.editBalance(amount));
+                    changedAccounts.add(accountFrom);
+                }
+                if (accountTo != null && !hotCredit) {
+                    accountTo.editBalance(request.getAmount());
+                    changedAccounts.add(accountTo);
+                }
+                Transactions transactionsRow = buildTransaction(request, amount);
+                if (hotCredit) {
+                    hotCreditRows.add(transactionsRow);
+                } else {
+                    transactions.add(transactionsRow);
+                }
+                if (remoteTransfer) {
+                    remoteTransfers.add(transactionsRow);
+                }
+                results.add(new TransactionResult(i, true, null));
+            } catch (IncorrectTransactionRequestException | IncorrectAccountNumberException | AccountNotFoundException
+                     | InsufficientFundsException e) {
+                results.add(new TransactionResult(i, false, e.getMessage()));
+            }
+        }
+
+        metrics.timeDbFlush(() -> {
+            accountService.updateAll(changedAccounts);
+            transactionRecorder.recordAll(transactions);
+            hotCredits.stageAll(hotCreditRows);
+            remoteTransfers.forEach(transferOutbox::enqueue);
+        });
+        return results;
+    }
+
+    /**
+     * Зачисление по переводу: на своем шарде сразу, на чужом - через Transfer_Outbox после фиксации списания
+     */
+    private void credit(Transactions transfer) {
+        if (transfer.getAccountToNumber() == null || shardRouter.isLocal(transfer.getAccountToNumber())) {
+            accountService.addToBalance(transfer.getAccountToNumber(), transfer.getAmount());
+        } else {
+            transferOutbox.enqueue(transfer);
+        }
+    }
+
+    private void countingInsufficientFunds(TransactionRequest request, Runnable balanceChange) throws InsufficientFundsException {
+        try {
+            balanceChange.run();
+        } catch (InsufficientFundsException e) {
+            metrics.insufficientFunds(request.getType());
+            throw e;
+        }
+    }
+
+    private void validate(TransactionRequest request) {
+        if (request == null || request.getType() == null) {
+            throw new IncorrectTransactionRequestException("Не указан тип операции");
+        }
+        if (request.getAmount() == null || request.getAmount().signum() <= 0) {
+            throw new IncorrectTransactionRequestException("Сумма операции должна быть положительной");
+        }
+        if (request.getType().equals(TransactionType.TRANSFER)
+                && Objects.equals(request.getAccountFromNumber(), request.getAccountToNumber())) {
+            throw new IncorrectTransactionRequestException("Счета отправителя и получателя должны различаться");
+        }
+    }
+
+    private Account loadedAccount(Map<String, Account> accounts, String accountNumber) {
+        if (accountNumber == null || accountNumber.length() != 10) {
+            throw new IncorrectAccountNumberException("Длина номера лицевого счета должна быть равна 10 символам");
+        }
+        Account account = accounts.get(accountNumber);
+        if (account == null) {
+            throw new AccountNotFoundException(String.format("Лицевой счет %1$s не найден", accountNumber));
+        }
+        return account;
+    }
 
+    private static Money signedAmount(TransactionRequest request) {
+        Money amount = request.getAmount();
+        return request.getType().equals(TransactionType.DEPOSIT) ? amount : amount.negate();
+    }
+
+    private Transactions buildTransaction(TransactionRequest request, Money amount) {
         Transactions transactions = new Transactions();
-        transactions.setId(UUID.randomUUID());
+        transactions.setId(TimeOrderedUuid.next());
         transactions.setAmount(amount.abs());
         transactions.setTransactionType(request.getType());
-        transactions.setAccountFromNumber(accountFrom.getAccountNumber());
+        transactions.setAccountFromNumber(request.getAccountFromNumber());
         if (request.getType().equals(TransactionType.TRANSFER)) {
-            Account accountTo = accountService.getByAccountNumber(request.getAccountToNumber());
-            transactions.setAccountToNumber(accountTo.getAccountNumber());
-            accountTo.editBalance(request.getAmount().abs());
-            accountService.update(accountTo);
+            transactions.setAccountToNumber(request.getAccountToNumber());
+        }
+        transactions.setTransactionDate(new Date());
+        return transactions;
+    }
+
+    /**
+     * Горячий счет, зачисление на который копится в Hot_Credit, или null. Без его блокировки
+     * параллельные дубли по ключу идемпотентности разделяет первичный ключ Idempotency_Keys (см. rememberFirst)
+     */
+    private String hotCreditAccount(TransactionRequest request) {
+        String accountNumber = creditedAccount(request);
+        return hotCredits.coalesces(accountNumber) ? accountNumber : null;
+    }
+
+    private String creditedAccount(TransactionRequest request) {
+        if (request == null || request.getType() == null) {
+            return null;
+        }
+        if (request.getType().equals(TransactionType.DEPOSIT)) {
+            return request.getAccountFromNumber();
+        }
+        return request.getType().equals(TransactionType.TRANSFER) ? request.getAccountToNumber() : null;
+    }
+
+    private Collection<String> lockedAccounts(TransactionRequest request, String hotAccount) {
+        if (hotAccount == null) {
+            return involvedAccounts(request);
+        }
+        return request.getType().equals(TransactionType.TRANSFER)
+                ? Collections.singletonList(request.getAccountFromNumber())
+                : Collections.emptyList();
+    }
+
+    private Collection<String> involvedAccounts(TransactionRequest request) {
+        if (TransactionType.TRANSFER.equals(request.getType())) {
+            return Arrays.asList(request.getAccountFromNumber(), request.getAccountToNumber());
         }
-        accountService.update(accountFrom);
-        transactionRepository.save(transactions);
+        return Collections.singletonList(request.getAccountFromNumber());
     }
 
     @Override
     public List<Transactions> getTransactionsByAccountNumber(String accountNumber) {
+        checkAccountNumber(accountNumber);
+        return transactionArchive.read(archive -> {
+            List<Transactions> transactions = transactionRepository.findAllByAccountFromNumber(accountNumber);
+            List<Transactions> archived = archive.stream(accountNumber, false, null, null, false).collect(Collectors.toList());
+            if (archived.isEmpty()) {
+                return transactions;
+            }
+            // Архивные операции старше оставшихся в таблице
+            archived.addAll(transactions);
+            return archived;
+        });
+    }
+
+    @Override
+    public List<Transactions> getHistory(String accountNumber, Date from, Date to) {
+        checkAccountNumber(accountNumber);
+        Date[] period = period(from, to);
+        return transactionArchive.read(archive -> {
+            List<Transactions> transactions = transactionRepository.findHistory(accountNumber, period[0], period[1]);
+            try (Stream<Transactions> merged = TransactionArchive.merge(transactions.stream(),
+                    archive.stream(accountNumber, true, period[0], period[1], true), TransactionArchive.NEWEST_FIRST)) {
+                return merged.collect(Collectors.toList());
+            }
+        });
+    }
+
+    @Override
+    public CursorPage<Transactions> getTransactionsPage(String accountNumber, String cursor, Integer limit) {
+        checkAccountNumber(accountNumber);
+        BankProperties.Page page = properties.getPage();
+        int size = CursorCodec.limit(limit, page.getDefaultLimit(), page.getMaxLimit());
+        Pageable pageable = PageRequest.of(0, size + 1);
+
+        Transactions after = null;
+        if (cursor != null) {
+            String[] keys = CursorCodec.decode(cursor, 2);
+            after = new Transactions();
+            try {
+                after.setTransactionDate(new Date(Long.parseLong(keys[0])));
+                after.setId(UUID.fromString(keys[1]));
+            } catch (IllegalArgumentException e) {
+                throw new IncorrectCursorException("Некорректный курсор страницы");
+            }
+        }
+        Transactions last = after;
+        List<Transactions> transactions = transactionArchive.read(archive -> {
+            List<Transactions> hot;
+            Stream<Transactions> archived;
+            if (last == null) {
+                hot = transactionRepository.findByAccountFromNumberOrderByTransactionDateDescIdDesc(accountNumber, pageable);
+                archived = archive.stream(accountNumber, false, null, null, true);
+            } else {
+                hot = transactionRepository.findPageBefore(accountNumber, last.getTransactionDate(), last.getId(), pageable);
+                archived = archive.stream(accountNumber, false, null, new Date(last.getTransactionDate().getTime() + 1), true)
+                        .filter(transaction -> TransactionArchive.NEWEST_FIRST.compare(transaction, last) > 0);
+            }
+            try (Stream<Transactions> merged = TransactionArchive.merge(hot.stream(), archived, TransactionArchive.NEWEST_FIRST)) {
+                return merged.limit(size + 1).collect(Collectors.toList());
+            }
+        });
+        if (transactions.size() <= size) {
+            return new CursorPage<>(transactions, null);
+        }
+        List<Transactions> items = new ArrayList<>(transactions.subList(0, size));
+        Transactions lastItem = items.get(size - 1);
+        return new CursorPage<>(items, CursorCodec.encode(String.valueOf(lastItem.getTransactionDate().getTime()),
+                lastItem.getId().toString()));
+    }
+
+    @Override
+    @Transactional
+    public void streamTransactions(String accountNumber, Consumer<Transactions> consumer) {
+        checkAccountNumber(accountNumber);
+        try (Stream<Transactions> transactions = transactionArchive.read(archive -> TransactionArchive.merge(
+                transactionRepository.streamByAccountFromNumber(accountNumber),
+                archive.stream(accountNumber, false, null, null, true), TransactionArchive.NEWEST_FIRST))) {
+            transactions.forEach(consumer);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void exportHistory(String accountNumber, Date from, Date to, Consumer<Transactions> consumer) {
+        checkAccountNumber(accountNumber);
+        Date[] period = period(from, to);
+        try (Stream<Transactions> transactions = transactionArchive.read(archive -> TransactionArchive.merge(
+                transactionRepository.streamHistory(accountNumber, period[0], period[1]),
+                archive.stream(accountNumber, true, period[0], period[1], false), TransactionArchive.OLDEST_FIRST))) {
+            transactions.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void checkHistoryRequest(String accountNumber, Date from, Date to) {
+        checkAccountNumber(accountNumber);
+        period(from, to);
+    }
+
+    private static Date[] period(Date from, Date to) {
+        Date periodFrom = from == null ? new Date(0) : from;
+        Date periodTo = to == null ? new Date(System.currentTimeMillis() + 1) : to;
+        if (!periodFrom.before(periodTo)) {
+            throw new IncorrectTransactionRequestException("Начало периода должно быть раньше его окончания");
+        }
+        return new Date[]{periodFrom, periodTo};
+    }
+
+    @Override
+    public void checkBatchSize(int size) {
+        int maxSize = properties.getBatch().getMaxSize();
+        if (size > maxSize) {
+            throw new IncorrectTransactionRequestException(String.format("Размер пакета не должен превышать %1$d операций", maxSize));
+        }
+    }
+
+    @Override
+    public void checkAccountNumber(String accountNumber) {
         if (accountNumber.length() != 10) {
             throw new IncorrectAccountNumberException("длина номера не равна 10 символам");
         }
-        return transactionRepository.findAllByAccountFromNumber(accountNumber);
     }
 }
@@ -0,0 +1,123 @@
+package org.example.shard;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Определяет шард лицевого счета по хэшу номера и хранит шард текущего потока,
+ * по которому ShardRoutingDataSource выбирает базу. Без явного выбора используется
+ * шард 0: в нем же находятся общие объекты, например последовательность номеров счетов.
+ * Транзакция всегда работает с одним шардом, сменить его внутри транзакции нельзя.
+ */
+public class ShardRouter {
+    public static final int HOME_SHARD = 0;
+
+    private final int shardCount;
+    private final ThreadLocal<Integer> current = new ThreadLocal<>();
+
+    public ShardRouter(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Количество шардов должно быть положительным");
+        }
+        this.shardCount = shardCount;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int shardOf(String accountNumber) {
+        if (shardCount == 1 || accountNumber == null) {
+            return HOME_SHARD;
+        }
+        // Перемешивание битов: номера счетов идут подряд и различаются только последними цифрами
+        int hash = accountNumber.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return Math.floorMod(hash, shardCount);
+    }
+
+    public int currentShard() {
+        Integer shard = current.get();
+        return shard == null ? HOME_SHARD : shard;
+    }
+
+    public boolean isLocal(String accountNumber) {
+        return shardOf(accountNumber) == currentShard();
+    }
+
+    public <T> T executeOnShard(int shard, Supplier<T> action) {
+        if (shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException(String.format("Шард %1$d не существует", shard));
+        }
+        Integer previous = current.get();
+        if (previous != null && previous == shard) {
+            return action.get();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive() && currentShard() != shard) {
+            throw new IllegalStateException(String.format("Транзакция шарда %1$d не может обращаться к шарду %2$d",
+                    currentShard(), shard));
+        }
+        current.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+    }
+
+    public void runOnShard(int shard, Runnable action) {
+        executeOnShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T executeOnAccount(String accountNumber, Supplier<T> action) {
+        return executeOnShard(shardOf(accountNumber), action);
+    }
+
+    public void runOnAccount(String accountNumber, Runnable action) {
+        runOnShard(shardOf(accountNumber), action);
+    }
+
+    /**
+     * Выполняет запрос на каждом шарде по очереди и объединяет результаты
+     */
+    public <T> List<T> collectFromShards(Supplier<? extends Collection<T>> query) {
+        List<T> result = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            result.addAll(executeOnShard(shard, query));
+        }
+        return result;
+    }
+
+    public void runOnEachShard(Runnable action) {
+        for (int shard = 0; shard < shardCount; shard++) {
+            runOnShard(shard, action);
+        }
+    }
+
+    /**
+     * Раскладывает элементы по шардам их счетов, шарды упорядочены по номеру
+     */
+    public <T> Map<Integer, List<T>> groupByShard(Collection<T> items, Function<T, String> accountNumber) {
+        Map<Integer, List<T>> groups = new TreeMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(shardOf(accountNumber.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.shard;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Отдает соединение шарда, выбранного в ShardRouter для текущего потока
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    private final ShardRouter shardRouter;
+
+    public ShardRoutingDataSource(ShardRouter shardRouter, Map<Object, Object> shards) {
+        this.shardRouter = shardRouter;
+        setTargetDataSources(shards);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return shardRouter.currentShard();
+    }
+
+    public Map<Object, DataSource> getShards() {
+        return getResolvedDataSources();
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource shard : getResolvedDataSources().values()) {
+            if (shard instanceof AutoCloseable) {
+                ((AutoCloseable) shard).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.example.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.concurrent.AccountLockManager;
+import org.example.config.BankProperties;
+import org.example.enums.TransactionType;
+import org.example.ledger.LedgerTotals;
+import org.example.model.Transactions;
+import org.example.money.Money;
+import org.example.repository.TransactionRepository;
+import org.example.service.AccountService;
+import org.example.snapshot.ShardSnapshots;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перевод на счет другого шарда: списание, строка Transactions и запись в Transfer_Outbox
+ * фиксируются одной локальной транзакцией шарда отправителя. Затем фоновый поток зачисляет
+ * сумму получателю и копирует туда строку Transactions с тем же id; повторная доставка
+ * упирается в первичный ключ и не зачисляет деньги дважды. Запись outbox удаляется после зачисления.
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class TransferOutbox {
+    private static final String INSERT_SQL = "INSERT INTO Transfer_Outbox (TransactionID, Account_From_Number, "
+            + "Account_To_Number, Amount, Transaction_Date) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_SQL = "SELECT TransactionID, Account_From_Number, Account_To_Number, Amount, "
+            + "Transaction_Date FROM Transfer_Outbox ORDER BY Transaction_Date LIMIT ?";
+    private static final String DELETE_SQL = "DELETE FROM Transfer_Outbox WHERE TransactionID = ?";
+
+    private static final RowMapper<Transactions> ROW_MAPPER = (rs, rowNum) -> {
+        Transactions transfer = new Transactions();
+        transfer.setId(rs.getObject("TransactionID", UUID.class));
+        transfer.setAccountFromNumber(rs.getString("Account_From_Number"));
+        transfer.setAccountToNumber(rs.getString("Account_To_Number"));
+        transfer.setAmount(Money.of(rs.getBigDecimal("Amount")));
+        transfer.setTransactionType(TransactionType.TRANSFER);
+        transfer.setTransactionDate(rs.getTimestamp("Transaction_Date"));
+        return transfer;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionRepository transactionRepository;
+    private final AccountService accountService;
+    private final LedgerTotals ledgerTotals;
+    private final AccountLockManager lockManager;
+    private final ShardRouter shardRouter;
+    private final ShardSnapshots snapshots;
+    private final int batchSize;
+    private final ScheduledExecutorService relay = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transfer-outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TransferOutbox(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                          TransactionRepository transactionRepository, AccountService accountService,
+                          LedgerTotals ledgerTotals, AccountLockManager lockManager, ShardRouter shardRouter,
+                          ShardSnapshots snapshots, BankProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionRepository = transactionRepository;
+        this.accountService = accountService;
+        this.ledgerTotals = ledgerTotals;
+        this.lockManager = lockManager;
+        this.shardRouter = shardRouter;
+        this.snapshots = snapshots;
+        BankProperties.Shards shards = properties.getShards();
+        this.batchSize = shards.getOutboxBatchSize();
+        if (shardRouter.getShardCount() > 1) {
+            long intervalMillis = shards.getOutboxInterval().toMillis();
+            relay.scheduleWithFixedDelay(this::deliverAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Ставит зачисление в очередь шарда отправителя; вызывается в транзакции списания
+     */
+    public void enqueue(Transactions transfer) {
+        jdbcTemplate.update(INSERT_SQL, transfer.getId(), transfer.getAccountFromNumber(), transfer.getAccountToNumber(),
+                transfer.getAmount().toBigDecimal(), new Timestamp(transfer.getTransactionDate().getTime()));
+
+        int shard = shardRouter.currentShard();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    relay.execute(() -> deliverSafely(shard));
+                }
+            });
+        } else {
+            relay.execute(() -> deliverSafely(shard));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relay.shutdownNow();
+    }
+
+    void deliverAll() {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            deliverSafely(shard);
+        }
+    }
+
+    private void deliverSafely(int shard) {
+        try {
+            deliver(shard);
+        } catch (RuntimeException e) {
+            log.warn("Шард {}: зачисление межшардовых переводов отложено до следующей попытки", shard, e);
+        }
+    }
+
+    private void deliver(int shard) {
+        List<Transactions> pending;
+        do {
+            pending = shardRouter.executeOnShard(shard, () -> jdbcTemplate.query(SELECT_SQL, ROW_MAPPER, batchSize));
+            for (Transactions transfer : pending) {
+                credit(transfer);
+                snapshots.runOutsideCapture(() ->
+                        shardRouter.runOnShard(shard, () -> jdbcTemplate.update(DELETE_SQL, transfer.getId())));
+            }
+        } while (pending.size() == batchSize);
+    }
+
+    private void credit(Transactions transfer) {
+        String accountToNumber = transfer.getAccountToNumber();
+        try {
+            shardRouter.runOnAccount(accountToNumber, () -> transactionTemplate.executeWithoutResult(status ->
+                    lockManager.runLocked(Collections.singletonList(accountToNumber), () -> {
+                        transactionRepository.insertAll(Collections.singletonList(transfer));
+                        accountService.addToBalance(accountToNumber, transfer.getAmount());
+                        ledgerTotals.post(transfer);
+                    })));
+        } catch (DuplicateKeyException e) {
+            // Строка с этим id уже есть у получателя: зачисление выполнено прошлой попыткой.
+            // Другие ошибки (например, переполнение баланса) пробрасываются, и запись остается в outbox
+            log.debug("Перевод {} уже зачислен на счет {}", transfer.getId(), accountToNumber);
+        }
+    }
+}
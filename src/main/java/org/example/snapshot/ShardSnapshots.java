@@ -0,0 +1,320 @@
+package org.example.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.BankProperties;
+import org.example.shard.ShardRoutingDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Снимки шардов на диске для быстрого старта in-memory БД. Снимок читается в транзакции
+ * H2 с изоляцией SNAPSHOT: MVCC отдает согласованное состояние всех таблиц шарда на момент
+ * первого запроса и не блокирует пишущие транзакции. Файл пишется во временный и атомарно
+ * заменяет предыдущий. При старте, сразу после миграций Flyway и до приема запросов,
+ * снимок загружается в пустой шард пакетными INSERT одной транзакцией.
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class ShardSnapshots implements SmartInitializingSingleton, DisposableBean {
+    /**
+     * Таблицы с состоянием счетов; Hot_Credit и Transfer_Outbox хранят еще не примененные зачисления,
+     * Archive_Segments - список сегментов архива, согласованный с Transactions, Ledger_Totals - итоги проводок счетов
+     */
+    static final List<String> TABLES = Collections.unmodifiableList(Arrays.asList(
+            "Accounts", "Transactions", "Hot_Credit", "Transfer_Outbox", "Scheduled_Payments", "Idempotency_Keys",
+            "Archive_Segments", "Ledger_Totals", "Idempotency_Claims"));
+
+    /**
+     * org.h2.engine.Constants.TRANSACTION_SNAPSHOT: все таблицы видны на момент первого запроса транзакции
+     */
+    private static final int TRANSACTION_SNAPSHOT = 6;
+    private static final String NEXT_BLOCK_SQL = "SELECT NEXT VALUE FOR Account_Number_Block_Seq";
+    private static final String RESTART_BLOCK_SQL = "ALTER SEQUENCE Account_Number_Block_Seq RESTART WITH %1$d";
+    private static final String FILE_SUFFIX = ".snapshot.gz";
+    /**
+     * Итоги проводок счетов, которых нет в снимке (снимок снят до появления Ledger_Totals),
+     * считаются по истории так же, как в миграции V9
+     */
+    private static final String BACKFILL_TOTALS_SQL = "INSERT INTO Ledger_Totals (Account_Number, Opening_Balance, Net, Postings) "
+            + "SELECT a.Account_Number, COALESCE(a.Balance, 0) - COALESCE(h.Net, 0) + COALESCE(p.Pending, 0), "
+            + "COALESCE(h.Net, 0), COALESCE(h.Postings, 0) "
+            + "FROM Accounts a "
+            + "LEFT JOIN (SELECT Account_Number, SUM(Amount) AS Net, COUNT(*) AS Postings FROM ("
+            + "SELECT Account_From_Number AS Account_Number, "
+            + "CASE WHEN Transaction_Type = 'DEPOSIT' THEN Amount ELSE -Amount END AS Amount FROM Transactions "
+            + "UNION ALL SELECT Account_To_Number AS Account_Number, Amount FROM Transactions "
+            + "WHERE Transaction_Type = 'TRANSFER' AND Account_To_Number IS NOT NULL"
+            + ") History_Postings GROUP BY Account_Number) h ON h.Account_Number = a.Account_Number "
+            + "LEFT JOIN (SELECT Account_From_Number AS Account_Number, SUM(Amount) AS Pending FROM Hot_Credit "
+            + "WHERE Transaction_Type = 'TRANSFER' GROUP BY Account_From_Number) p ON p.Account_Number = a.Account_Number "
+            + "WHERE NOT EXISTS (SELECT 1 FROM Ledger_Totals t WHERE t.Account_Number = a.Account_Number)";
+
+    private final Map<Integer, DataSource> shards = new TreeMap<>();
+    private final BankProperties.Snapshot properties;
+    private final BankProperties.Stream stream;
+    private final Path directory;
+    private final ReentrantReadWriteLock captureLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ShardSnapshots(ShardRoutingDataSource dataSource, BankProperties properties) {
+        dataSource.getShards().forEach((shard, shardDataSource) -> shards.put((Integer) shard, shardDataSource));
+        this.properties = properties.getSnapshot();
+        this.stream = properties.getStream();
+        this.directory = Paths.get(this.properties.getDirectory());
+    }
+
+    /**
+     * Загружает снимки в пустые шарды; вызывается после миграций, пока к БД никто не обращается
+     */
+    public void restore() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        shards.forEach((shard, dataSource) -> {
+            Path file = file(shard);
+            if (Files.exists(file)) {
+                restore(shard, dataSource, file);
+            }
+        });
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (properties.isEnabled()) {
+            long interval = properties.getInterval().toMillis();
+            writer.scheduleWithFixedDelay(this::snapshotSafely, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Снимок при остановке, чтобы следующий запуск начинал с последнего состояния
+     */
+    @Override
+    public void destroy() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (properties.isEnabled()) {
+            snapshotSafely();
+        }
+    }
+
+    /**
+     * Выполняет действие не во время фиксации снимков шардов. Нужен удалению записи Transfer_Outbox:
+     * иначе зачисление могло бы не попасть в снимок получателя, а запись outbox - уже пропасть из снимка отправителя.
+     */
+    public void runOutsideCapture(Runnable action) {
+        captureLock.readLock().lock();
+        try {
+            action.run();
+        } finally {
+            captureLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Снимает все шарды: сначала под captureLock фиксирует снимок MVCC каждого шарда, затем без блокировок
+     * переписывает таблицы в файлы
+     */
+    public void snapshot() {
+        List<Connection> connections = new ArrayList<>(shards.size());
+        try {
+            Files.createDirectories(directory);
+            Map<Integer, Long> blocks = new TreeMap<>();
+            captureLock.writeLock().lock();
+            try {
+                for (Map.Entry<Integer, DataSource> shard : shards.entrySet()) {
+                    Connection connection = shard.getValue().getConnection();
+                    connections.add(connection);
+                    blocks.put(shard.getKey(), capture(connection));
+                }
+            } finally {
+                captureLock.writeLock().unlock();
+            }
+            int index = 0;
+            for (Map.Entry<Integer, Long> shard : blocks.entrySet()) {
+                write(shard.getKey(), connections.get(index++), shard.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать снимок в " + directory, e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось прочитать снимок шардов", e);
+        } finally {
+            connections.forEach(ShardSnapshots::release);
+        }
+    }
+
+    private void snapshotSafely() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Ошибка записи снимка шардов, повтор через {}", properties.getInterval(), e);
+        }
+    }
+
+    /**
+     * Первый запрос транзакции SNAPSHOT фиксирует видимое состояние всех таблиц; заодно резервирует
+     * блок номеров счетов, который больше всех выданных до снимка
+     */
+    private long capture(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        connection.setTransactionIsolation(TRANSACTION_SNAPSHOT);
+        try (Statement statement = connection.createStatement();
+             ResultSet block = statement.executeQuery(NEXT_BLOCK_SQL)) {
+            block.next();
+            return block.getLong(1);
+        }
+    }
+
+    private void write(int shard, Connection connection, long accountNumberBlock) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Path file = file(shard);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows = 0;
+        try (SnapshotWriter snapshot = new SnapshotWriter(temporary, shard, shards.size(), accountNumberBlock);
+             Statement statement = connection.createStatement()) {
+            statement.setFetchSize(stream.getFetchSize());
+            for (String table : TABLES) {
+                try (ResultSet resultSet = statement.executeQuery("SELECT * FROM " + table)) {
+                    rows += snapshot.table(table, resultSet);
+                }
+            }
+            snapshot.finish();
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        connection.rollback();
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Шард {}: снимок {} строк, {} байт за {} мс", shard, rows, Files.size(file),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void restore(int shard, DataSource dataSource, Path file) {
+        long start = System.nanoTime();
+        try (SnapshotReader snapshot = new SnapshotReader(file);
+             Connection connection = dataSource.getConnection()) {
+            if (snapshot.shard() != shard || snapshot.shardCount() != shards.size()) {
+                throw new IllegalStateException(String.format(
+                        "Снимок %1$s снят для шарда %2$d из %3$d, а запущено шардов: %4$d", file,
+                        snapshot.shard(), snapshot.shardCount(), shards.size()));
+            }
+            String nonEmpty = nonEmptyTable(connection);
+            if (nonEmpty != null) {
+                log.warn("Шард {}: таблица {} не пуста, снимок {} не загружается", shard, nonEmpty, file);
+                return;
+            }
+            connection.setAutoCommit(false);
+            long rows = 0;
+            while (snapshot.nextTable()) {
+                rows += load(connection, snapshot);
+            }
+            snapshot.verifyEnd();
+            int backfilled;
+            try (Statement statement = connection.createStatement()) {
+                backfilled = statement.executeUpdate(BACKFILL_TOTALS_SQL);
+            }
+            connection.commit();
+            if (backfilled > 0) {
+                log.warn("Шард {}: в снимке {} нет итогов проводок {} счетов, они посчитаны по истории",
+                        shard, file, backfilled);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(String.format(RESTART_BLOCK_SQL, snapshot.accountNumberBlock()));
+            }
+            connection.commit();
+            log.info("Шард {}: из снимка от {} загружено {} строк за {} мс", shard,
+                    new Date(snapshot.createdAt()), rows,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать снимок " + file, e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось загрузить снимок " + file, e);
+        }
+    }
+
+    private long load(Connection connection, SnapshotReader snapshot) throws IOException, SQLException {
+        List<String> columns = snapshot.columns();
+        String sql = String.format("INSERT INTO %1$s (%2$s) VALUES (%3$s)", snapshot.table(),
+                String.join(", ", columns),
+                columns.stream().map(column -> "?").collect(Collectors.joining(", ")));
+        Object[] row = new Object[columns.size()];
+        long rows = 0;
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            while (snapshot.nextRow(row)) {
+                for (int i = 0; i < row.length; i++) {
+                    insert.setObject(i + 1, row[i]);
+                }
+                insert.addBatch();
+                if (++rows % properties.getBatchSize() == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        return rows;
+    }
+
+    private static String nonEmptyTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String table : TABLES) {
+                try (ResultSet resultSet = statement.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+                    if (resultSet.next()) {
+                        return table;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private Path file(int shard) {
+        return directory.resolve("shard-" + shard + FILE_SUFFIX);
+    }
+
+    private static void release(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Не удалось закрыть соединение снимка", e);
+        }
+    }
+}
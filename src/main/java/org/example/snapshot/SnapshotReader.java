@@ -0,0 +1,136 @@
+package org.example.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Читает снимок шарда, записанный SnapshotWriter: сначала заголовок, затем таблицы по порядку
+ */
+class SnapshotReader implements Closeable {
+    private final DataInputStream in;
+    private final int shard;
+    private final int shardCount;
+    private final long createdAt;
+    private final long accountNumberBlock;
+    private String table;
+    private List<String> columns;
+
+    SnapshotReader(Path path) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path), SnapshotWriter.BUFFER_SIZE), SnapshotWriter.BUFFER_SIZE));
+        if (in.readInt() != SnapshotWriter.MAGIC) {
+            in.close();
+            throw new IOException("Файл " + path + " не является снимком");
+        }
+        int version = in.readInt();
+        if (version != SnapshotWriter.VERSION) {
+            in.close();
+            throw new IOException(String.format("Версия снимка %1$d не поддерживается", version));
+        }
+        this.shard = in.readInt();
+        this.shardCount = in.readInt();
+        this.createdAt = in.readLong();
+        this.accountNumberBlock = in.readLong();
+    }
+
+    int shard() {
+        return shard;
+    }
+
+    int shardCount() {
+        return shardCount;
+    }
+
+    long createdAt() {
+        return createdAt;
+    }
+
+    long accountNumberBlock() {
+        return accountNumberBlock;
+    }
+
+    String table() {
+        return table;
+    }
+
+    List<String> columns() {
+        return columns;
+    }
+
+    /**
+     * Переходит к следующей таблице; false - таблиц больше нет
+     */
+    boolean nextTable() throws IOException {
+        if (in.readByte() == SnapshotWriter.END) {
+            return false;
+        }
+        table = in.readUTF();
+        int count = in.readInt();
+        columns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            columns.add(in.readUTF());
+        }
+        return true;
+    }
+
+    /**
+     * Читает следующую строку текущей таблицы в row; false - строки таблицы закончились
+     */
+    boolean nextRow(Object[] row) throws IOException {
+        if (in.readByte() == SnapshotWriter.END) {
+            return false;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            row[i] = readValue();
+        }
+        return true;
+    }
+
+    /**
+     * Дочитывает поток до конца, чтобы GZIPInputStream сверил контрольную сумму
+     */
+    void verifyEnd() throws IOException {
+        if (in.read() != -1) {
+            throw new IOException("После маркера конца снимка остались данные");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private Object readValue() throws IOException {
+        byte type = in.readByte();
+        if (type == SnapshotWriter.NULL) {
+            return null;
+        } else if (type == SnapshotWriter.STRING) {
+            return in.readUTF();
+        } else if (type == SnapshotWriter.DECIMAL) {
+            return new BigDecimal(in.readUTF());
+        } else if (type == SnapshotWriter.TIMESTAMP) {
+            Timestamp timestamp = new Timestamp(in.readLong());
+            timestamp.setNanos(in.readInt());
+            return timestamp;
+        } else if (type == SnapshotWriter.UUID_VALUE) {
+            return new UUID(in.readLong(), in.readLong());
+        } else if (type == SnapshotWriter.LONG) {
+            return in.readLong();
+        } else if (type == SnapshotWriter.INT) {
+            return in.readInt();
+        } else if (type == SnapshotWriter.BOOLEAN) {
+            return in.readBoolean();
+        }
+        throw new IOException("Неизвестный тип значения в снимке: " + type);
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Пишет снимок шарда: заголовок, секции таблиц (имена столбцов и строки) и маркер конца.
+ * Поток сжат GZIP; CRC32 в его конце проверяется при чтении, поэтому недописанный файл не загрузится.
+ */
+class SnapshotWriter implements Closeable {
+    static final int MAGIC = 0x42534E50;
+    static final int VERSION = 1;
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    static final byte END = 0;
+    static final byte TABLE = 1;
+    static final byte ROW = 1;
+
+    static final byte NULL = 0;
+    static final byte STRING = 1;
+    static final byte DECIMAL = 2;
+    static final byte TIMESTAMP = 3;
+    static final byte UUID_VALUE = 4;
+    static final byte LONG = 5;
+    static final byte INT = 6;
+    static final byte BOOLEAN = 7;
+
+    private final FileOutputStream file;
+    private final GZIPOutputStream gzip;
+    private final DataOutputStream out;
+
+    SnapshotWriter(Path path, int shard, int shardCount, long accountNumberBlock) throws IOException {
+        this.file = new FileOutputStream(path.toFile());
+        this.gzip = new GZIPOutputStream(file, BUFFER_SIZE);
+        this.out = new DataOutputStream(new BufferedOutputStream(gzip, BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(shard);
+        out.writeInt(shardCount);
+        out.writeLong(System.currentTimeMillis());
+        out.writeLong(accountNumberBlock);
+    }
+
+    /**
+     * Переписывает все строки выборки в секцию таблицы и возвращает их количество
+     */
+    long table(String table, ResultSet rows) throws IOException, SQLException {
+        ResultSetMetaData metaData = rows.getMetaData();
+        int columns = metaData.getColumnCount();
+        out.writeByte(TABLE);
+        out.writeUTF(table);
+        out.writeInt(columns);
+        for (int column = 1; column <= columns; column++) {
+            out.writeUTF(metaData.getColumnLabel(column));
+        }
+        long count = 0;
+        while (rows.next()) {
+            out.writeByte(ROW);
+            for (int column = 1; column <= columns; column++) {
+                writeValue(rows.getObject(column));
+            }
+            count++;
+        }
+        out.writeByte(END);
+        return count;
+    }
+
+    /**
+     * Дописывает маркер конца и сбрасывает файл на диск; без вызова файл считается оборванным
+     */
+    void finish() throws IOException {
+        out.writeByte(END);
+        out.flush();
+        gzip.finish();
+        file.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(DECIMAL);
+            out.writeUTF(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp) value;
+            out.writeByte(TIMESTAMP);
+            out.writeLong(timestamp.getTime());
+            out.writeInt(timestamp.getNanos());
+        } else if (value instanceof UUID) {
+            UUID uuid = (UUID) value;
+            out.writeByte(UUID_VALUE);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            throw new IllegalStateException("Тип столбца не поддерживается снимком: " + value.getClass().getName());
+        }
+    }
+}
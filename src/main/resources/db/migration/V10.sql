@@ -0,0 +1,10 @@
+-- Ключ идемпотентности закрепляется за запросом на шарде, выбранном по хэшу ключа, до выполнения операции:
+-- ответ хранится на шарде отправителя, и без закрепления ключ, повторенный с отправителем другого шарда,
+-- выполнил бы вторую операцию
+CREATE TABLE IF NOT EXISTS Idempotency_Claims (
+    Idempotency_Key VARCHAR(64) PRIMARY KEY,
+    Request_Hash VARCHAR(64) NOT NULL,
+    Created_At TIMESTAMP NOT NULL
+    );
+
+CREATE INDEX IF NOT EXISTS Idx_Idempotency_Claims_Created_At ON Idempotency_Claims (Created_At);
@@ -0,0 +1,7 @@
+-- Номер лицевого счета должен быть уникальным
+ALTER TABLE Accounts ADD CONSTRAINT UK_Accounts_Account_Number UNIQUE (Account_Number);
+
+-- Индексы для выборки истории операций по счету за период
+CREATE INDEX IF NOT EXISTS IDX_Transactions_From_Date ON Transactions (Account_From_Number, Transaction_Date);
+CREATE INDEX IF NOT EXISTS IDX_Transactions_To_Date ON Transactions (Account_To_Number, Transaction_Date);
+CREATE INDEX IF NOT EXISTS IDX_Transactions_Date ON Transactions (Transaction_Date);
\ No newline at end of file
@@ -0,0 +1,3 @@
+-- Последовательность блоков номеров лицевых счетов: блок N содержит номера N * 1000 .. N * 1000 + 999,
+-- к которым приписывается контрольная цифра по алгоритму Луна
+CREATE SEQUENCE IF NOT EXISTS Account_Number_Block_Seq START WITH 100000 INCREMENT BY 1 MAXVALUE 999999;
\ No newline at end of file
@@ -0,0 +1,10 @@
+-- Ключи идемпотентности POST /operations/process: повтор запроса с тем же ключом
+-- получает сохраненный ответ и не выполняет операцию повторно
+CREATE TABLE IF NOT EXISTS Idempotency_Keys (
+    Idempotency_Key VARCHAR(64) PRIMARY KEY,
+    Request_Hash VARCHAR(64) NOT NULL,
+    Response VARCHAR(255) NOT NULL,
+    Created_At TIMESTAMP NOT NULL
+    );
+
+CREATE INDEX IF NOT EXISTS Idx_Idempotency_Keys_Created_At ON Idempotency_Keys (Created_At);
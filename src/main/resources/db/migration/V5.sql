@@ -0,0 +1,9 @@
+-- Исходящие переводы на счета другого шарда: строка пишется в одной транзакции со списанием
+-- и удаляется после зачисления получателю на его шарде
+CREATE TABLE IF NOT EXISTS Transfer_Outbox (
+    TransactionID UUID PRIMARY KEY,
+    Account_From_Number VARCHAR(10) NOT NULL,
+    Account_To_Number VARCHAR(10) NOT NULL,
+    Amount DECIMAL(10, 2) NOT NULL,
+    Transaction_Date TIMESTAMP NOT NULL
+    );
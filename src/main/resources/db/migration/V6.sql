@@ -0,0 +1,13 @@
+-- Зачисления на горячие счета: строка пишется в транзакции отправителя без блокировки счета получателя,
+-- фоновый поток переносит пачку строк в Transactions и одним UPDATE добавляет их сумму к балансу
+CREATE TABLE IF NOT EXISTS Hot_Credit (
+    TransactionID UUID PRIMARY KEY,
+    Account_Number VARCHAR(10) NOT NULL,
+    Account_From_Number VARCHAR(20) NOT NULL,
+    Account_To_Number VARCHAR(10),
+    Amount DECIMAL(10, 2) NOT NULL,
+    Transaction_Type VARCHAR(255) NOT NULL,
+    Transaction_Date TIMESTAMP NOT NULL
+    );
+
+CREATE INDEX IF NOT EXISTS Hot_Credit_Account ON Hot_Credit (Account_Number, TransactionID);
@@ -0,0 +1,17 @@
+-- Регулярные и отложенные платежи. Планировщик читает таблицу только диапазонами индекса
+-- по (Next_Run_At, Id) на горизонт вперед и держит загруженные платежи в колесе таймеров.
+-- У выполненного разового платежа Next_Run_At пуст, результат остается в Last_Result
+CREATE TABLE IF NOT EXISTS Scheduled_Payments (
+    Id UUID PRIMARY KEY,
+    Account_From_Number VARCHAR(10) NOT NULL,
+    Account_To_Number VARCHAR(10),
+    Amount DECIMAL(10, 2) NOT NULL,
+    Transaction_Type VARCHAR(255) NOT NULL,
+    Period_Seconds BIGINT,
+    Next_Run_At TIMESTAMP,
+    Last_Run_At TIMESTAMP,
+    Last_Result VARCHAR(255)
+    );
+
+CREATE INDEX IF NOT EXISTS Scheduled_Payments_Next_Run ON Scheduled_Payments (Next_Run_At, Id);
+CREATE INDEX IF NOT EXISTS Scheduled_Payments_Account ON Scheduled_Payments (Account_From_Number);
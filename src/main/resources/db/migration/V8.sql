@@ -0,0 +1,8 @@
+-- Сегменты архива операций шарда. Строка добавляется в одной транзакции с удалением
+-- заархивированных строк из Transactions; файл сегмента без строки здесь не читается и удаляется при старте
+CREATE TABLE IF NOT EXISTS Archive_Segments (
+    File_Name VARCHAR(255) PRIMARY KEY,
+    Min_Date TIMESTAMP NOT NULL,
+    Max_Date TIMESTAMP NOT NULL,
+    Row_Count INT NOT NULL
+    );
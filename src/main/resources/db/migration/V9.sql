@@ -0,0 +1,36 @@
+-- Нарастающие итоги проводок по счетам шарда: обновляются в той же транзакции, что пишет строки Transactions,
+-- поэтому сверка баланса с Opening_Balance + Net не требует пересчета истории операций.
+-- Net и Postings счетов, открытых до этой миграции, считаются по их строкам Transactions на этом шарде;
+-- начальный баланс при открытии счета нигде не записан, поэтому Opening_Balance - это остаток баланса,
+-- не объясненный историей (включая операции, уже перенесенные в архив)
+CREATE TABLE IF NOT EXISTS Ledger_Totals (
+    Account_Number VARCHAR(10) PRIMARY KEY,
+    Opening_Balance DECIMAL(19, 2) NOT NULL,
+    Net DECIMAL(19, 2) NOT NULL,
+    Postings BIGINT NOT NULL
+    );
+
+-- Перевод на горячий счет списан с отправителя, а его строка Transactions еще ждет в Hot_Credit
+INSERT INTO Ledger_Totals (Account_Number, Opening_Balance, Net, Postings)
+SELECT a.Account_Number,
+       COALESCE(a.Balance, 0) - COALESCE(h.Net, 0) + COALESCE(p.Pending, 0),
+       COALESCE(h.Net, 0),
+       COALESCE(h.Postings, 0)
+FROM Accounts a
+LEFT JOIN (
+    SELECT Account_Number, SUM(Amount) AS Net, COUNT(*) AS Postings FROM (
+        SELECT Account_From_Number AS Account_Number,
+               CASE WHEN Transaction_Type = 'DEPOSIT' THEN Amount ELSE -Amount END AS Amount
+        FROM Transactions
+        UNION ALL
+        SELECT Account_To_Number AS Account_Number, Amount
+        FROM Transactions
+        WHERE Transaction_Type = 'TRANSFER' AND Account_To_Number IS NOT NULL
+    ) History_Postings GROUP BY Account_Number
+) h ON h.Account_Number = a.Account_Number
+LEFT JOIN (
+    SELECT Account_From_Number AS Account_Number, SUM(Amount) AS Pending
+    FROM Hot_Credit
+    WHERE Transaction_Type = 'TRANSFER'
+    GROUP BY Account_From_Number
+) p ON p.Account_Number = a.Account_Number;
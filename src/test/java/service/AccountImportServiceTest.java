@@ -0,0 +1,112 @@
+package service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.config.BankProperties;
+import org.example.dto.AccountImportResult;
+import org.example.enums.RecordFormat;
+import org.example.index.BalanceIndex;
+import org.example.ledger.LedgerTotals;
+import org.example.money.Money;
+import org.example.service.AccountNumberAllocator;
+import org.example.service.impl.AccountImportServiceImpl;
+import org.example.shard.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AccountImportServiceTest {
+    private JdbcTemplate jdbcTemplate;
+    private BalanceIndex balanceIndex;
+    private AccountImportServiceImpl importService;
+
+    @BeforeEach
+    public void setup() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        AccountNumberAllocator allocator = mock(AccountNumberAllocator.class);
+        AtomicLong serial = new AtomicLong(1_000_000_000L);
+        when(allocator.next()).thenAnswer(invocation -> Long.toString(serial.getAndIncrement()));
+
+        BankProperties properties = new BankProperties();
+        properties.getAccountImport().setBatchSize(2);
+        balanceIndex = new BalanceIndex(jdbcTemplate, new ShardRouter(1), new BankProperties());
+        importService = new AccountImportServiceImpl(jdbcTemplate, mock(PlatformTransactionManager.class),
+                new ObjectMapper(), allocator, balanceIndex, new LedgerTotals(jdbcTemplate, new ShardRouter(1)), new ShardRouter(1),
+                properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        importService.shutdown();
+    }
+
+    @Test
+    void importCsvInWindows() throws Exception {
+        //GIVEN
+        String csv = "name,balance,pinCode\n"
+                + "Dj D,100.50,1234\n"
+                + "Lui Rex,-1,1234\n"
+                + "\n"
+                + "Mo, Jo,10,12\n"
+                + "Ann Lee,,4321\n";
+        List<List<AccountImportResult>> windows = new ArrayList<>();
+
+        //WHEN
+        importService.importAccounts(new BufferedReader(new StringReader(csv)), RecordFormat.CSV, windows::add);
+
+        //THEN
+        assertEquals(2, windows.size());
+        List<AccountImportResult> results = new ArrayList<>(windows.get(0));
+        results.addAll(windows.get(1));
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertNotNull(results.get(0).getAccountNumber());
+        assertFalse(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertNull(results.get(2).getAccountNumber());
+        assertTrue(results.get(3).isSuccess());
+        assertEquals(3, results.get(3).getIndex());
+
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(Money.parse("100.50"), balanceIndex.max().get(0).getBalance());
+        assertEquals(2, balanceIndex.top(10).size());
+    }
+
+    @Test
+    void importNdjsonReportsMalformedLines() throws Exception {
+        //GIVEN
+        String ndjson = "{\"name\":\"Dj D\",\"balance\":5,\"pinCode\":\"1234\"}\n"
+                + "{not json}\n";
+        List<AccountImportResult> results = new ArrayList<>();
+
+        //WHEN
+        importService.importAccounts(new BufferedReader(new StringReader(ndjson)), RecordFormat.NDJSON, results::addAll);
+
+        //THEN
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+    }
+}
@@ -0,0 +1,90 @@
+package service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.concurrent.AccountLockManager;
+import org.example.concurrent.HotAccounts;
+import org.example.config.BankProperties;
+import org.example.metrics.TransactionMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountLockManagerTest {
+    private static final String ACCOUNT_A = "1000000001";
+    private static final String ACCOUNT_B = "1000000002";
+
+    private AccountLockManager lockManager;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        BankProperties properties = new BankProperties();
+        lockManager = new AccountLockManager(properties, new TransactionMetrics(new SimpleMeterRegistry()),
+                new HotAccounts(properties));
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void lockIsHeldUntilTransactionCompletes() throws Exception {
+        //GIVEN
+        TransactionSynchronizationManager.initSynchronization();
+        List<TransactionSynchronization> synchronizations;
+        try {
+            lockManager.runLocked(List.of(ACCOUNT_A), () -> {
+            });
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        Future<?> waiting = executor.submit(() -> lockManager.runLocked(List.of(ACCOUNT_A), () -> {
+        }));
+
+        //WHEN
+        assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        //THEN
+        waiting.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void opposingLockOrdersDoNotDeadlock() throws Exception {
+        //GIVEN
+        int rounds = 10_000;
+        int[] counter = new int[1];
+
+        //WHEN
+        CompletableFuture<Void> forward = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < rounds; i++) {
+                lockManager.runLocked(List.of(ACCOUNT_A, ACCOUNT_B), () -> counter[0]++);
+            }
+        }, executor);
+        CompletableFuture<Void> backward = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < rounds; i++) {
+                lockManager.runLocked(List.of(ACCOUNT_B, ACCOUNT_A), () -> counter[0]++);
+            }
+        }, executor);
+        CompletableFuture.allOf(forward, backward).get(30, TimeUnit.SECONDS);
+
+        //THEN
+        assertEquals(2 * rounds, counter[0]);
+    }
+}
@@ -0,0 +1,81 @@
+package service;
+
+import org.example.service.AccountNumberAllocator;
+import org.example.service.impl.AccountNumberAllocatorImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AccountNumberAllocatorTest {
+    private AccountNumberAllocator allocator;
+    private AtomicLong reservedBlocks;
+
+    @BeforeEach
+    public void setup() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        AtomicLong blocks = new AtomicLong(100_000);
+        reservedBlocks = new AtomicLong();
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenAnswer(invocation -> {
+            reservedBlocks.incrementAndGet();
+            return blocks.getAndIncrement();
+        });
+        allocator = new AccountNumberAllocatorImpl(jdbcTemplate);
+    }
+
+    @Test
+    void concurrentAllocationIsUniqueAndValid() throws Exception {
+        //GIVEN
+        int threads = 8;
+        int perThread = 2500;
+        Set<String> numbers = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        //WHEN
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    String accountNumber = allocator.next();
+                    assertTrue(AccountNumberAllocatorImpl.isValid(accountNumber), accountNumber);
+                    assertTrue(numbers.add(accountNumber), accountNumber);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //THEN
+        assertEquals(threads * perThread, numbers.size());
+        assertEquals(20, reservedBlocks.get());
+    }
+
+    @Test
+    void checkDigitDetectsTypos() {
+        String accountNumber = allocator.next();
+        char last = accountNumber.charAt(9);
+        String typo = accountNumber.substring(0, 9) + (char) ('0' + (last - '0' + 1) % 10);
+
+        assertTrue(AccountNumberAllocatorImpl.isValid(accountNumber));
+        assertFalse(AccountNumberAllocatorImpl.isValid(typo));
+        assertFalse(AccountNumberAllocatorImpl.isValid("12345"));
+    }
+}
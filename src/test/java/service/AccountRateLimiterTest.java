@@ -0,0 +1,159 @@
+package service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.config.BankProperties;
+import org.example.dto.TransactionRequest;
+import org.example.enums.TransactionType;
+import org.example.exception.RateLimitExceededException;
+import org.example.limit.AccountRateLimiter;
+import org.example.metrics.TransactionMetrics;
+import org.example.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountRateLimiterTest {
+    private static final String ACCOUNT_NUMBER = "1000000009";
+
+    private final AtomicLong clock = new AtomicLong();
+    private BankProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        properties = new BankProperties();
+        properties.getRateLimit().setAccount(new BankProperties.RateLimit.Bucket(1, 3));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void burstIsAllowedThenRejectedUntilRefill() {
+        //GIVEN
+        AccountRateLimiter limiter = limiter();
+        TransactionRequest request = request(TransactionType.DEPOSIT, 1);
+        for (int i = 0; i < 3; i++) {
+            limiter.check(request);
+        }
+
+        //WHEN
+        RateLimitExceededException rejected = assertThrows(RateLimitExceededException.class, () -> limiter.check(request));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        //THEN
+        assertEquals(Duration.ofSeconds(1), rejected.getRetryAfter());
+        assertDoesNotThrow(() -> limiter.check(request));
+        assertEquals(1, meterRegistry.counter("bank.transaction.rate.limited", "type", "DEPOSIT", "limit", "account").count());
+    }
+
+    @Test
+    void typeLimitDoesNotAffectOtherTypes() {
+        //GIVEN
+        properties.getRateLimit().getTypes().put(TransactionType.WITHDRAWAL, new BankProperties.RateLimit.Bucket(1, 1));
+        AccountRateLimiter limiter = limiter();
+        limiter.check(request(TransactionType.WITHDRAWAL, 1));
+
+        //WHEN
+        //THEN
+        assertThrows(RateLimitExceededException.class, () -> limiter.check(request(TransactionType.WITHDRAWAL, 1)));
+        assertDoesNotThrow(() -> limiter.check(request(TransactionType.PAYMENT, 1)));
+    }
+
+    @Test
+    void amountLimitSlidesWithWindow() {
+        //GIVEN
+        properties.getRateLimit().setAccount(new BankProperties.RateLimit.Bucket(100, 100));
+        properties.getRateLimit().getAmounts().put(TransactionType.PAYMENT, new BigDecimal("1000.00"));
+        properties.getRateLimit().setAmountWindow(Duration.ofMinutes(10));
+        AccountRateLimiter limiter = limiter();
+        limiter.check(request(TransactionType.PAYMENT, 600));
+
+        //WHEN
+        //THEN
+        assertThrows(RateLimitExceededException.class, () -> limiter.check(request(TransactionType.PAYMENT, 500)));
+        assertDoesNotThrow(() -> limiter.check(request(TransactionType.PAYMENT, 400)));
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        assertDoesNotThrow(() -> limiter.check(request(TransactionType.PAYMENT, 1000)));
+    }
+
+    @Test
+    void releasedAmountDoesNotCountTowardsLimit() {
+        //GIVEN
+        properties.getRateLimit().setAccount(new BankProperties.RateLimit.Bucket(100, 100));
+        properties.getRateLimit().getAmounts().put(TransactionType.PAYMENT, new BigDecimal("1000.00"));
+        properties.getRateLimit().setAmountWindow(Duration.ofMinutes(10));
+        AccountRateLimiter limiter = limiter();
+        AccountRateLimiter.Reservation failed = limiter.check(request(TransactionType.PAYMENT, 800));
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(3));
+
+        //WHEN
+        failed.release();
+
+        //THEN
+        assertDoesNotThrow(() -> limiter.check(request(TransactionType.PAYMENT, 1000)));
+        assertThrows(RateLimitExceededException.class, () -> limiter.check(request(TransactionType.PAYMENT, 1)));
+    }
+
+    @Test
+    void activeAccountsAreNotEvictedWhenFull() {
+        //GIVEN
+        properties.getRateLimit().setMaxAccounts(2);
+        properties.getRateLimit().setIdleTimeout(Duration.ofMinutes(1));
+        AccountRateLimiter limiter = limiter();
+        for (int i = 0; i < 3; i++) {
+            limiter.check(request(TransactionType.DEPOSIT, 1));
+        }
+        limiter.check(request("1000000017"));
+
+        //WHEN
+        //THEN
+        for (int i = 0; i < 3; i++) {
+            limiter.check(request("1000000025"));
+        }
+        assertThrows(RateLimitExceededException.class, () -> limiter.check(request("1000000033")));
+        assertThrows(RateLimitExceededException.class, () -> limiter.check(request(TransactionType.DEPOSIT, 1)));
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        for (int i = 0; i < 3; i++) {
+            limiter.check(request("1000000041"));
+        }
+    }
+
+    @Test
+    void disabledLimiterAcceptsEverything() {
+        //GIVEN
+        properties.getRateLimit().setEnabled(false);
+        AccountRateLimiter limiter = limiter();
+
+        //WHEN
+        //THEN
+        for (int i = 0; i < 100; i++) {
+            assertDoesNotThrow(() -> limiter.check(request(TransactionType.DEPOSIT, 1)));
+        }
+    }
+
+    private AccountRateLimiter limiter() {
+        return new AccountRateLimiter(properties, new TransactionMetrics(meterRegistry), clock::get);
+    }
+
+    private static TransactionRequest request(String accountNumber) {
+        TransactionRequest request = request(TransactionType.DEPOSIT, 1);
+        request.setAccountFromNumber(accountNumber);
+        return request;
+    }
+
+    private static TransactionRequest request(TransactionType type, long amount) {
+        return TransactionRequest.builder()
+                .type(type)
+                .amount(Money.of(amount))
+                .accountFromNumber(ACCOUNT_NUMBER)
+                .pinCode("1234")
+                .build();
+    }
+}
@@ -1,26 +1,38 @@
 package service;
 
+import org.example.config.BankProperties;
 import org.example.dto.AccountInfo;
+import org.example.dto.CursorPage;
 import org.example.exception.AccountNotFoundException;
 import org.example.exception.IncorrectAccountNumberException;
 import org.example.exception.IncorrectPinCodeException;
+import org.example.exception.InsufficientFundsException;
+import org.example.index.BalanceIndex;
+import org.example.ledger.LedgerTotals;
 import org.example.model.Account;
+import org.example.money.Money;
 import org.example.repository.AccountRepository;
+import org.example.service.AccountNumberAllocator;
 import org.example.service.AccountService;
 import org.example.service.impl.AccountServiceImpl;
+import org.example.shard.ShardRouter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mindrot.jbcrypt.BCrypt;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 import static org.example.service.impl.AccountServiceImpl.generateAccountNumber;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -30,6 +42,10 @@ class AccountServiceTest {
 
     @Mock
     private AccountRepository accountRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private AccountNumberAllocator accountNumberAllocator;
 
     private Account account;
     private AccountService accountService;
@@ -37,14 +53,16 @@ class AccountServiceTest {
     @BeforeEach
     public void setup() {
         initMocks(this);
-        accountService = new AccountServiceImpl(accountRepository);
+        accountService = new AccountServiceImpl(accountRepository, new BankProperties(),
+                new BalanceIndex(jdbcTemplate, new ShardRouter(1), new BankProperties()),
+                accountNumberAllocator, new LedgerTotals(jdbcTemplate, new ShardRouter(1)));
 
         accountNumber = generateAccountNumber();
 
         account = Account.builder()
                 .accountNumber(accountNumber)
                 .name("Dj D")
-                .balance(new BigDecimal(1000))
+                .balance(Money.of(1000))
                 .pinCode(BCrypt.hashpw("1234", BCrypt.gensalt()))
                 .build();
     }
@@ -101,10 +119,11 @@ class AccountServiceTest {
         //GIVEN
         AccountInfo accountInfo = AccountInfo.builder()
                 .name("Dj D")
-                .balance(new BigDecimal(1000))
+                .balance(Money.of(1000))
                 .pinCode("1234")
                 .build();
 
+        when(accountNumberAllocator.next()).thenReturn(generateAccountNumber());
         when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> {
             Account savedAccount = invocation.getArgument(0);
             return Account.builder().accountNumber(savedAccount.getAccountNumber())
@@ -126,12 +145,56 @@ class AccountServiceTest {
         assertEquals(account.getAccountNumber(), retrievedAccount.getAccountNumber());
     }
 
+    @Test
+    void getPageReturnsCursorForNextPage() {
+        //GIVEN
+        Account second = Account.builder().accountNumber("2000000000").name("Lui Rex").balance(Money.of(1)).build();
+        Account third = Account.builder().accountNumber("3000000000").name("Mo Jo").balance(Money.of(1)).build();
+        Account first = Account.builder().accountNumber("1000000000").name("Dj D").balance(Money.of(1)).build();
+
+        when(accountRepository.findPageAfter(eq(""), any(Pageable.class))).thenReturn(List.of(first, second, third));
+        when(accountRepository.findPageAfter(eq("2000000000"), any(Pageable.class))).thenReturn(List.of(third));
+
+        //WHEN
+        CursorPage<Account> firstPage = accountService.getPage(null, 2);
+        CursorPage<Account> lastPage = accountService.getPage(firstPage.getNextCursor(), 2);
+
+        //THEN
+        assertEquals(2, firstPage.getItems().size());
+        assertNotNull(firstPage.getNextCursor());
+        assertEquals(1, lastPage.getItems().size());
+        assertEquals("3000000000", lastPage.getItems().get(0).getAccountNumber());
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    void addToBalanceWithInsufficientFunds() {
+        //GIVEN
+        when(accountRepository.addToBalance(accountNumber, new BigDecimal("-5000.00"))).thenReturn(0);
+        when(accountRepository.existsByAccountNumber(accountNumber)).thenReturn(true);
+
+        //WHEN
+        //THEN
+        assertThrows(InsufficientFundsException.class, () -> accountService.addToBalance(accountNumber, Money.of(-5000)));
+    }
+
+    @Test
+    void addToBalanceWithNonExistentAccount() {
+        //GIVEN
+        when(accountRepository.addToBalance(accountNumber, new BigDecimal("100.00"))).thenReturn(0);
+
+        //WHEN
+        //THEN
+        assertThrows(AccountNotFoundException.class, () -> accountService.addToBalance(accountNumber, Money.of(100)));
+        verify(accountRepository, never()).existsByAccountNumber(anyString());
+    }
+
     @Test
     void add_WithIncorrectPinCode() {
         // GIVEN || WHEN
         AccountInfo accountInfo = AccountInfo.builder()
                 .name("Dj D")
-                .balance(new BigDecimal(1000))
+                .balance(Money.of(1000))
                 .pinCode("12345")
                 .build();
 
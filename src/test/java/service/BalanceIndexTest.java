@@ -0,0 +1,114 @@
+package service;
+
+import org.example.config.BankProperties;
+import org.example.dto.AccountInfo;
+import org.example.index.BalanceIndex;
+import org.example.money.Money;
+import org.example.shard.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class BalanceIndexTest {
+    private BalanceIndex balanceIndex;
+
+    @BeforeEach
+    public void setup() {
+        balanceIndex = new BalanceIndex(mock(JdbcTemplate.class), new ShardRouter(1), new BankProperties());
+        balanceIndex.put("1000000000", "Dj D", Money.of(1000));
+        balanceIndex.put("2000000000", "Lui Rex", Money.of(500));
+        balanceIndex.put("3000000000", "Mo Jo", Money.of(700));
+    }
+
+    @Test
+    void maxReturnsAllAccountsWithHighestBalance() {
+        //WHEN
+        balanceIndex.applyDelta("2000000000", Money.of(500));
+        List<AccountInfo> max = balanceIndex.max();
+
+        //THEN
+        assertEquals(2, max.size());
+        assertEquals(Money.of(1000), max.get(0).getBalance());
+        assertEquals(Money.of(1000), max.get(1).getBalance());
+    }
+
+    @Test
+    void topFollowsBalanceChanges() {
+        //WHEN
+        balanceIndex.applyDelta("1000000000", Money.of(-900));
+        balanceIndex.put("3000000000", "Mo Jo", Money.of(50));
+        List<AccountInfo> top = balanceIndex.top(2);
+
+        //THEN
+        assertEquals(2, top.size());
+        assertEquals("Lui Rex", top.get(0).getName());
+        assertEquals("Dj D", top.get(1).getName());
+    }
+
+    @Test
+    void allListsAccountsByNumber() {
+        //WHEN
+        List<AccountInfo> all = balanceIndex.all();
+
+        //THEN
+        assertEquals(3, all.size());
+        assertEquals("Dj D", all.get(0).getName());
+        assertEquals("Lui Rex", all.get(1).getName());
+        assertEquals("Mo Jo", all.get(2).getName());
+    }
+
+    @Test
+    void readerAppliesChangesOlderThanStalenessBound() {
+        //GIVEN
+        BankProperties properties = new BankProperties();
+        properties.getReadModel().setMaxStaleness(Duration.ZERO);
+        BalanceIndex index = new BalanceIndex(mock(JdbcTemplate.class), new ShardRouter(1), properties);
+        index.put("1000000000", "Dj D", Money.of(1000));
+
+        //WHEN
+        index.applyDeltaOnCommit("1000000000", Money.of(250));
+        index.putOnCommit("2000000000", "Lui Rex", Money.of(2000));
+        List<AccountInfo> max = index.max();
+
+        //THEN
+        assertEquals(1, max.size());
+        assertEquals("Lui Rex", max.get(0).getName());
+        assertEquals(Money.of(1250), index.all().get(0).getBalance());
+        index.shutdown();
+    }
+
+    @Test
+    void topSeesEveryAccountWhileBalancesChange() throws InterruptedException {
+        //GIVEN
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                balanceIndex.applyDelta("3000000000", Money.of(i % 2 == 0 ? 1 : -1));
+            }
+        });
+
+        //WHEN
+        writer.start();
+        int incomplete = 0;
+        while (writer.isAlive()) {
+            if (balanceIndex.top(3).size() != 3) {
+                incomplete++;
+            }
+        }
+        writer.join();
+
+        //THEN
+        assertEquals(0, incomplete);
+    }
+
+    @Test
+    void emptyIndex() {
+        assertTrue(new BalanceIndex(mock(JdbcTemplate.class), new ShardRouter(1), new BankProperties()).max().isEmpty());
+    }
+}
@@ -0,0 +1,381 @@
+package service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.archive.TransactionArchive;
+import org.example.concurrent.AccountLockManager;
+import org.example.concurrent.HotAccounts;
+import org.example.concurrent.HotCreditBuffer;
+import org.example.config.BankProperties;
+import org.example.dto.AccountInfo;
+import org.example.dto.CursorPage;
+import org.example.dto.TransactionRequest;
+import org.example.dto.TransactionResult;
+import org.example.enums.TransactionType;
+import org.example.exception.AccountNotFoundException;
+import org.example.exception.InsufficientFundsException;
+import org.example.ledger.LedgerTotals;
+import org.example.metrics.TransactionMetrics;
+import org.example.model.Account;
+import org.example.model.Transactions;
+import org.example.money.Money;
+import org.example.repository.TransactionRepository;
+import org.example.repository.TransactionRepositoryCustomImpl;
+import org.example.service.AccountService;
+import org.example.service.IdempotencyService;
+import org.example.service.impl.PinCodeServiceImpl;
+import org.example.service.impl.RepositoryTransactionRecorder;
+import org.example.service.impl.ShardRoutingTransactionService;
+import org.example.service.impl.TransactionServiceImpl;
+import org.example.shard.ShardRouter;
+import org.example.shard.ShardRoutingDataSource;
+import org.example.shard.TransferOutbox;
+import org.example.snapshot.ShardSnapshots;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Межшардовые переводы на двух базах H2: списание и Transfer_Outbox на шарде отправителя,
+ * зачисление получателю фоновым потоком TransferOutbox
+ */
+class CrossShardTransferTest {
+    private static final Money INITIAL_BALANCE = Money.of(1000);
+    private static final String PIN_CODE = "1234";
+
+    private ShardRouter shardRouter;
+    private JdbcTemplate jdbcTemplate;
+    private TransferOutbox transferOutbox;
+    private ShardRoutingTransactionService transactionService;
+    private String senderAccount;
+    private String localAccount;
+    private String remoteAccount;
+    private String missingRemoteAccount;
+
+    @BeforeEach
+    public void setup() {
+        shardRouter = new ShardRouter(2);
+        ShardRoutingDataSource dataSource = new ShardRoutingDataSource(shardRouter,
+                Map.of(0, database("cross_shard_0"), 1, database("cross_shard_1")));
+        dataSource.afterPropertiesSet();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        BankProperties properties = new BankProperties();
+        properties.getShards().setCount(2);
+        properties.getShards().setOutboxInterval(Duration.ofHours(1));
+        TransactionMetrics metrics = new TransactionMetrics(new SimpleMeterRegistry());
+        AccountService accountService = new JdbcAccountService();
+        LedgerTotals ledgerTotals = new LedgerTotals(jdbcTemplate, shardRouter);
+        AccountLockManager lockManager = new AccountLockManager(properties, metrics, new HotAccounts(properties));
+        TransactionRepository transactionRepository = transactionRepository(properties);
+        transferOutbox = new TransferOutbox(jdbcTemplate, transactionManager, transactionRepository, accountService,
+                ledgerTotals, lockManager, shardRouter, new ShardSnapshots(dataSource, properties), properties);
+
+        TransactionServiceImpl target = new TransactionServiceImpl(transactionRepository,
+                new RepositoryTransactionRecorder(transactionRepository, ledgerTotals), accountService,
+                new PinCodeServiceImpl(properties, metrics), lockManager, mock(IdempotencyService.class), properties,
+                metrics, shardRouter, transferOutbox, mock(HotCreditBuffer.class), mock(TransactionArchive.class));
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        transactionService = new ShardRoutingTransactionService((TransactionServiceImpl) proxyFactory.getProxy(),
+                accountService, shardRouter, mock(IdempotencyService.class));
+
+        List<String> shard0 = accountNumbersOnShard(0, 2);
+        List<String> shard1 = accountNumbersOnShard(1, 2);
+        senderAccount = shard0.get(0);
+        localAccount = shard0.get(1);
+        remoteAccount = shard1.get(0);
+        missingRemoteAccount = shard1.get(1);
+        String pinCodeHash = BCrypt.hashpw(PIN_CODE, BCrypt.gensalt(4));
+        for (String accountNumber : List.of(senderAccount, localAccount, remoteAccount)) {
+            insertAccount(accountNumber, pinCodeHash);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        transferOutbox.shutdown();
+    }
+
+    @Test
+    void remoteTransferIsCreditedOnReceiverShard() throws Exception {
+        //WHEN
+        transactionService.processTransaction(transfer(remoteAccount, 300));
+        awaitOutboxDrained();
+
+        //THEN
+        assertEquals(Money.of(700), balance(senderAccount));
+        assertEquals(Money.of(1300), balance(remoteAccount));
+        assertEquals(1L, transactionCount(0));
+        assertEquals(1L, transactionCount(1));
+        assertEquals(0, new BigDecimal("300.00").compareTo(shardRouter.executeOnShard(1, () -> jdbcTemplate.queryForObject(
+                "SELECT Net FROM Ledger_Totals WHERE Account_Number = ?", BigDecimal.class, remoteAccount))));
+    }
+
+    @Test
+    void redeliveredTransferIsNotCreditedTwice() throws Exception {
+        //GIVEN
+        transactionService.processTransaction(transfer(remoteAccount, 300));
+        awaitOutboxDrained();
+        Transactions delivered = shardRouter.executeOnShard(0, () -> jdbcTemplate.queryForObject(
+                "SELECT TransactionID, Amount, Transaction_Date FROM Transactions", (rs, rowNum) -> {
+                    Transactions transfer = new Transactions();
+                    transfer.setId(rs.getObject(1, UUID.class));
+                    transfer.setAmount(Money.of(rs.getBigDecimal(2)));
+                    transfer.setTransactionDate(rs.getTimestamp(3));
+                    return transfer;
+                }));
+        delivered.setTransactionType(TransactionType.TRANSFER);
+        delivered.setAccountFromNumber(senderAccount);
+        delivered.setAccountToNumber(remoteAccount);
+
+        //WHEN
+        shardRouter.runOnShard(0, () -> transferOutbox.enqueue(delivered));
+        awaitOutboxDrained();
+
+        //THEN
+        assertEquals(Money.of(1300), balance(remoteAccount));
+        assertEquals(1L, transactionCount(1));
+    }
+
+    @Test
+    void transferToMissingRemoteAccountIsRejectedBeforeDebit() {
+        //WHEN
+        assertThrows(AccountNotFoundException.class,
+                () -> transactionService.processTransaction(transfer(missingRemoteAccount, 300)));
+
+        //THEN
+        assertEquals(INITIAL_BALANCE, balance(senderAccount));
+        assertEquals(0L, transactionCount(0));
+        assertEquals(0L, outboxCount());
+    }
+
+    @Test
+    void batchSplitsOperationsByShardAndKeepsIndexes() throws Exception {
+        //GIVEN
+        List<TransactionRequest> requests = List.of(
+                transfer(localAccount, 100),
+                TransactionRequest.builder().amount(Money.of(50)).type(TransactionType.DEPOSIT)
+                        .accountFromNumber(remoteAccount).build(),
+                transfer(remoteAccount, 200),
+                transfer(missingRemoteAccount, 10),
+                TransactionRequest.builder().amount(Money.of(5000)).type(TransactionType.WITHDRAWAL).pinCode(PIN_CODE)
+                        .accountFromNumber(remoteAccount).build());
+
+        //WHEN
+        List<TransactionResult> results = transactionService.processBatch(requests);
+        awaitOutboxDrained();
+
+        //THEN
+        assertEquals(List.of(0, 1, 2, 3, 4), results.stream().map(TransactionResult::getIndex).collect(Collectors.toList()));
+        assertEquals(List.of(true, true, true, false, false),
+                results.stream().map(TransactionResult::isSuccess).collect(Collectors.toList()));
+        assertEquals(Money.of(700), balance(senderAccount));
+        assertEquals(Money.of(1100), balance(localAccount));
+        assertEquals(Money.of(1250), balance(remoteAccount));
+        assertEquals(2L, transactionCount(0));
+        assertEquals(2L, transactionCount(1));
+    }
+
+    private TransactionRequest transfer(String accountToNumber, int amount) {
+        return TransactionRequest.builder()
+                .amount(Money.of(amount))
+                .type(TransactionType.TRANSFER)
+                .pinCode(PIN_CODE)
+                .accountFromNumber(senderAccount)
+                .accountToNumber(accountToNumber)
+                .build();
+    }
+
+    private void awaitOutboxDrained() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (outboxCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0L, outboxCount());
+    }
+
+    private long outboxCount() {
+        return shardRouter.executeOnShard(0, () -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Transfer_Outbox", Long.class));
+    }
+
+    private long transactionCount(int shard) {
+        return shardRouter.executeOnShard(shard, () -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Transactions", Long.class));
+    }
+
+    private Money balance(String accountNumber) {
+        return Money.of(shardRouter.executeOnAccount(accountNumber, () -> jdbcTemplate.queryForObject(
+                "SELECT Balance FROM Accounts WHERE Account_Number = ?", BigDecimal.class, accountNumber)));
+    }
+
+    private void insertAccount(String accountNumber, String pinCodeHash) {
+        shardRouter.runOnAccount(accountNumber, () -> {
+            jdbcTemplate.update("INSERT INTO Accounts (Id, Account_Number, Name, Pin_Code, Balance) VALUES (?, ?, ?, ?, ?)",
+                    UUID.randomUUID(), accountNumber, "Client " + accountNumber, pinCodeHash, INITIAL_BALANCE.toBigDecimal());
+            jdbcTemplate.update("INSERT INTO Ledger_Totals (Account_Number, Opening_Balance, Net, Postings) VALUES (?, ?, 0, 0)",
+                    accountNumber, INITIAL_BALANCE.toBigDecimal());
+        });
+    }
+
+    private List<String> accountNumbersOnShard(int shard, int count) {
+        List<String> accountNumbers = new ArrayList<>(count);
+        for (long number = 1_000_000_000L; accountNumbers.size() < count; number++) {
+            if (shardRouter.shardOf(Long.toString(number)) == shard) {
+                accountNumbers.add(Long.toString(number));
+            }
+        }
+        return accountNumbers;
+    }
+
+    /**
+     * save из JPA заменяется вставкой через TransactionRepositoryCustomImpl
+     */
+    private TransactionRepository transactionRepository(BankProperties properties) {
+        TransactionRepositoryCustomImpl custom = new TransactionRepositoryCustomImpl(jdbcTemplate, properties);
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        doAnswer(invocation -> {
+            custom.insertAll(invocation.getArgument(0));
+            return null;
+        }).when(transactionRepository).insertAll(anyList());
+        when(transactionRepository.save(any(Transactions.class))).thenAnswer(invocation -> {
+            Transactions transactions = invocation.getArgument(0);
+            custom.insertAll(List.of(transactions));
+            return transactions;
+        });
+        return transactionRepository;
+    }
+
+    private static JdbcDataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        return dataSource;
+    }
+
+    /**
+     * Счета в таблицах Accounts шардов; выбор шарда - как в ShardRoutingAccountService
+     */
+    private class JdbcAccountService implements AccountService {
+        @Override
+        public Account getByAccountNumber(String accountNumber) throws AccountNotFoundException {
+            List<Account> accounts = getAllByAccountNumbers(List.of(accountNumber));
+            if (accounts.isEmpty()) {
+                throw new AccountNotFoundException(String.format("Лицевой счет %1$s не найден", accountNumber));
+            }
+            return accounts.get(0);
+        }
+
+        @Override
+        public String getPinCode(String accountNumber) throws AccountNotFoundException {
+            return getByAccountNumber(accountNumber).getPinCode();
+        }
+
+        @Override
+        public void addToBalance(String accountNumber, Money delta) {
+            int updated = shardRouter.executeOnAccount(accountNumber, () -> jdbcTemplate.update(
+                    "UPDATE Accounts SET Balance = Balance + ? WHERE Account_Number = ? AND Balance + ? >= 0",
+                    delta.toBigDecimal(), accountNumber, delta.toBigDecimal()));
+            if (updated == 0) {
+                getByAccountNumber(accountNumber);
+                throw new InsufficientFundsException("Отрицательный баланс недопустим");
+            }
+        }
+
+        @Override
+        public List<Account> getAllByAccountNumbers(Collection<String> accountNumbers) {
+            List<Account> accounts = new ArrayList<>();
+            for (String accountNumber : accountNumbers) {
+                accounts.addAll(shardRouter.executeOnAccount(accountNumber, () -> jdbcTemplate.query(
+                        "SELECT Id, Account_Number, Name, Pin_Code, Balance FROM Accounts WHERE Account_Number = ?",
+                        (rs, rowNum) -> Account.builder()
+                                .id(rs.getObject(1, UUID.class))
+                                .accountNumber(rs.getString(2))
+                                .name(rs.getString(3))
+                                .pinCode(rs.getString(4))
+                                .balance(Money.of(rs.getBigDecimal(5)))
+                                .build(),
+                        accountNumber)));
+            }
+            return accounts;
+        }
+
+        @Override
+        public void update(Account account) {
+            shardRouter.runOnAccount(account.getAccountNumber(), () -> jdbcTemplate.update(
+                    "UPDATE Accounts SET Balance = ? WHERE Account_Number = ?",
+                    account.getBalance().toBigDecimal(), account.getAccountNumber()));
+        }
+
+        @Override
+        public void updateAll(Collection<Account> accounts) {
+            accounts.forEach(this::update);
+        }
+
+        @Override
+        public List<Account> getAll() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<AccountInfo> getAllInfos() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CursorPage<Account> getPage(String cursor, Integer limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void streamAll(Consumer<AccountInfo> consumer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Account add(AccountInfo accountInfo) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Account> getAccountWithMaxBalance() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<AccountInfo> getAccountInfosWithMaxBalance() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<AccountInfo> getTopByBalance(int k) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package service;
+
+import org.example.concurrent.HotAccounts;
+import org.example.config.BankProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotAccountsTest {
+    private static final long CONTENDED = Duration.ofMillis(5).toNanos();
+
+    private BankProperties properties;
+
+    @BeforeEach
+    public void setup() {
+        properties = new BankProperties();
+        properties.getHotAccounts().setDetectionThreshold(3);
+        properties.getHotAccounts().setDetectionWindow(Duration.ofMinutes(1));
+    }
+
+    @Test
+    void configuredAccountIsAlwaysHot() {
+        //GIVEN
+        properties.getHotAccounts().setAccounts(Set.of("1000000009"));
+
+        //WHEN
+        HotAccounts hotAccounts = new HotAccounts(properties);
+
+        //THEN
+        assertTrue(hotAccounts.isEnabled());
+        assertTrue(hotAccounts.isHot("1000000009"));
+        assertFalse(hotAccounts.isHot("1000000017"));
+    }
+
+    @Test
+    void accountBecomesHotAfterRepeatedLockWaits() {
+        //GIVEN
+        properties.getHotAccounts().setAutoDetect(true);
+        HotAccounts hotAccounts = new HotAccounts(properties);
+        List<String> transfer = List.of("1000000009", "1000000017");
+
+        //WHEN
+        hotAccounts.recordLockWait(transfer, CONTENDED);
+        hotAccounts.recordLockWait(Collections.singletonList("1000000009"), 0);
+        hotAccounts.recordLockWait(Collections.singletonList("1000000009"), CONTENDED);
+        boolean hotBeforeThreshold = hotAccounts.isHot("1000000009");
+        hotAccounts.recordLockWait(Collections.singletonList("1000000009"), CONTENDED);
+
+        //THEN
+        assertFalse(hotBeforeThreshold);
+        assertTrue(hotAccounts.isHot("1000000009"));
+        assertFalse(hotAccounts.isHot("1000000017"));
+    }
+
+    @Test
+    void detectedAccountCoolsDownWithoutCredits() {
+        //GIVEN
+        properties.getHotAccounts().setAutoDetect(true);
+        properties.getHotAccounts().setCooldown(Duration.ZERO);
+        HotAccounts hotAccounts = new HotAccounts(properties);
+
+        //WHEN
+        for (int i = 0; i < 3; i++) {
+            hotAccounts.recordLockWait(Collections.singletonList("1000000009"), CONTENDED);
+        }
+        hotAccounts.expire();
+
+        //THEN
+        assertFalse(hotAccounts.isHot("1000000009"));
+    }
+}
@@ -0,0 +1,218 @@
+package service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.concurrent.AccountLockManager;
+import org.example.concurrent.HotAccounts;
+import org.example.concurrent.HotCreditBuffer;
+import org.example.config.BankProperties;
+import org.example.enums.TransactionType;
+import org.example.ledger.LedgerTotals;
+import org.example.metrics.TransactionMetrics;
+import org.example.model.Transactions;
+import org.example.money.Money;
+import org.example.repository.TransactionRepository;
+import org.example.repository.TransactionRepositoryCustomImpl;
+import org.example.service.AccountService;
+import org.example.service.impl.RepositoryTransactionRecorder;
+import org.example.shard.ShardRouter;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Перенос зачислений из Hot_Credit фоновым потоком на базе H2
+ */
+class HotCreditBufferTest {
+    private static final String HOT_ACCOUNT = "1000000009";
+    private static final String SENDER_ACCOUNT = "1000000017";
+    private static final Money INITIAL_BALANCE = Money.of(100);
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private TransactionTemplate transactionTemplate;
+    private BankProperties properties;
+    private AccountService accountService;
+    private HotCreditBuffer hotCreditBuffer;
+
+    @BeforeEach
+    public void setup() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:hot_credit_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        properties = new BankProperties();
+        properties.getHotAccounts().setAccounts(Set.of(HOT_ACCOUNT));
+        properties.getHotAccounts().setFlushInterval(Duration.ofMillis(10));
+        accountService = mock(AccountService.class);
+
+        jdbcTemplate.update("INSERT INTO Accounts (Id, Account_Number, Name, Pin_Code, Balance) VALUES (?, ?, ?, ?, ?)",
+                UUID.randomUUID(), HOT_ACCOUNT, "Client " + HOT_ACCOUNT, "hash", INITIAL_BALANCE.toBigDecimal());
+        new LedgerTotals(jdbcTemplate, new ShardRouter(1)).open(HOT_ACCOUNT, INITIAL_BALANCE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (hotCreditBuffer != null) {
+            hotCreditBuffer.shutdown();
+        }
+    }
+
+    @Test
+    void flushWritesRowPerCreditAndUpdatesBalanceOnce() throws Exception {
+        //GIVEN
+        doAnswer(addToBalance()).when(accountService).addToBalance(eq(HOT_ACCOUNT), any(Money.class));
+        List<Transactions> credits = List.of(credit(10), credit(20), credit(30));
+
+        //WHEN
+        stage(credits);
+        awaitHotCreditDrained();
+
+        //THEN
+        verify(accountService, times(1)).addToBalance(HOT_ACCOUNT, Money.of(60));
+        assertEquals(ids(credits), transactionIds());
+        assertEquals(Money.of(160), balance());
+        assertEquals(0, new BigDecimal("60.00").compareTo(ledgerNet()));
+    }
+
+    @Test
+    void flushAppliesCreditsInBatches() throws Exception {
+        //GIVEN
+        properties.getHotAccounts().setFlushBatchSize(2);
+        doAnswer(addToBalance()).when(accountService).addToBalance(eq(HOT_ACCOUNT), any(Money.class));
+        List<Transactions> credits = List.of(credit(10), credit(20), credit(30));
+
+        //WHEN
+        stage(credits);
+        awaitHotCreditDrained();
+
+        //THEN
+        verify(accountService, times(2)).addToBalance(eq(HOT_ACCOUNT), any(Money.class));
+        assertEquals(ids(credits), transactionIds());
+        assertEquals(Money.of(160), balance());
+    }
+
+    /**
+     * Сбой после записи строк Transactions откатывает всю пачку: строки Hot_Credit остаются,
+     * а повторная попытка не упирается в уже записанные строки и не зачисляет сумму дважды
+     */
+    @Test
+    void failedFlushIsRolledBackAndRetried() throws Exception {
+        //GIVEN
+        doAnswer(invocation -> {
+            throw new TransientDataAccessResourceException("Соединение с БД потеряно");
+        }).doAnswer(addToBalance()).when(accountService).addToBalance(eq(HOT_ACCOUNT), any(Money.class));
+        List<Transactions> credits = List.of(credit(10), credit(20));
+
+        //WHEN
+        stage(credits);
+        awaitHotCreditDrained();
+
+        //THEN
+        verify(accountService, times(2)).addToBalance(HOT_ACCOUNT, Money.of(30));
+        assertEquals(ids(credits), transactionIds());
+        assertEquals(Money.of(130), balance());
+        assertEquals(0, new BigDecimal("30.00").compareTo(ledgerNet()));
+    }
+
+    /**
+     * Буфер создается после настройки теста: первый перенос запускается через flush-interval.
+     * Зачисления ставятся одной транзакцией, как в транзакции отправителя, и переносятся одной пачкой
+     */
+    private void stage(List<Transactions> credits) {
+        HotAccounts hotAccounts = new HotAccounts(properties);
+        TransactionMetrics metrics = new TransactionMetrics(new SimpleMeterRegistry());
+        hotCreditBuffer = new HotCreditBuffer(jdbcTemplate, transactionManager,
+                new RepositoryTransactionRecorder(transactionRepository(), new LedgerTotals(jdbcTemplate, new ShardRouter(1))),
+                accountService, new AccountLockManager(properties, metrics, hotAccounts), hotAccounts,
+                new ShardRouter(1), properties);
+        transactionTemplate.executeWithoutResult(status -> hotCreditBuffer.stageAll(credits));
+    }
+
+    private Answer<Void> addToBalance() {
+        return invocation -> {
+            String accountNumber = invocation.getArgument(0);
+            Money delta = invocation.getArgument(1);
+            jdbcTemplate.update("UPDATE Accounts SET Balance = Balance + ? WHERE Account_Number = ?",
+                    delta.toBigDecimal(), accountNumber);
+            return null;
+        };
+    }
+
+    private TransactionRepository transactionRepository() {
+        TransactionRepositoryCustomImpl custom = new TransactionRepositoryCustomImpl(jdbcTemplate, properties);
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        doAnswer(invocation -> {
+            custom.insertAll(invocation.getArgument(0));
+            return null;
+        }).when(transactionRepository).insertAll(anyList());
+        return transactionRepository;
+    }
+
+    private void awaitHotCreditDrained() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (hotCreditCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0L, hotCreditCount());
+    }
+
+    private long hotCreditCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Hot_Credit", Long.class);
+    }
+
+    private Set<UUID> transactionIds() {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT TransactionID FROM Transactions", UUID.class));
+    }
+
+    private Money balance() {
+        return Money.of(jdbcTemplate.queryForObject("SELECT Balance FROM Accounts WHERE Account_Number = ?",
+                BigDecimal.class, HOT_ACCOUNT));
+    }
+
+    private BigDecimal ledgerNet() {
+        return jdbcTemplate.queryForObject("SELECT Net FROM Ledger_Totals WHERE Account_Number = ?",
+                BigDecimal.class, HOT_ACCOUNT);
+    }
+
+    private static Set<UUID> ids(List<Transactions> credits) {
+        return credits.stream().map(Transactions::getId).collect(Collectors.toSet());
+    }
+
+    private static Transactions credit(int amount) {
+        Transactions credit = new Transactions();
+        credit.setId(UUID.randomUUID());
+        credit.setTransactionType(TransactionType.TRANSFER);
+        credit.setAccountFromNumber(SENDER_ACCOUNT);
+        credit.setAccountToNumber(HOT_ACCOUNT);
+        credit.setAmount(Money.of(amount));
+        credit.setTransactionDate(new Date());
+        return credit;
+    }
+}
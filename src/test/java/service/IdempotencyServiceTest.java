@@ -0,0 +1,145 @@
+package service;
+
+import org.example.config.BankProperties;
+import org.example.dto.TransactionRequest;
+import org.example.enums.TransactionType;
+import org.example.exception.IdempotencyKeyConflictException;
+import org.example.exception.IncorrectTransactionRequestException;
+import org.example.money.Money;
+import org.example.service.TransactionService;
+import org.example.service.impl.IdempotencyServiceImpl;
+import org.example.shard.ShardRouter;
+import org.example.shard.ShardRoutingDataSource;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class IdempotencyServiceTest {
+    private JdbcTemplate jdbcTemplate;
+    private IdempotencyServiceImpl idempotencyService;
+
+    @BeforeEach
+    public void setup() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        idempotencyService = new IdempotencyServiceImpl(jdbcTemplate, new ShardRouter(1), new BankProperties());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        idempotencyService.shutdown();
+    }
+
+    @Test
+    void unknownKeyHasNoResponse() {
+        //WHEN
+        //THEN
+        assertTrue(idempotencyService.findResponse("key-1", withdrawal(Money.of(100))).isEmpty());
+    }
+
+    @Test
+    void rememberedResponseIsServedFromCache() {
+        //GIVEN
+        idempotencyService.remember("key-1", withdrawal(Money.of(100)), TransactionService.PROCESSED_MESSAGE);
+        clearInvocations(jdbcTemplate);
+
+        //WHEN
+        String response = idempotencyService.findResponse("key-1", withdrawal(Money.parse("100.00"))).orElseThrow();
+
+        //THEN
+        assertEquals(TransactionService.PROCESSED_MESSAGE, response);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void cachedLookupDoesNotQueryDatabase() {
+        //WHEN
+        boolean found = idempotencyService.findCachedResponse("key-1", withdrawal(Money.of(100))).isPresent();
+
+        //THEN
+        assertFalse(found);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsRejected() {
+        //GIVEN
+        idempotencyService.remember("key-1", withdrawal(Money.of(100)), TransactionService.PROCESSED_MESSAGE);
+
+        //WHEN
+        //THEN
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> idempotencyService.findResponse("key-1", withdrawal(Money.of(200))));
+    }
+
+    @Test
+    void keyClaimedFromAnotherShardIsRejected() {
+        //GIVEN
+        ShardRouter shardRouter = new ShardRouter(2);
+        ShardRoutingDataSource dataSource = new ShardRoutingDataSource(shardRouter,
+                Map.of(0, database("idempotency_shard0"), 1, database("idempotency_shard1")));
+        dataSource.afterPropertiesSet();
+        IdempotencyServiceImpl shardedService = new IdempotencyServiceImpl(new JdbcTemplate(dataSource), shardRouter,
+                new BankProperties());
+        TransactionRequest first = withdrawal(Money.of(100));
+        TransactionRequest otherShard = TransactionRequest.builder()
+                .type(TransactionType.WITHDRAWAL)
+                .accountFromNumber(accountOnOtherShard(shardRouter, first.getAccountFromNumber()))
+                .amount(Money.of(100))
+                .pinCode("1234")
+                .build();
+
+        //WHEN
+        shardedService.claim("key-1", first);
+        shardedService.claim("key-1", first);
+
+        //THEN
+        assertThrows(IdempotencyKeyConflictException.class, () -> shardedService.claim("key-1", otherShard));
+        shardedService.shutdown();
+    }
+
+    @Test
+    void tooLongKeyIsRejected() {
+        //WHEN
+        //THEN
+        assertThrows(IncorrectTransactionRequestException.class,
+                () -> idempotencyService.findResponse("k".repeat(65), withdrawal(Money.of(100))));
+    }
+
+    private static String accountOnOtherShard(ShardRouter shardRouter, String accountNumber) {
+        long number = Long.parseLong(accountNumber);
+        while (shardRouter.shardOf(Long.toString(number)) == shardRouter.shardOf(accountNumber)) {
+            number++;
+        }
+        return Long.toString(number);
+    }
+
+    private static JdbcDataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        return dataSource;
+    }
+
+    private static TransactionRequest withdrawal(Money amount) {
+        return TransactionRequest.builder()
+                .type(TransactionType.WITHDRAWAL)
+                .accountFromNumber("1000000009")
+                .amount(amount)
+                .pinCode("1234")
+                .build();
+    }
+}
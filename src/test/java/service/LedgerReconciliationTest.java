@@ -0,0 +1,253 @@
+package service;
+
+import org.example.config.BankProperties;
+import org.example.dto.LedgerDiscrepancy;
+import org.example.dto.ReconciliationReport;
+import org.example.enums.TransactionType;
+import org.example.ledger.LedgerTotals;
+import org.example.model.Transactions;
+import org.example.money.Money;
+import org.example.repository.TransactionRepositoryCustomImpl;
+import org.example.service.impl.LedgerReconciliationServiceImpl;
+import org.example.shard.ShardRouter;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LedgerReconciliationTest {
+    private static final List<String> ACCOUNT_NUMBERS = Arrays.asList(
+            "1000000009", "1000000017", "1000000025", "1000000033", "1000000041");
+    private static final String ADD_SQL = "UPDATE Accounts SET Balance = Balance + ? WHERE Account_Number = ?";
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private LedgerTotals ledgerTotals;
+    private TransactionRepositoryCustomImpl transactionRepository;
+    private BankProperties properties;
+    private LedgerReconciliationServiceImpl reconciliationService;
+
+    @BeforeEach
+    public void setup() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:ledger_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        ledgerTotals = new LedgerTotals(jdbcTemplate, new ShardRouter(1));
+        properties = new BankProperties();
+        transactionRepository = new TransactionRepositoryCustomImpl(jdbcTemplate, properties);
+        properties.getLedger().setPartitionSize(2);
+        reconciliationService = new LedgerReconciliationServiceImpl(jdbcTemplate, new ShardRouter(1), properties);
+
+        transactionTemplate.executeWithoutResult(status -> ACCOUNT_NUMBERS.forEach(accountNumber -> {
+            insertAccount(accountNumber, Money.of(100));
+            ledgerTotals.open(accountNumber, Money.of(100));
+        }));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reconciliationService.shutdown();
+    }
+
+    @Test
+    void historyCommittedWithBalancesReconciles() {
+        //GIVEN
+        String from = ACCOUNT_NUMBERS.get(0);
+        String to = ACCOUNT_NUMBERS.get(3);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 3; i++) {
+                transfer(from, to, Money.of(10));
+            }
+            apply(row(TransactionType.WITHDRAWAL, to, null, Money.of(5)));
+        });
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            apply(row(TransactionType.DEPOSIT, to, null, Money.of(50)));
+            throw new IllegalStateException("Откат");
+        }));
+
+        //WHEN
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        //THEN
+        assertEquals(ACCOUNT_NUMBERS.size(), report.getAccounts());
+        assertEquals(0, report.getDiscrepancyCount());
+        assertTrue(report.getPartitions() >= 3, String.valueOf(report.getPartitions()));
+        assertEquals(4L, jdbcTemplate.queryForObject("SELECT Postings FROM Ledger_Totals WHERE Account_Number = ?",
+                Long.class, to));
+        assertEquals(0, new BigDecimal("125.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT Opening_Balance + Net FROM Ledger_Totals WHERE Account_Number = ?", BigDecimal.class, to)));
+    }
+
+    @Test
+    void balanceChangedWithoutHistoryRowIsReported() {
+        //GIVEN
+        properties.getLedger().setMaxDiscrepancies(1);
+        reconciliationService.shutdown();
+        reconciliationService = new LedgerReconciliationServiceImpl(jdbcTemplate, new ShardRouter(1), properties);
+        transactionTemplate.executeWithoutResult(status -> transfer(ACCOUNT_NUMBERS.get(0), ACCOUNT_NUMBERS.get(2), Money.of(20)));
+        jdbcTemplate.update(ADD_SQL, new BigDecimal("5.00"), ACCOUNT_NUMBERS.get(1));
+        insertAccount("1000000058", Money.of(7));
+
+        //WHEN
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        //THEN
+        assertEquals(ACCOUNT_NUMBERS.size() + 1, report.getAccounts());
+        assertEquals(2, report.getDiscrepancyCount());
+        assertEquals(1, report.getDiscrepancies().size());
+        LedgerDiscrepancy discrepancy = report.getDiscrepancies().get(0);
+        assertEquals(ACCOUNT_NUMBERS.get(1), discrepancy.getAccountNumber());
+        assertEquals(0, new BigDecimal("105.00").compareTo(discrepancy.getBalance()));
+        assertEquals(0, new BigDecimal("100.00").compareTo(discrepancy.getExpected()));
+    }
+
+    @Test
+    void pendingHotTransferIsNotReported() {
+        //GIVEN
+        String from = ACCOUNT_NUMBERS.get(0);
+        String hot = ACCOUNT_NUMBERS.get(4);
+        Transactions transfer = row(TransactionType.TRANSFER, from, hot, Money.of(30));
+        jdbcTemplate.update(ADD_SQL, new BigDecimal("-30.00"), from);
+        stageHotCredit(transfer);
+        ReconciliationReport staged = reconciliationService.reconcile();
+
+        //WHEN
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(ADD_SQL, new BigDecimal("30.00"), hot);
+            record(transfer);
+            jdbcTemplate.update("DELETE FROM Hot_Credit WHERE TransactionID = ?", transfer.getId());
+        });
+        ReconciliationReport flushed = reconciliationService.reconcile();
+
+        //THEN
+        assertEquals(0, staged.getDiscrepancyCount());
+        assertEquals(0, flushed.getDiscrepancyCount());
+    }
+
+    @Test
+    void migrationBackfillsTotalsFromHistory() {
+        //GIVEN
+        JdbcDataSource legacy = new JdbcDataSource();
+        legacy.setURL("jdbc:h2:mem:ledger_legacy_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(legacy).locations("classpath:db/migration").target("8").load().migrate();
+        jdbcTemplate = new JdbcTemplate(legacy);
+        transactionRepository = new TransactionRepositoryCustomImpl(jdbcTemplate, properties);
+        insertAccount(ACCOUNT_NUMBERS.get(0), Money.of(100));
+        insertAccount(ACCOUNT_NUMBERS.get(1), Money.of(100));
+        Transactions transfer = row(TransactionType.TRANSFER, ACCOUNT_NUMBERS.get(0), ACCOUNT_NUMBERS.get(1), Money.of(40));
+        Transactions deposit = row(TransactionType.DEPOSIT, ACCOUNT_NUMBERS.get(1), null, Money.of(15));
+        Transactions remoteTransfer = row(TransactionType.TRANSFER, ACCOUNT_NUMBERS.get(0), "9000000001", Money.of(5));
+        transactionRepository.insertAll(List.of(transfer, deposit, remoteTransfer));
+        stageHotCredit(row(TransactionType.TRANSFER, ACCOUNT_NUMBERS.get(0), ACCOUNT_NUMBERS.get(1), Money.of(25)));
+
+        //WHEN
+        Flyway.configure().dataSource(legacy).locations("classpath:db/migration").load().migrate();
+
+        //THEN
+        assertEquals(0, new BigDecimal("-45.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT Net FROM Ledger_Totals WHERE Account_Number = ?", BigDecimal.class, ACCOUNT_NUMBERS.get(0))));
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT Postings FROM Ledger_Totals WHERE Account_Number = ?",
+                Long.class, ACCOUNT_NUMBERS.get(1)));
+        assertEquals(0, new BigDecimal("45.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT Opening_Balance FROM Ledger_Totals WHERE Account_Number = ?", BigDecimal.class, ACCOUNT_NUMBERS.get(1))));
+        reconciliationService.shutdown();
+        reconciliationService = new LedgerReconciliationServiceImpl(jdbcTemplate, new ShardRouter(1), properties);
+        assertEquals(0, reconciliationService.reconcile().getDiscrepancyCount());
+    }
+
+    @Test
+    void accountWithoutTotalsHasNoExpectedBalance() {
+        //GIVEN
+        insertAccount("1000000058", Money.of(7));
+
+        //WHEN
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        //THEN
+        assertEquals(1, report.getDiscrepancyCount());
+        assertEquals("1000000058", report.getDiscrepancies().get(0).getAccountNumber());
+        assertNull(report.getDiscrepancies().get(0).getExpected());
+    }
+
+    @Test
+    void postingToAccountWithoutTotalsIsReported() {
+        //GIVEN
+        insertAccount("1000000058", Money.of(7));
+
+        //WHEN
+        transfer(ACCOUNT_NUMBERS.get(0), "1000000058", Money.of(3));
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        //THEN
+        assertEquals(1, report.getDiscrepancyCount());
+        assertEquals("1000000058", report.getDiscrepancies().get(0).getAccountNumber());
+        assertNull(report.getDiscrepancies().get(0).getExpected());
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Ledger_Totals WHERE Account_Number = ?",
+                Long.class, "1000000058"));
+    }
+
+    private void transfer(String from, String to, Money amount) {
+        apply(row(TransactionType.TRANSFER, from, to, amount));
+    }
+
+    private void apply(Transactions row) {
+        Money amount = row.getAmount();
+        jdbcTemplate.update(ADD_SQL, (TransactionType.DEPOSIT.equals(row.getTransactionType()) ? amount : amount.negate())
+                .toBigDecimal(), row.getAccountFromNumber());
+        if (row.getAccountToNumber() != null) {
+            jdbcTemplate.update(ADD_SQL, amount.toBigDecimal(), row.getAccountToNumber());
+        }
+        record(row);
+    }
+
+    /**
+     * Как RepositoryTransactionRecorder: строка истории пишется и проводится по итогам в той же транзакции
+     */
+    private void record(Transactions row) {
+        List<Transactions> rows = List.of(row);
+        transactionRepository.insertAll(rows);
+        ledgerTotals.postAll(rows);
+    }
+
+    private void stageHotCredit(Transactions credit) {
+        jdbcTemplate.update("INSERT INTO Hot_Credit (TransactionID, Account_Number, Account_From_Number, Account_To_Number, "
+                        + "Amount, Transaction_Type, Transaction_Date) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                credit.getId(), credit.getAccountToNumber(), credit.getAccountFromNumber(), credit.getAccountToNumber(),
+                credit.getAmount().toBigDecimal(), credit.getTransactionType().name(),
+                new Timestamp(credit.getTransactionDate().getTime()));
+    }
+
+    private static Transactions row(TransactionType type, String from, String to, Money amount) {
+        Transactions row = new Transactions();
+        row.setId(UUID.randomUUID());
+        row.setTransactionType(type);
+        row.setAccountFromNumber(from);
+        row.setAccountToNumber(to);
+        row.setAmount(amount);
+        row.setTransactionDate(new Date());
+        return row;
+    }
+
+    private void insertAccount(String accountNumber, Money balance) {
+        jdbcTemplate.update("INSERT INTO Accounts (Id, Account_Number, Name, Pin_Code, Balance) VALUES (?, ?, ?, ?, ?)",
+                UUID.randomUUID(), accountNumber, "Client " + accountNumber, "hash", balance.toBigDecimal());
+    }
+}
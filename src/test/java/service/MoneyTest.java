@@ -0,0 +1,59 @@
+package service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.example.dto.AccountInfo;
+import org.example.money.Money;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void arithmeticUsesMinorUnits() {
+        //GIVEN
+        Money balance = Money.parse("1000.00");
+
+        //WHEN
+        Money result = balance.plus(Money.parse("0.05")).minus(Money.of(1));
+
+        //THEN
+        assertEquals(99_905, result.getMinorUnits());
+        assertEquals("999.05", result.toString());
+        assertEquals("-0.05", Money.parse("0.05").negate().toString());
+        assertEquals(new BigDecimal("999.05"), result.toBigDecimal());
+    }
+
+    @Test
+    void valuesOutsideDecimalColumnAreRejected() {
+        //GIVEN
+        Money max = Money.ofMinorUnits(Money.MAX_MINOR_UNITS);
+
+        //WHEN
+        //THEN
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.parse("0.01")));
+        assertThrows(ArithmeticException.class, () -> Money.parse("1.005"));
+    }
+
+    @Test
+    void jsonKeepsDecimalNumberFormat() throws Exception {
+        //GIVEN
+        AccountInfo accountInfo = new AccountInfo("Dj D", Money.of(1000));
+
+        //WHEN
+        String json = objectMapper.writeValueAsString(accountInfo);
+        Money amount = objectMapper.readValue("200.5", Money.class);
+
+        //THEN
+        assertTrue(json.contains("\"balance\":1000.00"));
+        assertEquals(Money.parse("200.50"), amount);
+        assertEquals(Money.of(7), objectMapper.readValue("\"7\"", Money.class));
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("0.001", Money.class));
+    }
+}
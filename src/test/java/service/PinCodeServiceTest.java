@@ -0,0 +1,72 @@
+package service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.config.BankProperties;
+import org.example.exception.IncorrectPinCodeException;
+import org.example.metrics.TransactionMetrics;
+import org.example.model.Account;
+import org.example.money.Money;
+import org.example.service.impl.PinCodeServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+import static org.example.service.impl.AccountServiceImpl.generateAccountNumber;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PinCodeServiceTest {
+    private PinCodeServiceImpl pinCodeService;
+    private Account account;
+
+    @BeforeEach
+    public void setup() {
+        pinCodeService = new PinCodeServiceImpl(new BankProperties(), new TransactionMetrics(new SimpleMeterRegistry()));
+        account = account(BCrypt.hashpw("1234", BCrypt.gensalt(4)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pinCodeService.shutdown();
+    }
+
+    @Test
+    void verifyCorrectPinCode() {
+        assertDoesNotThrow(() -> pinCodeService.verify(account, "1234"));
+        assertDoesNotThrow(() -> pinCodeService.verify(account, "1234"));
+    }
+
+    @Test
+    void verifyIncorrectPinCodeAfterCachedSuccess() {
+        //GIVEN
+        pinCodeService.verify(account, "1234");
+
+        //WHEN || THEN
+        assertThrows(IncorrectPinCodeException.class, () -> pinCodeService.verify(account, "4321"));
+        assertThrows(IncorrectPinCodeException.class, () -> pinCodeService.verify(account, " "));
+    }
+
+    @Test
+    void verifyAfterPinCodeChange() {
+        //GIVEN
+        pinCodeService.verify(account, "1234");
+
+        //WHEN
+        Account changed = account(BCrypt.hashpw("5678", BCrypt.gensalt(4)));
+
+        //THEN
+        assertThrows(IncorrectPinCodeException.class, () -> pinCodeService.verify(changed, "1234"));
+        assertDoesNotThrow(() -> pinCodeService.verify(changed, "5678"));
+    }
+
+    private Account account(String pinCodeHash) {
+        String accountNumber = account == null ? generateAccountNumber() : account.getAccountNumber();
+        return Account.builder()
+                .accountNumber(accountNumber)
+                .name("Dj D")
+                .balance(Money.of(1000))
+                .pinCode(pinCodeHash)
+                .build();
+    }
+}
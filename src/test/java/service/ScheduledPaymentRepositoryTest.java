@@ -0,0 +1,113 @@
+package service;
+
+import org.example.dto.ScheduledPayment;
+import org.example.enums.TransactionType;
+import org.example.money.Money;
+import org.example.repository.ScheduledPaymentRepository;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScheduledPaymentRepositoryTest {
+    private static final long START = 1_700_000_000_000L;
+    private static final int THREADS = 4;
+
+    private TransactionTemplate transactionTemplate;
+    private ScheduledPaymentRepository repository;
+
+    @BeforeEach
+    public void setup() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:scheduled_claim_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        repository = new ScheduledPaymentRepository(new JdbcTemplate(dataSource));
+    }
+
+    @Test
+    void claimedPaymentIsNotClaimedAgainFromStaleCopy() {
+        //GIVEN
+        List<ScheduledPayment> loaded = List.of(insert(3600L), insert(null));
+        repository.claimAll(loaded, START);
+
+        //WHEN
+        List<ScheduledPayment> claimed = repository.claimAll(loaded, START + 1000);
+
+        //THEN
+        assertTrue(claimed.isEmpty());
+        ScheduledPayment periodic = repository.findAllByAccountFromNumber("1000000009").stream()
+                .filter(payment -> payment.getId().equals(loaded.get(0).getId()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(START + TimeUnit.HOURS.toMillis(1), periodic.getNextRunAt().getTime());
+        assertEquals(START, periodic.getLastRunAt().getTime());
+    }
+
+    /**
+     * Несколько планировщиков загрузили одни и те же платежи и переносят их сроки одновременно:
+     * условный UPDATE ждет блокировку строки и после фиксации соперника уже не совпадает со сроком
+     */
+    @Test
+    void concurrentClaimsTakeEachPaymentOnce() throws Exception {
+        //GIVEN
+        List<ScheduledPayment> loaded = IntStream.range(0, 20)
+                .mapToObj(i -> insert(3600L))
+                .collect(Collectors.toList());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<ScheduledPayment>>> futures = new ArrayList<>();
+
+        //WHEN
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return transactionTemplate.execute(status -> repository.claimAll(loaded, START));
+            }));
+        }
+        start.countDown();
+        List<UUID> claimed = new ArrayList<>();
+        for (Future<List<ScheduledPayment>> future : futures) {
+            future.get(30, TimeUnit.SECONDS).forEach(payment -> claimed.add(payment.getId()));
+        }
+        executor.shutdown();
+
+        //THEN
+        Collections.sort(claimed);
+        List<UUID> expected = loaded.stream().map(ScheduledPayment::getId).sorted().collect(Collectors.toList());
+        assertEquals(expected, claimed);
+    }
+
+    private ScheduledPayment insert(Long periodSeconds) {
+        ScheduledPayment payment = ScheduledPayment.builder()
+                .id(UUID.randomUUID())
+                .accountFromNumber("1000000009")
+                .accountToNumber("1000000017")
+                .amount(Money.of(10))
+                .type(TransactionType.TRANSFER)
+                .periodSeconds(periodSeconds)
+                .nextRunAt(new Date(START))
+                .build();
+        repository.insert(payment);
+        return payment;
+    }
+}
@@ -0,0 +1,232 @@
+package service;
+
+import org.example.config.BankProperties;
+import org.example.dto.ScheduledPayment;
+import org.example.dto.TransactionRequest;
+import org.example.dto.TransactionResult;
+import org.example.enums.TransactionType;
+import org.example.money.Money;
+import org.example.repository.ScheduledPaymentRepository;
+import org.example.schedule.ScheduledPaymentScheduler;
+import org.example.service.TransactionService;
+import org.example.service.impl.TransactionServiceImpl;
+import org.example.shard.ShardRouter;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Планировщик регулярных платежей на базе H2. Тики идут в потоке планировщика, а время,
+ * по которому выбираются сроки, задает тест
+ */
+class ScheduledPaymentSchedulerTest {
+    private static final long START = 1_700_000_000_000L;
+    private static final long PERIOD_SECONDS = 3600;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final AtomicLong now = new AtomicLong(START);
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private ScheduledPaymentRepository repository;
+    private TransactionServiceImpl transactionService;
+    private BankProperties properties;
+    private ScheduledPaymentScheduler scheduler;
+
+    @BeforeEach
+    public void setup() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:scheduled_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        repository = spy(new ScheduledPaymentRepository(jdbcTemplate));
+        transactionService = mock(TransactionServiceImpl.class);
+        when(transactionService.processScheduledBatch(anyList())).thenAnswer(invocation -> succeeded(invocation.getArgument(0)));
+
+        properties = new BankProperties();
+        properties.getBatch().setMaxSize(2);
+        BankProperties.ScheduledPayments settings = properties.getScheduledPayments();
+        settings.setTick(Duration.ofMillis(10));
+        settings.setLookahead(Duration.ofMinutes(10));
+        settings.setLoadPageSize(2);
+        settings.setWaveSize(3);
+        settings.setSpread(Duration.ZERO);
+        settings.setRetryDelay(Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void duePaymentsRunInWavesSplitIntoBatches() {
+        //GIVEN
+        List<ScheduledPayment> payments = IntStream.range(0, 5)
+                .mapToObj(i -> insert(START - 1000))
+                .collect(Collectors.toList());
+
+        //WHEN
+        startScheduler();
+
+        //THEN
+        verify(transactionService, timeout(TIMEOUT_MILLIS).times(3)).processScheduledBatch(anyList());
+        assertEquals(List.of(2, 1, 2), batchSizes);
+        for (ScheduledPayment payment : payments) {
+            ScheduledPayment stored = stored(payment);
+            assertEquals(TransactionService.PROCESSED_MESSAGE, stored.getLastResult());
+            assertEquals(START, stored.getLastRunAt().getTime());
+            assertEquals(START - 1000 + TimeUnit.SECONDS.toMillis(PERIOD_SECONDS), stored.getNextRunAt().getTime());
+        }
+    }
+
+    /**
+     * Платежи одного срока читаются страницами по (Next_Run_At, Id), а платеж за горизонтом
+     * загружается, только когда до него остается меньше lookahead
+     */
+    @Test
+    void paymentsAreLoadedPageByPageWithinLookahead() throws Exception {
+        //GIVEN
+        List<ScheduledPayment> soon = IntStream.range(0, 3)
+                .mapToObj(i -> insert(START + TimeUnit.MINUTES.toMillis(1)))
+                .collect(Collectors.toList());
+        ScheduledPayment later = insert(START + TimeUnit.MINUTES.toMillis(30));
+        startScheduler();
+        verify(repository, timeout(TIMEOUT_MILLIS)).findDue(any(Date.class), any(Date.class), anyInt());
+
+        //WHEN
+        now.set(START + TimeUnit.MINUTES.toMillis(2));
+        verify(transactionService, timeout(TIMEOUT_MILLIS).times(2)).processScheduledBatch(anyList());
+        Thread.sleep(100);
+
+        //THEN
+        assertEquals(3, processedCount());
+        soon.forEach(payment -> assertEquals(TransactionService.PROCESSED_MESSAGE, stored(payment).getLastResult()));
+        assertNull(stored(later).getLastResult());
+        verify(repository, atLeastOnce()).findDueAfter(any(Date.class), any(UUID.class), any(Date.class), anyInt());
+
+        //WHEN
+        now.set(START + TimeUnit.MINUTES.toMillis(31));
+        verify(transactionService, timeout(TIMEOUT_MILLIS).times(3)).processScheduledBatch(anyList());
+        Thread.sleep(100);
+
+        //THEN
+        assertEquals(4, processedCount());
+        assertEquals(TransactionService.PROCESSED_MESSAGE, stored(later).getLastResult());
+    }
+
+    @Test
+    void paymentCreatedBehindLoadCursorIsTracked() {
+        //GIVEN
+        startScheduler();
+        verify(repository, timeout(TIMEOUT_MILLIS)).findDue(any(Date.class), any(Date.class), anyInt());
+        ScheduledPayment payment = insert(START + TimeUnit.MINUTES.toMillis(3));
+
+        //WHEN
+        scheduler.scheduled(payment);
+        now.set(START + TimeUnit.MINUTES.toMillis(4));
+
+        //THEN
+        verify(transactionService, timeout(TIMEOUT_MILLIS)).processScheduledBatch(anyList());
+        assertEquals(TransactionService.PROCESSED_MESSAGE, stored(payment).getLastResult());
+    }
+
+    /**
+     * Сбой пакета откатывает перенос срока вместе с операциями: платеж повторяется через retry-delay
+     */
+    @Test
+    void failedBatchIsRetriedAfterDelay() throws Exception {
+        //GIVEN
+        when(transactionService.processScheduledBatch(anyList()))
+                .thenThrow(new TransientDataAccessResourceException("Соединение с БД потеряно"))
+                .thenAnswer(invocation -> succeeded(invocation.getArgument(0)));
+        ScheduledPayment payment = insert(START - 1000);
+
+        //WHEN
+        startScheduler();
+        verify(transactionService, timeout(TIMEOUT_MILLIS)).processScheduledBatch(anyList());
+        Thread.sleep(100);
+
+        //THEN
+        verify(transactionService, times(1)).processScheduledBatch(anyList());
+        ScheduledPayment stored = stored(payment);
+        assertEquals(START - 1000, stored.getNextRunAt().getTime());
+        assertNull(stored.getLastRunAt());
+
+        //WHEN
+        now.set(START + TimeUnit.MINUTES.toMillis(1) + 10);
+
+        //THEN
+        verify(transactionService, timeout(TIMEOUT_MILLIS).times(2)).processScheduledBatch(anyList());
+        assertEquals(TransactionService.PROCESSED_MESSAGE, stored(payment).getLastResult());
+    }
+
+    private void startScheduler() {
+        scheduler = new ScheduledPaymentScheduler(repository, transactionService, transactionManager, new ShardRouter(1),
+                properties, now::get);
+    }
+
+    private List<TransactionResult> succeeded(List<TransactionRequest> requests) {
+        batchSizes.add(requests.size());
+        return IntStream.range(0, requests.size())
+                .mapToObj(i -> new TransactionResult(i, true, TransactionService.PROCESSED_MESSAGE))
+                .collect(Collectors.toList());
+    }
+
+    private int processedCount() {
+        return batchSizes.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private ScheduledPayment insert(long nextRunAt) {
+        ScheduledPayment payment = ScheduledPayment.builder()
+                .id(UUID.randomUUID())
+                .accountFromNumber("1000000009")
+                .accountToNumber("1000000017")
+                .amount(Money.of(10))
+                .type(TransactionType.TRANSFER)
+                .periodSeconds(PERIOD_SECONDS)
+                .nextRunAt(new Date(nextRunAt))
+                .build();
+        repository.insert(payment);
+        return payment;
+    }
+
+    private ScheduledPayment stored(ScheduledPayment payment) {
+        return repository.findAllByAccountFromNumber(payment.getAccountFromNumber()).stream()
+                .filter(candidate -> candidate.getId().equals(payment.getId()))
+                .findFirst()
+                .orElseThrow();
+    }
+}
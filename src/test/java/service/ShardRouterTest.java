@@ -0,0 +1,85 @@
+package service;
+
+import org.example.shard.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardRouterTest {
+    private final ShardRouter shardRouter = new ShardRouter(4);
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void sequentialAccountNumbersAreSpreadAcrossShards() {
+        //GIVEN
+        int[] accounts = new int[shardRouter.getShardCount()];
+
+        //WHEN
+        for (long serial = 100_000_000; serial < 100_010_000; serial++) {
+            accounts[shardRouter.shardOf(Long.toString(serial * 10))]++;
+        }
+
+        //THEN
+        for (int count : accounts) {
+            assertTrue(count > 2000, Arrays.toString(accounts));
+        }
+    }
+
+    @Test
+    void nestedCallRestoresPreviousShard() {
+        //WHEN
+        int inner = shardRouter.executeOnShard(2, () -> shardRouter.executeOnShard(3, shardRouter::currentShard));
+
+        //THEN
+        assertEquals(3, inner);
+        assertEquals(ShardRouter.HOME_SHARD, shardRouter.currentShard());
+    }
+
+    @Test
+    void transactionCannotSwitchShard() {
+        //WHEN
+        //THEN
+        assertThrows(IllegalStateException.class, () -> shardRouter.runOnShard(1, () -> {
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            shardRouter.runOnShard(2, () -> { });
+        }));
+    }
+
+    @Test
+    void transactionMayReenterItsShard() {
+        //WHEN
+        int shard = shardRouter.executeOnShard(1, () -> {
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            return shardRouter.executeOnShard(1, shardRouter::currentShard);
+        });
+
+        //THEN
+        assertEquals(1, shard);
+    }
+
+    @Test
+    void groupByShardKeepsItemsOfEachAccountTogether() {
+        //GIVEN
+        List<String> accountNumbers = Arrays.asList("1000000009", "1000000017", "1000000025", "1000000009");
+
+        //WHEN
+        Map<Integer, List<String>> groups = shardRouter.groupByShard(accountNumbers, accountNumber -> accountNumber);
+
+        //THEN
+        assertEquals(4, groups.values().stream().mapToInt(List::size).sum());
+        groups.forEach((shard, group) -> group.forEach(accountNumber ->
+                assertEquals((int) shard, shardRouter.shardOf(accountNumber))));
+    }
+}
@@ -0,0 +1,148 @@
+package service;
+
+import org.example.config.BankProperties;
+import org.example.shard.ShardRouter;
+import org.example.shard.ShardRoutingDataSource;
+import org.example.snapshot.ShardSnapshots;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardSnapshotsTest {
+    private static final String ACCOUNTS_SQL = "SELECT * FROM Accounts ORDER BY Account_Number";
+    private static final String TRANSACTIONS_SQL = "SELECT * FROM Transactions ORDER BY TransactionID";
+    private static final String HOT_CREDIT_SQL = "SELECT * FROM Hot_Credit ORDER BY TransactionID";
+    private static final String NEXT_BLOCK_SQL = "SELECT NEXT VALUE FOR Account_Number_Block_Seq";
+
+    @TempDir
+    Path directory;
+
+    private BankProperties properties;
+
+    @BeforeEach
+    public void setup() {
+        properties = new BankProperties();
+        properties.getSnapshot().setEnabled(true);
+        properties.getSnapshot().setDirectory(directory.toString());
+        properties.getSnapshot().setBatchSize(2);
+    }
+
+    @Test
+    void restoreLoadsSnapshotIntoEmptyShard() {
+        //GIVEN
+        JdbcDataSource source = database("snapshot_source");
+        JdbcTemplate sourceJdbc = new JdbcTemplate(source);
+        for (int i = 0; i < 5; i++) {
+            insertAccount(sourceJdbc, "100000000" + i, new BigDecimal("10" + i + ".50"));
+        }
+        sourceJdbc.update("INSERT INTO Transactions (TransactionID, Account_From_Number, Account_To_Number, Amount, "
+                        + "Transaction_Type, Transaction_Date) VALUES (?, ?, ?, ?, ?, ?)", UUID.randomUUID(),
+                "1000000000", "1000000001", new BigDecimal("1.25"), "TRANSFER", new Timestamp(1_700_000_000_123L));
+        sourceJdbc.update("INSERT INTO Hot_Credit (TransactionID, Account_Number, Account_From_Number, Account_To_Number, "
+                        + "Amount, Transaction_Type, Transaction_Date) VALUES (?, ?, ?, NULL, ?, ?, ?)", UUID.randomUUID(),
+                "1000000002", "1000000002", new BigDecimal("3.00"), "DEPOSIT", new Timestamp(1_700_000_000_456L));
+        Long lastBlock = sourceJdbc.queryForObject(NEXT_BLOCK_SQL, Long.class);
+        JdbcDataSource target = database("snapshot_target");
+        JdbcTemplate targetJdbc = new JdbcTemplate(target);
+
+        //WHEN
+        new ShardSnapshots(routing(source), properties).snapshot();
+        new ShardSnapshots(routing(target), properties).restore();
+
+        //THEN
+        assertEquals(sourceJdbc.queryForList(ACCOUNTS_SQL), targetJdbc.queryForList(ACCOUNTS_SQL));
+        assertEquals(sourceJdbc.queryForList(TRANSACTIONS_SQL), targetJdbc.queryForList(TRANSACTIONS_SQL));
+        assertEquals(sourceJdbc.queryForList(HOT_CREDIT_SQL), targetJdbc.queryForList(HOT_CREDIT_SQL));
+        assertTrue(targetJdbc.queryForObject(NEXT_BLOCK_SQL, Long.class) > lastBlock);
+    }
+
+    @Test
+    void restoreBackfillsLedgerTotalsMissingFromSnapshot() {
+        //GIVEN
+        JdbcDataSource source = database("snapshot_no_totals");
+        JdbcTemplate sourceJdbc = new JdbcTemplate(source);
+        insertAccount(sourceJdbc, "1000000000", new BigDecimal("8.75"));
+        insertAccount(sourceJdbc, "1000000001", new BigDecimal("11.25"));
+        sourceJdbc.update("INSERT INTO Transactions (TransactionID, Account_From_Number, Account_To_Number, Amount, "
+                        + "Transaction_Type, Transaction_Date) VALUES (?, ?, ?, ?, ?, ?)", UUID.randomUUID(),
+                "1000000000", "1000000001", new BigDecimal("1.25"), "TRANSFER", new Timestamp(1_700_000_000_123L));
+        sourceJdbc.update("DELETE FROM Ledger_Totals");
+        new ShardSnapshots(routing(source), properties).snapshot();
+        JdbcDataSource target = database("snapshot_backfill");
+        JdbcTemplate targetJdbc = new JdbcTemplate(target);
+
+        //WHEN
+        new ShardSnapshots(routing(target), properties).restore();
+
+        //THEN
+        assertEquals(0, new BigDecimal("10.00").compareTo(targetJdbc.queryForObject(
+                "SELECT Opening_Balance FROM Ledger_Totals WHERE Account_Number = ?", BigDecimal.class, "1000000000")));
+        assertEquals(0, new BigDecimal("1.25").compareTo(targetJdbc.queryForObject(
+                "SELECT Net FROM Ledger_Totals WHERE Account_Number = ?", BigDecimal.class, "1000000001")));
+    }
+
+    @Test
+    void restoreKeepsNonEmptyShard() {
+        //GIVEN
+        JdbcDataSource source = database("snapshot_full");
+        insertAccount(new JdbcTemplate(source), "1000000000", BigDecimal.ONE);
+        new ShardSnapshots(routing(source), properties).snapshot();
+        JdbcDataSource target = database("snapshot_busy");
+        JdbcTemplate targetJdbc = new JdbcTemplate(target);
+        insertAccount(targetJdbc, "2000000000", BigDecimal.TEN);
+
+        //WHEN
+        new ShardSnapshots(routing(target), properties).restore();
+
+        //THEN
+        assertEquals(Collections.singletonList("2000000000"),
+                targetJdbc.queryForList("SELECT Account_Number FROM Accounts", String.class));
+    }
+
+    @Test
+    void restoreRejectsSnapshotOfOtherShardLayout() {
+        //GIVEN
+        JdbcDataSource source = database("snapshot_single");
+        insertAccount(new JdbcTemplate(source), "1000000000", BigDecimal.ONE);
+        new ShardSnapshots(routing(source), properties).snapshot();
+        ShardRoutingDataSource twoShards = new ShardRoutingDataSource(new ShardRouter(2),
+                Map.of(0, database("snapshot_shard0"), 1, database("snapshot_shard1")));
+        twoShards.afterPropertiesSet();
+
+        //WHEN
+        //THEN
+        assertThrows(IllegalStateException.class, () -> new ShardSnapshots(twoShards, properties).restore());
+    }
+
+    private static JdbcDataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        return dataSource;
+    }
+
+    private static ShardRoutingDataSource routing(JdbcDataSource dataSource) {
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(new ShardRouter(1), Collections.singletonMap(0, dataSource));
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    private static void insertAccount(JdbcTemplate jdbcTemplate, String accountNumber, BigDecimal balance) {
+        jdbcTemplate.update("INSERT INTO Accounts (Id, Account_Number, Name, Pin_Code, Balance) VALUES (?, ?, ?, ?, ?)",
+                UUID.randomUUID(), accountNumber, "Name " + accountNumber, "$2a$10$hash", balance);
+    }
+}
@@ -0,0 +1,69 @@
+package service;
+
+import org.example.id.TimeOrderedUuid;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedUuidTest {
+
+    @Test
+    void idsGrowInUnsignedOrder() {
+        //GIVEN
+        long before = System.currentTimeMillis();
+
+        //WHEN
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(TimeOrderedUuid.next());
+        }
+
+        //THEN
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(Long.compareUnsigned(ids.get(i - 1).getMostSignificantBits(), ids.get(i).getMostSignificantBits()) < 0);
+        }
+        assertTrue(TimeOrderedUuid.timestampMillis(ids.get(0)) >= before);
+    }
+
+    @Test
+    void idsHaveVersionSevenAndRfcVariant() {
+        //WHEN
+        UUID id = TimeOrderedUuid.next();
+
+        //THEN
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+    }
+
+    @Test
+    void concurrentThreadsNeverGetSameId() throws InterruptedException {
+        //GIVEN
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ConcurrentLinkedQueue<UUID> ids = new ConcurrentLinkedQueue<>();
+
+        //WHEN
+        for (int thread = 0; thread < 4; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    ids.add(TimeOrderedUuid.next());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        //THEN
+        assertEquals(200_000, new HashSet<>(ids).size());
+        assertEquals(200_000, ids.stream().map(UUID::getMostSignificantBits).distinct().count());
+    }
+}
@@ -0,0 +1,71 @@
+package service;
+
+import org.example.schedule.TimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    @Test
+    void entriesExpireInDueOrderAcrossWheelLevels() {
+        //GIVEN
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 8, 0);
+        long[] dues = {5_000, 15, 700, 79, 80, 640, 12_345};
+        for (long due : dues) {
+            wheel.add(due, due);
+        }
+
+        //WHEN
+        List<Long> expired = new ArrayList<>();
+        List<Long> lateness = new ArrayList<>();
+        for (long now = 0; now <= 20_000; now += 10) {
+            long tickTime = now;
+            wheel.advance(now, due -> {
+                expired.add(due);
+                lateness.add(tickTime - due);
+            });
+        }
+
+        //THEN
+        assertEquals(List.of(15L, 79L, 80L, 640L, 700L, 5_000L, 12_345L), expired);
+        lateness.forEach(late -> assertTrue(late >= 0 && late < 10, "late by " + late));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void entryAlreadyDueIsNotAdded() {
+        //GIVEN
+        TimingWheel<String> wheel = new TimingWheel<>(100, 16, 1_000);
+
+        //WHEN
+        //THEN
+        assertFalse(wheel.add("overdue", 500));
+        assertFalse(wheel.add("now", 1_000));
+        assertTrue(wheel.add("within tick", 1_050));
+        assertTrue(wheel.add("next tick", 1_100));
+        assertEquals(2, wheel.size());
+    }
+
+    @Test
+    void largeJumpReleasesEverythingDue() {
+        //GIVEN
+        TimingWheel<Integer> wheel = new TimingWheel<>(1, 4, 0);
+        for (int i = 1; i <= 1000; i++) {
+            wheel.add(i, i);
+        }
+
+        //WHEN
+        List<Integer> expired = new ArrayList<>();
+        wheel.advance(500, expired::add);
+
+        //THEN
+        assertEquals(500, expired.size());
+        assertEquals(500, wheel.size());
+    }
+}
@@ -0,0 +1,156 @@
+package service;
+
+import org.example.archive.TransactionArchive;
+import org.example.config.BankProperties;
+import org.example.enums.TransactionType;
+import org.example.model.Transactions;
+import org.example.money.Money;
+import org.example.repository.TransactionRepository;
+import org.example.shard.ShardRouter;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionArchiveTest {
+    private static final String ACCOUNT_NUMBER = "1000000009";
+    private static final String OTHER_ACCOUNT_NUMBER = "1000000017";
+
+    @TempDir
+    Path directory;
+
+    private BankProperties properties;
+    private TransactionRepository transactionRepository;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setup() {
+        properties = new BankProperties();
+        properties.getArchive().setDirectory(directory.toString());
+        properties.getArchive().setSegmentRows(100);
+        transactionRepository = mock(TransactionRepository.class);
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:archive_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @Test
+    void archivedRowsAreDeletedAndReadBackInOrder() {
+        //GIVEN
+        List<Transactions> old = Arrays.asList(
+                transaction(ACCOUNT_NUMBER, null, TransactionType.DEPOSIT, 1000),
+                transaction(OTHER_ACCOUNT_NUMBER, ACCOUNT_NUMBER, TransactionType.TRANSFER, 2000),
+                transaction(ACCOUNT_NUMBER, OTHER_ACCOUNT_NUMBER, TransactionType.TRANSFER, 3000),
+                transaction(OTHER_ACCOUNT_NUMBER, null, TransactionType.WITHDRAWAL, 4000));
+        when(transactionRepository.findOldest(any(Date.class), anyInt())).thenReturn(old);
+        TransactionArchive archive = archive();
+
+        //WHEN
+        archive.archiveAll();
+
+        //THEN
+        ArgumentCaptor<List<UUID>> deleted = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository).deleteAllByIds(deleted.capture());
+        assertEquals(ids(old), deleted.getValue());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Archive_Segments", Integer.class));
+
+        List<Transactions> history = archive.read(view ->
+                view.stream(ACCOUNT_NUMBER, true, null, null, true).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(old.get(2).getId(), old.get(1).getId(), old.get(0).getId()), ids(history));
+        Transactions transfer = history.get(0);
+        assertEquals(OTHER_ACCOUNT_NUMBER, transfer.getAccountToNumber());
+        assertEquals(Money.of(3), transfer.getAmount());
+        assertEquals(TransactionType.TRANSFER, transfer.getTransactionType());
+        assertEquals(new Date(3000), transfer.getTransactionDate());
+
+        List<Transactions> outgoing = archive.read(view ->
+                view.stream(ACCOUNT_NUMBER, false, new Date(2000), null, false).collect(Collectors.toList()));
+        assertEquals(Collections.singletonList(old.get(2).getId()), ids(outgoing));
+        assertEquals(0, archive.read(view -> view.stream("1000000025", true, null, null, true).count()));
+    }
+
+    @Test
+    void reopenKeepsRegisteredSegmentsAndDropsOrphans() throws Exception {
+        //GIVEN
+        List<Transactions> old = Collections.singletonList(transaction(ACCOUNT_NUMBER, null, TransactionType.DEPOSIT, 1000));
+        when(transactionRepository.findOldest(any(Date.class), anyInt())).thenReturn(old);
+        archive().archiveAll();
+        Path orphan = Files.createFile(directory.resolve("shard-0").resolve("000000000000001-orphan.segment"));
+        TransactionArchive reopened = archive();
+
+        //WHEN
+        reopened.afterSingletonsInstantiated();
+
+        //THEN
+        assertFalse(Files.exists(orphan));
+        assertEquals(ids(old), reopened.read(view ->
+                ids(view.stream(ACCOUNT_NUMBER, false, null, null, true).collect(Collectors.toList()))));
+    }
+
+    @Test
+    void mergeKeepsOrderAndClosesBothStreams() {
+        //GIVEN
+        List<String> closed = new ArrayList<>();
+        Transactions newest = transaction(ACCOUNT_NUMBER, null, TransactionType.DEPOSIT, 3000);
+        Transactions middle = transaction(ACCOUNT_NUMBER, null, TransactionType.DEPOSIT, 2000);
+        Transactions oldest = transaction(ACCOUNT_NUMBER, null, TransactionType.DEPOSIT, 1000);
+
+        //WHEN
+        List<Transactions> merged;
+        try (Stream<Transactions> stream = TransactionArchive.merge(
+                Stream.of(newest, oldest).onClose(() -> closed.add("hot")),
+                Stream.of(middle).onClose(() -> closed.add("archived")), TransactionArchive.NEWEST_FIRST)) {
+            merged = stream.collect(Collectors.toList());
+        }
+
+        //THEN
+        assertEquals(Arrays.asList(newest, middle, oldest), merged);
+        assertTrue(closed.containsAll(Arrays.asList("hot", "archived")));
+    }
+
+    private TransactionArchive archive() {
+        return new TransactionArchive(transactionRepository, jdbcTemplate, transactionManager, new ShardRouter(1), properties);
+    }
+
+    private static Transactions transaction(String accountFrom, String accountTo, TransactionType type, long date) {
+        Transactions transaction = new Transactions();
+        transaction.setId(UUID.randomUUID());
+        transaction.setAccountFromNumber(accountFrom);
+        transaction.setAccountToNumber(accountTo);
+        transaction.setAmount(Money.of(date / 1000));
+        transaction.setTransactionType(type);
+        transaction.setTransactionDate(new Date(date));
+        return transaction;
+    }
+
+    private static List<UUID> ids(List<Transactions> transactions) {
+        return transactions.stream().map(Transactions::getId).collect(Collectors.toList());
+    }
+}
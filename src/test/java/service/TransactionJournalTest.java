@@ -0,0 +1,191 @@
+package service;
+
+import org.example.config.BankProperties;
+import org.example.enums.TransactionType;
+import org.example.journal.TransactionJournal;
+import org.example.model.Transactions;
+import org.example.money.Money;
+import org.example.repository.TransactionRepository;
+import org.example.shard.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class TransactionJournalTest {
+    @TempDir
+    Path directory;
+
+    private BankProperties properties;
+    private List<Transactions> persisted;
+
+    @BeforeEach
+    public void setup() {
+        properties = new BankProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(directory.toString());
+        properties.getJournal().setSegmentSize(4096);
+        properties.getJournal().setFlushInterval(Duration.ofHours(1));
+        persisted = new ArrayList<>();
+    }
+
+    @Test
+    void replayAfterCrashPersistsAcknowledgedRecords() {
+        //GIVEN
+        TransactionRepository crashedRepository = mock(TransactionRepository.class);
+        TransactionJournal crashed = new TransactionJournal(crashedRepository, new ShardRouter(1), properties);
+        crashed.afterSingletonsInstantiated();
+        List<Transactions> written = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            written.add(transaction(i));
+        }
+
+        //WHEN
+        crashed.commit(crashed.append(written));
+        TransactionJournal restarted = new TransactionJournal(recordingRepository(), new ShardRouter(1), properties);
+        restarted.afterSingletonsInstantiated();
+
+        //THEN
+        verify(crashedRepository, never()).mergeAll(anyList());
+        assertEquals(written.size(), persisted.size());
+        for (int i = 0; i < written.size(); i++) {
+            Transactions expected = written.get(i);
+            Transactions actual = persisted.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getAccountFromNumber(), actual.getAccountFromNumber());
+            assertEquals(expected.getAccountToNumber(), actual.getAccountToNumber());
+            assertEquals(expected.getAmount(), actual.getAmount());
+            assertEquals(expected.getTransactionType(), actual.getTransactionType());
+            assertEquals(expected.getTransactionDate(), actual.getTransactionDate());
+        }
+    }
+
+    @Test
+    void shutdownDrainsJournal() throws Exception {
+        //GIVEN
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        TransactionJournal journal = new TransactionJournal(transactionRepository, new ShardRouter(1), properties);
+        journal.afterSingletonsInstantiated();
+
+        //WHEN
+        journal.commit(journal.append(List.of(transaction(1), transaction(2))));
+        journal.destroy();
+
+        //THEN
+        ArgumentCaptor<List<Transactions>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository, atLeastOnce()).mergeAll(captor.capture());
+        TransactionJournal restarted = new TransactionJournal(recordingRepository(), new ShardRouter(1), properties);
+        restarted.afterSingletonsInstantiated();
+        assertEquals(0, persisted.size());
+    }
+
+    @Test
+    void onlyCommittedBatchesAreReplayed() {
+        //GIVEN
+        TransactionJournal crashed = new TransactionJournal(mock(TransactionRepository.class), new ShardRouter(1), properties);
+        crashed.afterSingletonsInstantiated();
+        Transactions committed = transaction(1);
+
+        //WHEN
+        crashed.append(List.of(transaction(2)));
+        crashed.rollback(crashed.append(List.of(transaction(3))));
+        crashed.commit(crashed.append(List.of(committed)));
+        TransactionJournal restarted = new TransactionJournal(recordingRepository(), new ShardRouter(1), properties);
+        restarted.afterSingletonsInstantiated();
+
+        //THEN
+        assertEquals(1, persisted.size());
+        assertEquals(committed.getId(), persisted.get(0).getId());
+    }
+
+    @Test
+    void drainStopsAtBatchWithoutOutcome() throws Exception {
+        //GIVEN
+        TransactionJournal journal = new TransactionJournal(recordingRepository(), new ShardRouter(1), properties);
+        journal.afterSingletonsInstantiated();
+        Transactions committed = transaction(2);
+        journal.append(List.of(transaction(1)));
+        journal.commit(journal.append(List.of(committed)));
+
+        //WHEN
+        journal.destroy();
+        int drainedBeforeRestart = persisted.size();
+        TransactionJournal restarted = new TransactionJournal(recordingRepository(), new ShardRouter(1), properties);
+        restarted.afterSingletonsInstantiated();
+
+        //THEN
+        assertEquals(0, drainedBeforeRestart);
+        assertEquals(List.of(committed.getId()), persisted.stream().map(Transactions::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void drainRetriesBatchAfterFailedMerge() throws Exception {
+        //GIVEN
+        properties.getJournal().setFlushInterval(Duration.ofMillis(10));
+        TransactionRepository transactionRepository = recordingRepository();
+        AtomicInteger merges = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (merges.incrementAndGet() == 1) {
+                throw new IllegalStateException("БД недоступна");
+            }
+            List<Transactions> batch = invocation.getArgument(0);
+            persisted.addAll(batch);
+            return null;
+        }).when(transactionRepository).mergeAll(anyList());
+        TransactionJournal journal = new TransactionJournal(transactionRepository, new ShardRouter(1), properties);
+        journal.afterSingletonsInstantiated();
+        Transactions committed = transaction(1);
+
+        //WHEN
+        journal.commit(journal.append(List.of(committed)));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (persisted.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        journal.destroy();
+
+        //THEN
+        assertTrue(merges.get() > 1);
+        assertEquals(List.of(committed.getId()), persisted.stream().map(Transactions::getId).collect(Collectors.toList()));
+    }
+
+    private TransactionRepository recordingRepository() {
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        doAnswer(invocation -> {
+            List<Transactions> batch = invocation.getArgument(0);
+            persisted.addAll(batch);
+            return null;
+        }).when(transactionRepository).mergeAll(anyList());
+        return transactionRepository;
+    }
+
+    private Transactions transaction(int i) {
+        Transactions transactions = new Transactions();
+        transactions.setId(UUID.randomUUID());
+        transactions.setAccountFromNumber(String.format("%010d", i));
+        transactions.setAccountToNumber(i % 2 == 0 ? String.format("%010d", i + 1) : null);
+        transactions.setAmount(Money.ofMinorUnits(i * 100L + 25));
+        transactions.setTransactionType(i % 2 == 0 ? TransactionType.TRANSFER : TransactionType.DEPOSIT);
+        transactions.setTransactionDate(new Date(1_700_000_000_000L + i));
+        return transactions;
+    }
+}
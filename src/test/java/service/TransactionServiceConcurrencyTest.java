@@ -0,0 +1,293 @@
+package service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.archive.TransactionArchive;
+import org.example.concurrent.AccountLockManager;
+import org.example.concurrent.HotAccounts;
+import org.example.concurrent.HotCreditBuffer;
+import org.example.config.BankProperties;
+import org.example.dto.AccountInfo;
+import org.example.dto.CursorPage;
+import org.example.dto.TransactionRequest;
+import org.example.enums.TransactionType;
+import org.example.exception.AccountNotFoundException;
+import org.example.exception.InsufficientFundsException;
+import org.example.ledger.LedgerTotals;
+import org.example.metrics.TransactionMetrics;
+import org.example.model.Account;
+import org.example.money.Money;
+import org.example.repository.TransactionRepository;
+import org.example.service.AccountService;
+import org.example.service.IdempotencyService;
+import org.example.service.TransactionService;
+import org.example.service.impl.PinCodeServiceImpl;
+import org.example.service.impl.RepositoryTransactionRecorder;
+import org.example.service.impl.TransactionServiceImpl;
+import org.example.shard.ShardRouter;
+import org.example.shard.TransferOutbox;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.example.service.impl.AccountServiceImpl.generateAccountNumber;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class TransactionServiceConcurrencyTest {
+    private static final int ACCOUNTS = 8;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 300;
+    private static final int BATCHES_PER_THREAD = 100;
+    private static final int BATCH_SIZE = 4;
+    private static final Money INITIAL_BALANCE = Money.of(1000);
+
+    private InMemoryAccountService accountService;
+    private TransactionService transactionService;
+    private List<String> accountNumbers;
+
+    @BeforeEach
+    public void setup() {
+        accountService = new InMemoryAccountService();
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        BankProperties properties = new BankProperties();
+        TransactionMetrics metrics = new TransactionMetrics(new SimpleMeterRegistry());
+        transactionService = new TransactionServiceImpl(transactionRepository,
+                new RepositoryTransactionRecorder(transactionRepository, mock(LedgerTotals.class)), accountService,
+                new PinCodeServiceImpl(properties, metrics), new AccountLockManager(properties, metrics, new HotAccounts(properties)),
+                mock(IdempotencyService.class), properties, metrics, new ShardRouter(1), mock(TransferOutbox.class),
+                mock(HotCreditBuffer.class), mock(TransactionArchive.class));
+
+        String pinCode = BCrypt.hashpw("1234", BCrypt.gensalt(4));
+        accountNumbers = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = Account.builder()
+                    .accountNumber(generateAccountNumber())
+                    .name("Client " + i)
+                    .balance(INITIAL_BALANCE)
+                    .pinCode(pinCode)
+                    .build();
+            accountService.accounts.put(account.getAccountNumber(), account);
+            accountNumbers.add(account.getAccountNumber());
+        }
+    }
+
+    @Test
+    void concurrentTransfersConserveMoney() throws Exception {
+        //GIVEN
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        //WHEN
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    TransactionRequest request = TransactionRequest.builder()
+                            .amount(Money.of(random.nextInt(1, 50)))
+                            .type(TransactionType.TRANSFER)
+                            .pinCode("1234")
+                            .accountFromNumber(accountNumbers.get(from))
+                            .accountToNumber(accountNumbers.get(to))
+                            .build();
+                    try {
+                        transactionService.processTransaction(request);
+                    } catch (InsufficientFundsException ignored) {
+                        // счет опустел, перевод корректно отклонен
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //THEN
+        long total = 0;
+        for (Account account : accountService.accounts.values()) {
+            assertTrue(account.getBalance().signum() >= 0);
+            total += account.getBalance().getMinorUnits();
+        }
+        assertEquals(INITIAL_BALANCE.getMinorUnits() * ACCOUNTS, total);
+    }
+
+    /**
+     * Пакет читает счета, меняет баланс сущностей и записывает их целиком через updateAll:
+     * без AccountLockManager параллельные пакеты с общими счетами теряют обновления
+     */
+    @Test
+    void concurrentBatchesConserveMoney() throws Exception {
+        //GIVEN
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        //WHEN
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < BATCHES_PER_THREAD; i++) {
+                    List<TransactionRequest> batch = new ArrayList<>(BATCH_SIZE);
+                    for (int j = 0; j < BATCH_SIZE; j++) {
+                        int from = random.nextInt(ACCOUNTS);
+                        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                        batch.add(TransactionRequest.builder()
+                                .amount(Money.of(random.nextInt(1, 50)))
+                                .type(TransactionType.TRANSFER)
+                                .pinCode("1234")
+                                .accountFromNumber(accountNumbers.get(from))
+                                .accountToNumber(accountNumbers.get(to))
+                                .build());
+                    }
+                    transactionService.processBatch(batch);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //THEN
+        long total = 0;
+        for (Account account : accountService.accounts.values()) {
+            assertTrue(account.getBalance().signum() >= 0);
+            total += account.getBalance().getMinorUnits();
+        }
+        assertEquals(INITIAL_BALANCE.getMinorUnits() * ACCOUNTS, total);
+    }
+
+    /**
+     * Имитирует БД: каждое чтение возвращает копию строки, запись заменяет её целиком,
+     * поэтому пакеты (чтение, editBalance, updateAll) без блокировок теряют обновления;
+     * addToBalance атомарен, как условный UPDATE в БД, и одиночным операциям блокировки не нужны.
+     */
+    private static class InMemoryAccountService implements AccountService {
+        private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+        @Override
+        public List<Account> getAll() {
+            return new ArrayList<>(accounts.values());
+        }
+
+        @Override
+        public List<AccountInfo> getAllInfos() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CursorPage<Account> getPage(String cursor, Integer limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void streamAll(Consumer<AccountInfo> consumer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void update(Account account) {
+            accounts.put(account.getAccountNumber(), account);
+        }
+
+        @Override
+        public void updateAll(Collection<Account> updated) {
+            updated.forEach(this::update);
+        }
+
+        @Override
+        public Account getByAccountNumber(String accountNumber) throws AccountNotFoundException {
+            Account stored = accounts.get(accountNumber);
+            if (stored == null) {
+                throw new AccountNotFoundException(accountNumber);
+            }
+            return Account.builder()
+                    .id(stored.getId())
+                    .accountNumber(stored.getAccountNumber())
+                    .name(stored.getName())
+                    .balance(stored.getBalance())
+                    .pinCode(stored.getPinCode())
+                    .build();
+        }
+
+        @Override
+        public String getPinCode(String accountNumber) throws AccountNotFoundException {
+            return getByAccountNumber(accountNumber).getPinCode();
+        }
+
+        @Override
+        public void addToBalance(String accountNumber, Money delta) {
+            boolean[] applied = new boolean[1];
+            Account updated = accounts.computeIfPresent(accountNumber, (number, stored) -> {
+                if (stored.getBalance().plus(delta).isNegative()) {
+                    return stored;
+                }
+                applied[0] = true;
+                return Account.builder()
+                        .id(stored.getId())
+                        .accountNumber(number)
+                        .name(stored.getName())
+                        .balance(stored.getBalance().plus(delta))
+                        .pinCode(stored.getPinCode())
+                        .build();
+            });
+            if (updated == null) {
+                throw new AccountNotFoundException(accountNumber);
+            }
+            if (!applied[0]) {
+                throw new InsufficientFundsException("Отрицательный баланс недопустим");
+            }
+        }
+
+        @Override
+        public List<Account> getAllByAccountNumbers(Collection<String> accountNumbers) {
+            return accountNumbers.stream()
+                    .filter(accounts::containsKey)
+                    .map(this::getByAccountNumber)
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public Account add(AccountInfo accountInfo) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Account> getAccountWithMaxBalance() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<AccountInfo> getAccountInfosWithMaxBalance() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<AccountInfo> getTopByBalance(int k) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
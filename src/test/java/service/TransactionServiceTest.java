@@ -1,28 +1,59 @@
 package service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.archive.TransactionArchive;
+import org.example.concurrent.AccountLockManager;
+import org.example.concurrent.HotAccounts;
+import org.example.concurrent.HotCreditBuffer;
+import org.example.config.BankProperties;
 import org.example.dto.TransactionRequest;
+import org.example.dto.TransactionResult;
 import org.example.enums.TransactionType;
 import org.example.exception.IncorrectAccountNumberException;
+import org.example.exception.IncorrectPinCodeException;
+import org.example.exception.IncorrectTransactionRequestException;
+import org.example.exception.InsufficientFundsException;
+import org.example.ledger.LedgerTotals;
+import org.example.metrics.TransactionMetrics;
 import org.example.model.Account;
 import org.example.model.Transactions;
+import org.example.money.Money;
 import org.example.repository.TransactionRepository;
 import org.example.service.AccountService;
+import org.example.service.IdempotencyService;
 import org.example.service.TransactionService;
+import org.example.service.impl.PinCodeServiceImpl;
+import org.example.service.impl.RepositoryTransactionRecorder;
 import org.example.service.impl.TransactionServiceImpl;
+import org.example.shard.ShardRouter;
+import org.example.shard.TransferOutbox;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mindrot.jbcrypt.BCrypt;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.example.service.impl.AccountServiceImpl.generateAccountNumber;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -34,26 +65,41 @@ class TransactionServiceTest {
     private TransactionRepository transactionRepository;
     @Mock
     private AccountService accountService;
+    @Mock
+    private IdempotencyService idempotencyService;
+    @Mock
+    private HotCreditBuffer hotCredits;
+    @Mock
+    private LedgerTotals ledgerTotals;
     private Account account;
     private TransactionService transactionService;
     private TransactionRequest request;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     public void setup() {
         initMocks(this);
-        transactionService = new TransactionServiceImpl(transactionRepository, accountService);
+        BankProperties properties = new BankProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        TransactionMetrics metrics = new TransactionMetrics(meterRegistry);
+        transactionService = new TransactionServiceImpl(transactionRepository,
+                new RepositoryTransactionRecorder(transactionRepository, ledgerTotals), accountService,
+                new PinCodeServiceImpl(properties, metrics), new AccountLockManager(properties, metrics, new HotAccounts(properties)),
+                idempotencyService, properties, metrics, new ShardRouter(1), mock(TransferOutbox.class), hotCredits,
+                new TransactionArchive(transactionRepository, mock(JdbcTemplate.class), mock(PlatformTransactionManager.class),
+                        new ShardRouter(1), properties));
 
         accountNumber = generateAccountNumber();
 
         account = Account.builder()
                 .accountNumber(accountNumber)
                 .name("Dj D")
-                .balance(new BigDecimal(1000))
+                .balance(Money.of(1000))
                 .pinCode(BCrypt.hashpw("1234", BCrypt.gensalt()))
                 .build();
 
         request = TransactionRequest.builder()
-                .amount(new BigDecimal(200))
+                .amount(Money.of(200))
                 .type(TransactionType.DEPOSIT)
                 .pinCode("1234")
                 .accountFromNumber(accountNumber)
@@ -66,15 +112,7 @@ class TransactionServiceTest {
         //GIVEN
         String recipientAccountNumber = generateAccountNumber();
 
-        Account recipientAccount = Account.builder()
-                .accountNumber(recipientAccountNumber)
-                .name("Lui Rex")
-                .balance(new BigDecimal(500))
-                .pinCode(BCrypt.hashpw("1234", BCrypt.gensalt()))
-                .build();
-
-        when(accountService.getByAccountNumber(accountNumber)).thenReturn(account);
-        when(accountService.getByAccountNumber(recipientAccountNumber)).thenReturn(recipientAccount);
+        when(accountService.getPinCode(accountNumber)).thenReturn(account.getPinCode());
 
         request.setType(TransactionType.TRANSFER);
         request.setAccountToNumber(recipientAccountNumber);
@@ -89,36 +127,155 @@ class TransactionServiceTest {
         Transactions savedTransaction = transactionCaptor.getValue();
 
         //THEN
-        assertEquals(new BigDecimal(200), savedTransaction.getAmount());
+        assertEquals(Money.of(200), savedTransaction.getAmount());
         assertEquals(TransactionType.TRANSFER, savedTransaction.getTransactionType());
         assertEquals(accountNumber, savedTransaction.getAccountFromNumber());
         assertEquals(recipientAccountNumber, savedTransaction.getAccountToNumber());
 
-        verify(transactionRepository).save(any(Transactions.class));
-        verify(accountService, times(2)).update(any(Account.class));
-
-        assertEquals(new BigDecimal(800), accountService.getByAccountNumber(accountNumber).getBalance());
-        assertEquals(new BigDecimal(700), accountService.getByAccountNumber(recipientAccountNumber).getBalance());
+        verify(accountService).addToBalance(accountNumber, Money.of(-200));
+        verify(accountService).addToBalance(recipientAccountNumber, Money.of(200));
+        verify(ledgerTotals).post(savedTransaction);
+        verify(accountService, never()).getByAccountNumber(any());
+        verify(accountService, never()).update(any(Account.class));
     }
 
     @Test
     void processDepositTransaction() {
+        //WHEN
+        transactionService.processTransaction(request);
+
+        //THEN
+        verify(transactionRepository).save(any(Transactions.class));
+        verify(accountService).addToBalance(accountNumber, Money.of(200));
+        verify(accountService, never()).getPinCode(any());
+    }
+
+    @Test
+    void processTransferToHotAccountStagesCredit() {
         //GIVEN
-        when(accountService.getByAccountNumber(accountNumber)).thenReturn(account);
+        String hotAccountNumber = generateAccountNumber();
+        when(accountService.getPinCode(accountNumber)).thenReturn(account.getPinCode());
+        when(hotCredits.coalesces(hotAccountNumber)).thenReturn(true);
+
+        request.setType(TransactionType.TRANSFER);
+        request.setAccountToNumber(hotAccountNumber);
 
         //WHEN
         transactionService.processTransaction(request);
 
+        //THEN
+        ArgumentCaptor<Transactions> creditCaptor = ArgumentCaptor.forClass(Transactions.class);
+        verify(hotCredits).stage(creditCaptor.capture());
+        assertEquals(hotAccountNumber, creditCaptor.getValue().getAccountToNumber());
+        assertEquals(Money.of(200), creditCaptor.getValue().getAmount());
+
+        verify(accountService).getByAccountNumber(hotAccountNumber);
+        verify(accountService).addToBalance(accountNumber, Money.of(-200));
+        verify(accountService, never()).addToBalance(eq(hotAccountNumber), any());
+        verify(ledgerTotals, never()).post(any());
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    void processBatchStagesDepositsToHotAccount() {
+        //GIVEN
+        when(hotCredits.coalesces(accountNumber)).thenReturn(true);
+        when(accountService.getAllByAccountNumbers(anyCollection())).thenReturn(List.of(account));
+
+        //WHEN
+        List<TransactionResult> results = transactionService.processBatch(List.of(request, request));
+
+        //THEN
+        assertTrue(results.stream().allMatch(TransactionResult::isSuccess));
+        assertEquals(Money.of(1000), account.getBalance());
+        verify(hotCredits).stageAll(argThat(credits -> credits.size() == 2));
+        verify(hotCredits, times(1)).coalesces(accountNumber);
+    }
+
+    @Test
+    void processTransactionWithUsedIdempotencyKeyIsNotApplied() {
+        //GIVEN
+        request.setType(TransactionType.WITHDRAWAL);
+        when(idempotencyService.findResponse("key-1", request)).thenReturn(Optional.of(TransactionService.PROCESSED_MESSAGE));
+
+        //WHEN
+        String response = transactionService.processTransaction(request, "key-1");
+
+        //THEN
+        assertEquals(TransactionService.PROCESSED_MESSAGE, response);
+        verify(accountService, never()).addToBalance(any(), any());
+        verify(transactionRepository, never()).save(any(Transactions.class));
+        verify(idempotencyService, never()).remember(any(), any(), any());
+    }
+
+    @Test
+    void processTransactionWithNewIdempotencyKeyIsRemembered() {
+        //WHEN
+        transactionService.processTransaction(request, "key-2");
+
         //THEN
         verify(transactionRepository).save(any(Transactions.class));
-        verify(accountService).update(any(Account.class));
-        assertEquals(new BigDecimal(1200), accountService.getByAccountNumber(accountNumber).getBalance());
+        verify(accountService).addToBalance(accountNumber, Money.of(200));
+        verify(idempotencyService).remember("key-2", request, TransactionService.PROCESSED_MESSAGE);
+    }
+
+    @Test
+    void processTransactionWithConcurrentlyRememberedKeyReturnsStoredResponse() {
+        //GIVEN
+        when(idempotencyService.findResponse("key-3", request))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(TransactionService.PROCESSED_MESSAGE));
+        doThrow(new DuplicateKeyException("Idempotency_Keys"))
+                .when(idempotencyService).remember("key-3", request, TransactionService.PROCESSED_MESSAGE);
+
+        //WHEN
+        String response = transactionService.processTransaction(request, "key-3");
+
+        //THEN
+        assertEquals(TransactionService.PROCESSED_MESSAGE, response);
+        verify(accountService, never()).addToBalance(any(), any());
+        verify(transactionRepository, never()).save(any(Transactions.class));
+    }
+
+    @Test
+    void processWithdrawalWithInsufficientFundsIsCounted() {
+        //GIVEN
+        when(accountService.getPinCode(accountNumber)).thenReturn(account.getPinCode());
+        doThrow(new InsufficientFundsException("Отрицательный баланс недопустим"))
+                .when(accountService).addToBalance(accountNumber, Money.of(-5000));
+        request.setType(TransactionType.WITHDRAWAL);
+        request.setAmount(Money.of(5000));
+
+        //WHEN
+        assertThrows(InsufficientFundsException.class, () -> transactionService.processTransaction(request));
+
+        //THEN
+        assertEquals(1.0, meterRegistry.get("bank.transaction.insufficient.funds")
+                .tag("type", TransactionType.WITHDRAWAL.name())
+                .counter()
+                .count());
+        verify(transactionRepository, never()).save(any(Transactions.class));
+    }
+
+    @Test
+    void processWithdrawalWithIncorrectPinCode() {
+        //GIVEN
+        when(accountService.getPinCode(accountNumber)).thenReturn(account.getPinCode());
+        request.setType(TransactionType.WITHDRAWAL);
+        request.setPinCode("0000");
+
+        //WHEN
+        assertThrows(IncorrectPinCodeException.class, () -> transactionService.processTransaction(request));
+
+        //THEN
+        verify(accountService, never()).addToBalance(any(), any());
+        verify(transactionRepository, never()).save(any(Transactions.class));
     }
 
     @Test
     void processWithdrawalTransaction() {
         //GIVEN
-        when(accountService.getByAccountNumber(accountNumber)).thenReturn(account);
+        when(accountService.getPinCode(accountNumber)).thenReturn(account.getPinCode());
 
         //WHEN
         request.setType(TransactionType.WITHDRAWAL);
@@ -126,14 +283,13 @@ class TransactionServiceTest {
 
         //THEN
         verify(transactionRepository).save(any(Transactions.class));
-        verify(accountService).update(any(Account.class));
-        assertEquals(new BigDecimal(800), accountService.getByAccountNumber(accountNumber).getBalance());
+        verify(accountService).addToBalance(accountNumber, Money.of(-200));
     }
 
     @Test
     void processPaymentTransaction() {
         //GIVEN
-        when(accountService.getByAccountNumber(accountNumber)).thenReturn(account);
+        when(accountService.getPinCode(accountNumber)).thenReturn(account.getPinCode());
 
         //WHEN
         request.setType(TransactionType.PAYMENT);
@@ -141,8 +297,109 @@ class TransactionServiceTest {
 
         //THEN
         verify(transactionRepository).save(any(Transactions.class));
-        verify(accountService).update(any(Account.class));
-        assertEquals(new BigDecimal(800), accountService.getByAccountNumber(accountNumber).getBalance());
+        verify(accountService).addToBalance(accountNumber, Money.of(-200));
+    }
+
+    @Test
+    void processBatchAppliesValidItemsAndReportsFailures() {
+        //GIVEN
+        String recipientAccountNumber = generateAccountNumber();
+
+        Account recipientAccount = Account.builder()
+                .accountNumber(recipientAccountNumber)
+                .name("Lui Rex")
+                .balance(Money.of(500))
+                .pinCode(BCrypt.hashpw("1234", BCrypt.gensalt()))
+                .build();
+
+        when(accountService.getAllByAccountNumbers(anyCollection())).thenReturn(List.of(account, recipientAccount));
+        when(accountService.getPinCode(accountNumber)).thenReturn(account.getPinCode());
+        when(accountService.getPinCode(recipientAccountNumber)).thenReturn(recipientAccount.getPinCode());
+
+        List<TransactionRequest> requests = List.of(
+                TransactionRequest.builder().amount(Money.of(300)).type(TransactionType.TRANSFER).pinCode("1234")
+                        .accountFromNumber(accountNumber).accountToNumber(recipientAccountNumber).build(),
+                TransactionRequest.builder().amount(Money.of(5000)).type(TransactionType.WITHDRAWAL).pinCode("1234")
+                        .accountFromNumber(accountNumber).build(),
+                TransactionRequest.builder().amount(Money.of(100)).type(TransactionType.PAYMENT).pinCode("0000")
+                        .accountFromNumber(recipientAccountNumber).build(),
+                TransactionRequest.builder().amount(Money.of(-10)).type(TransactionType.DEPOSIT)
+                        .accountFromNumber(accountNumber).build(),
+                TransactionRequest.builder().amount(Money.of(50)).type(TransactionType.DEPOSIT)
+                        .accountFromNumber(recipientAccountNumber).build());
+
+        //WHEN
+        List<TransactionResult> results = transactionService.processBatch(requests);
+
+        //THEN
+        assertEquals(5, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertFalse(results.get(3).isSuccess());
+        assertTrue(results.get(4).isSuccess());
+
+        ArgumentCaptor<List<Transactions>> transactionsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository).insertAll(transactionsCaptor.capture());
+        assertEquals(2, transactionsCaptor.getValue().size());
+        verify(accountService).updateAll(anyCollection());
+
+        assertEquals(Money.of(700), account.getBalance());
+        assertEquals(Money.of(850), recipientAccount.getBalance());
+        verify(ledgerTotals).postAll(transactionsCaptor.getValue());
+        verifyNoMoreInteractions(ledgerTotals);
+    }
+
+    @Test
+    void processBatchVerifiesPinCodesBeforeLoadingAccounts() {
+        //GIVEN
+        when(accountService.getPinCode(accountNumber)).thenReturn(account.getPinCode());
+        when(accountService.getAllByAccountNumbers(anyCollection())).thenReturn(List.of(account));
+        List<TransactionRequest> requests = List.of(
+                TransactionRequest.builder().amount(Money.of(100)).type(TransactionType.WITHDRAWAL).pinCode("0000")
+                        .accountFromNumber(accountNumber).build(),
+                TransactionRequest.builder().amount(Money.of(100)).type(TransactionType.WITHDRAWAL).pinCode("1234")
+                        .accountFromNumber(accountNumber).build());
+
+        //WHEN
+        List<TransactionResult> results = transactionService.processBatch(requests);
+
+        //THEN
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertEquals(Money.of(900), account.getBalance());
+        InOrder inOrder = inOrder(accountService);
+        inOrder.verify(accountService).getPinCode(accountNumber);
+        inOrder.verify(accountService).getAllByAccountNumbers(anyCollection());
+    }
+
+    @Test
+    void exportHistoryStreamsRowsAndClosesCursor() {
+        //GIVEN
+        Transactions transaction = new Transactions();
+        AtomicBoolean closed = new AtomicBoolean();
+        when(transactionRepository.streamHistory(eq(accountNumber), any(Date.class), any(Date.class)))
+                .thenReturn(Stream.of(transaction).onClose(() -> closed.set(true)));
+        List<Transactions> exported = new ArrayList<>();
+
+        //WHEN
+        transactionService.exportHistory(accountNumber, null, null, exported::add);
+
+        //THEN
+        assertEquals(List.of(transaction), exported);
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportHistoryWithEmptyPeriod() {
+        //GIVEN
+        Date now = new Date();
+
+        //WHEN
+        //THEN
+        assertThrows(IncorrectTransactionRequestException.class,
+                () -> transactionService.checkHistoryRequest(accountNumber, now, now));
+        verify(transactionRepository, never()).streamHistory(any(), any(), any());
     }
 
     @Test